@@ -0,0 +1,237 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Keeps one file open for appending and batches lines in memory.
+// The buffer is written out when it fills or when the flush window elapses,
+// and how often the data is forced to disk depends on the durability mode.
+public class AppendWriter implements Closeable {
+    public enum Durability {
+        NONE,       // leave syncing to the OS
+        BATCH,      // fsync every batch that is written
+        EVERY_WRITE // append returns only after its line is on disk; concurrent callers share an fsync
+    }
+
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "append-writer-flusher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final File file;
+    private final Durability durability;
+    private final int batchBytes;
+    private final long flushMillis;
+    private final Object syncLock = new Object();
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private ScheduledFuture<?> flushTask;
+    private long appendedSeq;
+    private long writtenSeq;
+    private volatile long durableSeq;
+
+    // Metrics, guarded by this
+    private long appends;
+    private long bytes;
+    private long writes;
+    private long syncs;
+    private long writeNanos;
+    private long syncNanos;
+    private long openedAtNanos;
+
+    public AppendWriter(File file, Durability durability, int batchBytes, long flushMillis) {
+        if (batchBytes <= 0) throw new IllegalArgumentException("Batch size must be > 0");
+        this.file = file;
+        this.durability = durability;
+        this.batchBytes = batchBytes;
+        this.flushMillis = flushMillis;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public void append(String line) throws IOException {
+        byte[] data = line.getBytes(StandardCharsets.UTF_8);
+        long seq;
+        boolean batchFull;
+        synchronized (this) {
+            ensureOpen();
+            if (data.length + 1 > buffer.remaining()) {
+                writeBuffered();
+                if (data.length + 1 > buffer.capacity()) {
+                    buffer = ByteBuffer.allocate(data.length + 1);
+                }
+            }
+            buffer.put(data).put((byte) '\n');
+            seq = ++appendedSeq;
+            appends++;
+            bytes += data.length + 1;
+            batchFull = buffer.position() >= batchBytes;
+            if (batchFull && durability == Durability.NONE) {
+                writeBuffered();
+            }
+        }
+        if (durability == Durability.EVERY_WRITE || (batchFull && durability == Durability.BATCH)) {
+            sync(seq);
+        }
+    }
+
+    // Appends all lines as one batch with one write; BATCH and EVERY_WRITE then sync once,
+    // NONE leaves the sync to the operating system
+    public void appendAll(Iterable<String> lines) throws IOException {
+        synchronized (this) {
+            ensureOpen();
+            for (String line : lines) {
+                byte[] data = line.getBytes(StandardCharsets.UTF_8);
+                if (data.length + 1 > buffer.remaining()) {
+                    writeBuffered();
+                    if (data.length + 1 > buffer.capacity()) {
+                        buffer = ByteBuffer.allocate(data.length + 1);
+                    }
+                }
+                buffer.put(data).put((byte) '\n');
+                appendedSeq++;
+                appends++;
+                bytes += data.length + 1;
+            }
+            writeBuffered();
+        }
+        flush();
+    }
+
+    // Writes everything appended so far and forces it unless durability is NONE
+    public void flush() throws IOException {
+        long seq;
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            if (durability == Durability.NONE) {
+                writeBuffered();
+                return;
+            }
+            seq = appendedSeq;
+        }
+        sync(seq);
+    }
+
+    // Group commit: whoever holds the sync lock forces everything buffered so far,
+    // and callers queued behind it usually find their line already covered.
+    private void sync(long seq) throws IOException {
+        if (durableSeq >= seq) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durableSeq >= seq) {
+                return;
+            }
+            FileChannel target;
+            long covered;
+            synchronized (this) {
+                writeBuffered();
+                target = channel;
+                covered = writtenSeq;
+            }
+            if (target == null) {
+                return;
+            }
+            long start = System.nanoTime();
+            target.force(false);
+            long elapsed = System.nanoTime() - start;
+            synchronized (this) {
+                syncs++;
+                syncNanos += elapsed;
+            }
+            durableSeq = covered;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        buffer = ByteBuffer.allocate(batchBytes + 1024);
+        openedAtNanos = System.nanoTime();
+        if (flushMillis > 0) {
+            flushTask = FLUSHER.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Caller holds this
+    private void writeBuffered() throws IOException {
+        if (channel == null || buffer.position() == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        writtenSeq = appendedSeq;
+        writes++;
+        writeNanos += System.nanoTime() - start;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Error flushing " + file + ": " + e.getMessage());
+        }
+    }
+
+    // The writer can be used again after closing; the file is reopened on the next append
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (channel == null) {
+                    return;
+                }
+                if (flushTask != null) {
+                    flushTask.cancel(false);
+                    flushTask = null;
+                }
+                try {
+                    writeBuffered();
+                    if (durability != Durability.NONE) {
+                        channel.force(false);
+                    }
+                } finally {
+                    channel.close();
+                    channel = null;
+                    durableSeq = appendedSeq;
+                }
+            }
+        }
+    }
+
+    public synchronized String getMetrics() {
+        double seconds = openedAtNanos == 0 ? 0 : (System.nanoTime() - openedAtNanos) / 1e9;
+        return String.format("%s [%s]: %d appends, %d bytes, %d writes (%.1f appends/write), %d fsyncs (avg %.1f us), "
+                        + "%.0f appends/s, %.2f MB/s, write time %.1f ms",
+                file.getName(), durability, appends, bytes, writes,
+                writes == 0 ? 0.0 : (double) appends / writes,
+                syncs, syncs == 0 ? 0.0 : syncNanos / 1e3 / syncs,
+                seconds == 0 ? 0.0 : appends / seconds,
+                seconds == 0 ? 0.0 : bytes / seconds / (1024 * 1024),
+                writeNanos / 1e6);
+    }
+}
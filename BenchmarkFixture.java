@@ -0,0 +1,113 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongUnaryOperator;
+
+// A RentalSystem in a temporary directory, loaded with SyntheticDataGenerator data, for the
+// JMH benchmarks in jmh/. JMH only accepts benchmarks in a named package, and those cannot
+// name classes in this one, so they create the fixture by reflection and ask for each
+// operation by name. An operation takes the caller's invocation counter and returns a value
+// for the Blackhole.
+public class BenchmarkFixture implements Function<String, LongUnaryOperator>, Closeable {
+    private static final LocalDate DAY = LocalDate.of(2030, 1, 1);
+
+    private final File dir;
+    private final RentalSystem system;
+    private final String[] plates;
+    private final int[] plateCodes;
+    private final String[] customerIds;
+    private final int customerCount;
+    // Vehicles that were not out on rent when the fixture was loaded
+    private final Vehicle[] available;
+    private final AtomicInteger nextCustomerId;
+
+    public BenchmarkFixture(int fleetSize, int historySize) throws IOException {
+        dir = Files.createTempDirectory("rental-bench").toFile();
+        customerCount = Math.max(1, fleetSize / 2);
+        SyntheticDataGenerator.generate(dir, fleetSize, customerCount, historySize, 42);
+        // The generated files are imported into the journal, as a pre-journal data directory would be
+        system = new RentalSystem(dir);
+
+        plates = new String[fleetSize];
+        plateCodes = new int[fleetSize];
+        List<Vehicle> free = new ArrayList<>();
+        for (int i = 0; i < fleetSize; i++) {
+            plates[i] = SyntheticDataGenerator.plate(i);
+            plateCodes[i] = SyntheticDataGenerator.plateCode(i);
+            Vehicle vehicle = system.findVehicleByPlate(plateCodes[i]);
+            if (vehicle.getStatus() == Vehicle.VehicleStatus.AVAILABLE) {
+                free.add(vehicle);
+            }
+        }
+        available = free.toArray(new Vehicle[0]);
+        customerIds = new String[Math.min(customerCount, 1 << 16)];
+        for (int i = 0; i < customerIds.length; i++) {
+            customerIds[i] = String.valueOf(i + 1);
+        }
+        nextCustomerId = new AtomicInteger(customerCount + 1);
+    }
+
+    @Override
+    public LongUnaryOperator apply(String operation) {
+        switch (operation) {
+            case "findVehicleByPlate":
+                return i -> {
+                    Vehicle vehicle = system.findVehicleByPlate(plates[(int) (i % plates.length)]);
+                    return vehicle == null ? -1 : vehicle.getPlateCode();
+                };
+            case "findCustomerById":
+                return i -> system.findCustomerById(1 + (int) (i % customerCount)).getCustomerId();
+            case "findCustomerByIdString":
+                return i -> system.findCustomerById(customerIds[(int) (i % customerIds.length)]).getCustomerId();
+            case "historyByCustomer":
+                return i -> system.getHistory().getRentalRecordsByCustomer(1 + (int) (i % customerCount)).size();
+            case "historyByVehicle":
+                return i -> system.getHistory().getRentalRecordsByVehicle(plateCodes[(int) (i % plateCodes.length)]).size();
+            case "rentAndReturn":
+                return i -> {
+                    Vehicle vehicle = available[(int) (i % available.length)];
+                    Customer customer = system.findCustomerById(1 + (int) (i % customerCount));
+                    if (!system.rentVehicle(vehicle, customer, DAY, 100.0)) {
+                        return 0;
+                    }
+                    return system.returnVehicle(vehicle, customer, DAY, 10.0) ? 2 : 1;
+                };
+            case "addCustomer":
+                return i -> system.addCustomer(new Customer(nextCustomerId.getAndIncrement(), "Bench Customer")) ? 1 : 0;
+            case "load":
+                // Loads a second system from the same directory; the first one is closed so
+                // its journal is complete on disk
+                system.shutdown();
+                return i -> {
+                    RentalSystem loaded = new RentalSystem(dir);
+                    long revenue = loaded.getAggregates().getRevenueCents();
+                    loaded.shutdown();
+                    return revenue;
+                };
+            default:
+                throw new IllegalArgumentException("Unknown benchmark operation: " + operation);
+        }
+    }
+
+    @Override
+    public void close() {
+        system.shutdown();
+        deleteTree(dir);
+    }
+
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+}
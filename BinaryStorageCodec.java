@@ -0,0 +1,227 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact single-file format, version 1:
+//   magic "RNTL", version (short)
+//   string dictionary: count, then each string (makes and models are stored once)
+//   vehicles:  count, then per vehicle: type, 6-byte plate, make id, model id, year (short),
+//              status, and the fields of its class
+//   customers: count, then per customer: id (int), name
+//   records:   count, then per record: type, 6-byte plate, customer id (int),
+//              epoch day (int), amount in cents (long)
+// Counts and dictionary ids are unsigned varints.
+public class BinaryStorageCodec implements StorageCodec {
+    private static final int MAGIC = 0x524E544C;
+    private static final short VERSION = 1;
+
+    private static final int RECORD_RENT = 0;
+    private static final int RECORD_RETURN = 1;
+    private static final int RECORD_OTHER = 2;
+
+    @Override
+    public void write(RentalData data, File target) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (Vehicle vehicle : data.getVehicles()) {
+            intern(dictionary, strings, vehicle.getMake());
+            intern(dictionary, strings, vehicle.getModel());
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+
+            writeVarInt(out, strings.size());
+            for (String s : strings) {
+                out.writeUTF(s);
+            }
+
+            writeVarInt(out, data.getVehicles().size());
+            for (Vehicle vehicle : data.getVehicles()) {
+                VehicleType type = VehicleType.of(vehicle);
+                out.writeByte(type.ordinal());
+                writePlate(out, vehicle.getLicensePlate());
+                writeVarInt(out, dictionary.get(nullToEmpty(vehicle.getMake())));
+                writeVarInt(out, dictionary.get(nullToEmpty(vehicle.getModel())));
+                out.writeShort(vehicle.getYear());
+                out.writeByte(vehicle.getStatus().ordinal());
+                switch (type) {
+                    case CAR:
+                        out.writeShort(((Car) vehicle).getNumSeats());
+                        break;
+                    case SPORT_CAR:
+                        SportCar sportCar = (SportCar) vehicle;
+                        out.writeShort(sportCar.getNumSeats());
+                        out.writeShort(sportCar.getHorsepower());
+                        out.writeBoolean(sportCar.hasTurbo());
+                        break;
+                    case TRUCK:
+                        out.writeDouble(((Truck) vehicle).getCargoCapacity());
+                        break;
+                    case MOTORCYCLE:
+                        out.writeBoolean(((Motorcycle) vehicle).hasSidecar());
+                        break;
+                }
+            }
+
+            writeVarInt(out, data.getCustomers().size());
+            for (Customer customer : data.getCustomers()) {
+                out.writeInt(customer.getCustomerId());
+                out.writeUTF(customer.getCustomerName());
+            }
+
+            writeVarInt(out, data.getRecords().size());
+            for (RentalRecord record : data.getRecords()) {
+                String recordType = record.getRecordType();
+                if (recordType.equals("RENT")) {
+                    out.writeByte(RECORD_RENT);
+                } else if (recordType.equals("RETURN")) {
+                    out.writeByte(RECORD_RETURN);
+                } else {
+                    out.writeByte(RECORD_OTHER);
+                    out.writeUTF(recordType);
+                }
+                writePlate(out, record.getVehicle().getLicensePlate());
+                out.writeInt(record.getCustomer().getCustomerId());
+                out.writeInt((int) record.getRecordDate().toEpochDay());
+                out.writeLong(record.getAmountCents());
+            }
+        }
+    }
+
+    @Override
+    public RentalData read(File source) throws IOException {
+        RentalData data = new RentalData();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(source), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a rental data file: " + source);
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported rental data version " + version + " in " + source);
+            }
+
+            String[] strings = new String[readVarInt(in)];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readUTF();
+            }
+
+            VehicleType[] types = VehicleType.values();
+            Vehicle.VehicleStatus[] statuses = Vehicle.VehicleStatus.values();
+            IntHashMap<Vehicle> vehiclesByPlate = new IntHashMap<>();
+            int vehicleCount = readVarInt(in);
+            for (int i = 0; i < vehicleCount; i++) {
+                VehicleType type = types[in.readUnsignedByte()];
+                int plate = readPlate(in);
+                String make = strings[readVarInt(in)];
+                String model = strings[readVarInt(in)];
+                int year = in.readShort();
+                Vehicle.VehicleStatus status = statuses[in.readUnsignedByte()];
+                Vehicle vehicle;
+                switch (type) {
+                    case CAR:
+                        vehicle = new Car(make, model, year, in.readShort());
+                        break;
+                    case SPORT_CAR:
+                        vehicle = new SportCar(make, model, year, in.readShort(), in.readShort(), in.readBoolean());
+                        break;
+                    case TRUCK:
+                        vehicle = new Truck(make, model, year, in.readDouble());
+                        break;
+                    default:
+                        vehicle = new Motorcycle(make, model, year, in.readBoolean());
+                        break;
+                }
+                vehicle.setPlateCode(plate);
+                vehicle.setStatus(status);
+                vehiclesByPlate.put(plate, vehicle);
+                data.getVehicles().add(vehicle);
+            }
+
+            IntHashMap<Customer> customersById = new IntHashMap<>();
+            int customerCount = readVarInt(in);
+            for (int i = 0; i < customerCount; i++) {
+                Customer customer = new Customer(in.readInt(), in.readUTF());
+                customersById.put(customer.getCustomerId(), customer);
+                data.getCustomers().add(customer);
+            }
+
+            int recordCount = readVarInt(in);
+            for (int i = 0; i < recordCount; i++) {
+                int kind = in.readUnsignedByte();
+                String recordType = kind == RECORD_RENT ? "RENT" : kind == RECORD_RETURN ? "RETURN" : in.readUTF();
+                Vehicle vehicle = vehiclesByPlate.get(readPlate(in));
+                Customer customer = customersById.get(in.readInt());
+                LocalDate date = LocalDate.ofEpochDay(in.readInt());
+                long amountCents = in.readLong();
+                if (vehicle == null || customer == null) {
+                    throw new IOException("Record " + i + " refers to an unknown vehicle or customer in " + source);
+                }
+                data.getRecords().add(RentalRecord.ofCents(vehicle, customer, date, amountCents, recordType));
+            }
+        }
+        return data;
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static void intern(Map<String, Integer> dictionary, List<String> strings, String value) {
+        String key = nullToEmpty(value);
+        if (!dictionary.containsKey(key)) {
+            dictionary.put(key, strings.size());
+            strings.add(key);
+        }
+    }
+
+    // Plates are always 3 letters and 3 digits, so they fit in 6 ASCII bytes
+    private static void writePlate(DataOutputStream out, String plate) throws IOException {
+        if (plate == null || plate.length() != 6) {
+            throw new IOException("Cannot store plate " + plate);
+        }
+        out.write(plate.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static int readPlate(DataInputStream in) throws IOException {
+        byte[] plate = new byte[PlateCode.LENGTH];
+        in.readFully(plate);
+        int code = PlateCode.parse(plate, 0, plate.length);
+        if (code == PlateCode.INVALID) {
+            throw new IOException("Invalid plate " + new String(plate, StandardCharsets.US_ASCII));
+        }
+        return code;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -18,13 +18,11 @@ public class Car extends Vehicle implements Rentable {
     @Override
     public void rentVehicle() {
         setStatus(VehicleStatus.RENTED);
-        System.out.println("Car " + getLicensePlate() + " has been rented.");
     }
 
     @Override
     public void returnVehicle() {
         setStatus(VehicleStatus.AVAILABLE);
-        System.out.println("Car " + getLicensePlate() + " has been returned.");
     }
     
     @Override
@@ -0,0 +1,84 @@
+import java.util.AbstractList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Append-only list that many threads can add to without locking.
+// Storage is a series of chunks that double in size, so growing never copies elements
+// and small lists (one per plate or customer) stay small.
+public class ConcurrentAppendList<E> extends AbstractList<E> {
+    private static final int FIRST_CHUNK_SHIFT = 3;
+    private static final int MAX_CHUNKS = 32 - FIRST_CHUNK_SHIFT;
+
+    private static final class State<E> {
+        final AtomicInteger tail = new AtomicInteger();
+        final AtomicReferenceArray<AtomicReferenceArray<E>> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    }
+
+    private volatile State<E> state = new State<>();
+
+    private static int chunkOf(int index) {
+        return 31 - Integer.numberOfLeadingZeros(index + (1 << FIRST_CHUNK_SHIFT)) - FIRST_CHUNK_SHIFT;
+    }
+
+    private static int offsetOf(int index, int chunk) {
+        return index + (1 << FIRST_CHUNK_SHIFT) - (1 << (chunk + FIRST_CHUNK_SHIFT));
+    }
+
+    @Override
+    public boolean add(E element) {
+        append(element);
+        return true;
+    }
+
+    // Adds the element and returns the index it was stored at
+    public int append(E element) {
+        if (element == null) {
+            throw new NullPointerException("Null elements are not supported");
+        }
+        State<E> s = state;
+        int index = s.tail.getAndIncrement();
+        if (index < 0) {
+            throw new IllegalStateException("List is full");
+        }
+        int chunk = chunkOf(index);
+        AtomicReferenceArray<E> slots = s.chunks.get(chunk);
+        if (slots == null) {
+            AtomicReferenceArray<E> created = new AtomicReferenceArray<>(1 << (chunk + FIRST_CHUNK_SHIFT));
+            slots = s.chunks.compareAndSet(chunk, null, created) ? created : s.chunks.get(chunk);
+        }
+        slots.set(offsetOf(index, chunk), element);
+        return index;
+    }
+
+    @Override
+    public E get(int index) {
+        State<E> s = state;
+        if (index < 0 || index >= s.tail.get()) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        int chunk = chunkOf(index);
+        int offset = offsetOf(index, chunk);
+        // The slot was reserved but the writer may not have stored into it yet
+        while (true) {
+            AtomicReferenceArray<E> slots = s.chunks.get(chunk);
+            if (slots != null) {
+                E element = slots.get(offset);
+                if (element != null) {
+                    return element;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public int size() {
+        return state.tail.get();
+    }
+
+    // Only safe when no other thread is appending
+    @Override
+    public void clear() {
+        state = new State<>();
+    }
+}
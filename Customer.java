@@ -2,7 +2,11 @@ public class Customer {
     private int customerId;
     private String name;
 
+    // A name is stored as the rest of its line, so it may hold commas but no line breaks
     public Customer(int customerId, String name) {
+        if (name != null && (name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0)) {
+            throw new IllegalArgumentException("Customer name must not contain line breaks");
+        }
         this.customerId = customerId;
         this.name = name;
     }
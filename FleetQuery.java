@@ -0,0 +1,107 @@
+// Composable vehicle search criteria; every criterion left unset matches everything.
+// Seats only apply to cars, horsepower to sport cars, cargo to trucks and sidecar to motorcycles,
+// so setting one of them also restricts the results to those classes.
+public class FleetQuery {
+    String make;
+    String model;
+    VehicleType type;
+    Vehicle.VehicleStatus status;
+    Boolean sidecar;
+    int minYear = Integer.MIN_VALUE;
+    int maxYear = Integer.MAX_VALUE;
+    int minSeats = Integer.MIN_VALUE;
+    int maxSeats = Integer.MAX_VALUE;
+    int minHorsepower = Integer.MIN_VALUE;
+    int maxHorsepower = Integer.MAX_VALUE;
+    double minCargo = Double.NEGATIVE_INFINITY;
+    double maxCargo = Double.POSITIVE_INFINITY;
+    boolean bySeats;
+    boolean byHorsepower;
+    boolean byCargo;
+
+    public FleetQuery make(String make) {
+        this.make = make.toLowerCase();
+        return this;
+    }
+
+    public FleetQuery model(String model) {
+        this.model = model.toLowerCase();
+        return this;
+    }
+
+    public FleetQuery type(VehicleType type) {
+        this.type = type;
+        return this;
+    }
+
+    public FleetQuery status(Vehicle.VehicleStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    public FleetQuery sidecar(boolean sidecar) {
+        this.sidecar = sidecar;
+        return this;
+    }
+
+    public FleetQuery yearBetween(int min, int max) {
+        checkRange(min, max);
+        this.minYear = min;
+        this.maxYear = max;
+        return this;
+    }
+
+    public FleetQuery seatsBetween(int min, int max) {
+        checkRange(min, max);
+        this.minSeats = min;
+        this.maxSeats = max;
+        this.bySeats = true;
+        return this;
+    }
+
+    public FleetQuery horsepowerBetween(int min, int max) {
+        checkRange(min, max);
+        this.minHorsepower = min;
+        this.maxHorsepower = max;
+        this.byHorsepower = true;
+        return this;
+    }
+
+    public FleetQuery cargoBetween(double min, double max) {
+        checkRange(min, max);
+        this.minCargo = min;
+        this.maxCargo = max;
+        this.byCargo = true;
+        return this;
+    }
+
+    boolean hasYear() {
+        return minYear != Integer.MIN_VALUE || maxYear != Integer.MAX_VALUE;
+    }
+
+    // The exact check; the index only narrows down which vehicles get here
+    public boolean matches(Vehicle v) {
+        if (make != null && (v.getMake() == null || !v.getMake().equalsIgnoreCase(make))) return false;
+        if (model != null && (v.getModel() == null || !v.getModel().equalsIgnoreCase(model))) return false;
+        if (type != null && VehicleType.of(v) != type) return false;
+        if (status != null && v.getStatus() != status) return false;
+        if (v.getYear() < minYear || v.getYear() > maxYear) return false;
+        if (bySeats && !(v instanceof Car && inRange(((Car) v).getNumSeats(), minSeats, maxSeats))) return false;
+        if (byHorsepower && !(v instanceof SportCar && inRange(((SportCar) v).getHorsepower(), minHorsepower, maxHorsepower))) return false;
+        if (byCargo) {
+            if (!(v instanceof Truck)) return false;
+            double cargo = ((Truck) v).getCargoCapacity();
+            if (cargo < minCargo || cargo > maxCargo) return false;
+        }
+        if (sidecar != null && !(v instanceof Motorcycle && ((Motorcycle) v).hasSidecar() == sidecar)) return false;
+        return true;
+    }
+
+    private static void checkRange(double min, double max) {
+        if (min > max) throw new IllegalArgumentException("Empty range " + min + ".." + max);
+    }
+
+    private static boolean inRange(int value, int min, int max) {
+        return value >= min && value <= max;
+    }
+}
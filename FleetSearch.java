@@ -0,0 +1,256 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Attribute indexes over the fleet for FleetQuery. Every vehicle gets a dense ordinal;
+// makes, models, classes and sidecars map to bitsets of ordinals, and the numeric
+// attributes to sorted maps of value -> ordinals for range scans. Statuses have bitsets
+// too, but outside the lock: a status change flips its two bits with atomic word updates,
+// so renting and returning never wait for the lock or a search. A query intersects the
+// postings it has, then checks the survivors with FleetQuery.matches, which repeats the
+// status check for vehicles whose status changed after the postings were read.
+public class FleetSearch implements Vehicle.StatusListener {
+    // Status words come in chunks of 2^CHUNK_BITS ordinals that never move once allocated,
+    // so an atomic update can never land in a copy that is about to be replaced
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_WORDS = 1 << (CHUNK_BITS - 6);
+    private static final int STATUSES = Vehicle.VehicleStatus.values().length;
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Vehicle> vehicles = new ArrayList<>();
+    private final Map<String, BitSet> byMake = new HashMap<>();
+    private final Map<String, BitSet> byModel = new HashMap<>();
+    private final BitSet[] byType = new BitSet[VehicleType.values().length];
+    private final BitSet withSidecar = new BitSet();
+    // [chunk][status * CHUNK_WORDS + word]; the chunk list only grows under the write lock
+    private volatile long[][] statusChunks = new long[0][];
+    private final IntHashMap<Integer> ordinalByPlate = new IntHashMap<>();
+    private final TreeMap<Integer, Ordinals> byYear = new TreeMap<>();
+    private final TreeMap<Integer, Ordinals> bySeats = new TreeMap<>();
+    private final TreeMap<Integer, Ordinals> byHorsepower = new TreeMap<>();
+    private final TreeMap<Double, Ordinals> byCargo = new TreeMap<>();
+
+    // Growable int array of ordinals, in insertion order
+    private static class Ordinals {
+        int[] values = new int[4];
+        int size;
+
+        void add(int ordinal) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = ordinal;
+        }
+    }
+
+    public FleetSearch() {
+        for (int i = 0; i < byType.length; i++) {
+            byType[i] = new BitSet();
+        }
+    }
+
+    public void add(Vehicle vehicle) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = vehicles.size();
+            vehicles.add(vehicle);
+            long[][] chunks = statusChunks;
+            if ((ordinal >>> CHUNK_BITS) == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length + 1);
+                chunks[chunks.length - 1] = new long[STATUSES * CHUNK_WORDS];
+                statusChunks = chunks;
+            }
+            // Under the vehicle's lock, so a concurrent status change comes either before
+            // this reads the status or after the ordinal is known
+            synchronized (vehicle) {
+                ordinalByPlate.put(vehicle.getPlateCode(), ordinal);
+                setStatusBit(chunks, vehicle.getStatus(), ordinal, true);
+            }
+            byMake.computeIfAbsent(key(vehicle.getMake()), k -> new BitSet()).set(ordinal);
+            byModel.computeIfAbsent(key(vehicle.getModel()), k -> new BitSet()).set(ordinal);
+            byType[VehicleType.of(vehicle).ordinal()].set(ordinal);
+            byYear.computeIfAbsent(vehicle.getYear(), k -> new Ordinals()).add(ordinal);
+            if (vehicle instanceof Car) {
+                bySeats.computeIfAbsent(((Car) vehicle).getNumSeats(), k -> new Ordinals()).add(ordinal);
+            }
+            if (vehicle instanceof SportCar) {
+                byHorsepower.computeIfAbsent(((SportCar) vehicle).getHorsepower(), k -> new Ordinals()).add(ordinal);
+            }
+            if (vehicle instanceof Truck) {
+                byCargo.computeIfAbsent(((Truck) vehicle).getCargoCapacity(), k -> new Ordinals()).add(ordinal);
+            }
+            if (vehicle instanceof Motorcycle && ((Motorcycle) vehicle).hasSidecar()) {
+                withSidecar.set(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Forwarded by VehicleStatusIndex while the vehicle's lock is held. A vehicle that is
+    // not added yet is skipped; add() reads its status after this change.
+    @Override
+    public void statusChanged(Vehicle vehicle, Vehicle.VehicleStatus from, Vehicle.VehicleStatus to) {
+        Integer ordinal = ordinalByPlate.get(vehicle.getPlateCode());
+        long[][] chunks = statusChunks;
+        // A clear() may have raced with the lookup; then there is nothing left to update
+        if (ordinal != null && (ordinal >>> CHUNK_BITS) < chunks.length) {
+            setStatusBit(chunks, from, ordinal, false);
+            setStatusBit(chunks, to, ordinal, true);
+        }
+    }
+
+    private static void setStatusBit(long[][] chunks, Vehicle.VehicleStatus status, int ordinal, boolean set) {
+        long[] chunk = chunks[ordinal >>> CHUNK_BITS];
+        int index = status.ordinal() * CHUNK_WORDS + ((ordinal >>> 6) & (CHUNK_WORDS - 1));
+        long bit = 1L << ordinal;
+        if (set) {
+            WORDS.getAndBitwiseOr(chunk, index, bit);
+        } else {
+            WORDS.getAndBitwiseAnd(chunk, index, ~bit);
+        }
+    }
+
+    // The vehicles with this status right now, as far as the atomic words tell
+    private BitSet statusPosting(Vehicle.VehicleStatus status) {
+        long[][] chunks = statusChunks;
+        long[] words = new long[chunks.length * CHUNK_WORDS];
+        int offset = status.ordinal() * CHUNK_WORDS;
+        for (int c = 0; c < chunks.length; c++) {
+            for (int w = 0; w < CHUNK_WORDS; w++) {
+                words[c * CHUNK_WORDS + w] = (long) WORDS.getVolatile(chunks[c], offset + w);
+            }
+        }
+        return BitSet.valueOf(words);
+    }
+
+    private static String key(String value) {
+        return value == null ? "" : value.toLowerCase();
+    }
+
+    // Matching vehicles in the order they were added, at most limit of them
+    public List<Vehicle> search(FleetQuery query, int limit) {
+        List<Vehicle> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            BitSet candidates = candidates(query);
+            for (int i = candidates.nextSetBit(0); i >= 0 && result.size() < limit; i = candidates.nextSetBit(i + 1)) {
+                Vehicle vehicle = vehicles.get(i);
+                if (query.matches(vehicle)) {
+                    result.add(vehicle);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    public int count(FleetQuery query) {
+        return search(query, Integer.MAX_VALUE).size();
+    }
+
+    private BitSet candidates(FleetQuery query) {
+        // Exact postings first; they are cheap to intersect and usually the most selective
+        BitSet result = null;
+        if (query.make != null) {
+            result = and(result, byMake.get(query.make));
+        }
+        if (query.model != null) {
+            result = and(result, byModel.get(query.model));
+        }
+        if (query.type != null) {
+            result = and(result, byType[query.type.ordinal()]);
+        }
+        if (query.status != null) {
+            BitSet posting = statusPosting(query.status);
+            if (result == null) {
+                result = posting;
+            } else {
+                result.and(posting);
+            }
+        }
+        if (Boolean.TRUE.equals(query.sidecar)) {
+            result = and(result, withSidecar);
+        } else if (Boolean.FALSE.equals(query.sidecar)) {
+            result = and(result, byType[VehicleType.MOTORCYCLE.ordinal()]);
+        }
+        if (query.hasYear()) {
+            result = andRange(result, byYear.subMap(query.minYear, true, query.maxYear, true));
+        }
+        if (query.bySeats) {
+            result = andRange(result, bySeats.subMap(query.minSeats, true, query.maxSeats, true));
+        }
+        if (query.byHorsepower) {
+            result = andRange(result, byHorsepower.subMap(query.minHorsepower, true, query.maxHorsepower, true));
+        }
+        if (query.byCargo) {
+            result = andRange(result, byCargo.subMap(query.minCargo, true, query.maxCargo, true));
+        }
+        if (result == null) {
+            result = new BitSet();
+            result.set(0, vehicles.size());
+        }
+        return result;
+    }
+
+    private static BitSet and(BitSet result, BitSet posting) {
+        if (posting == null) {
+            return new BitSet();
+        }
+        if (result == null) {
+            return (BitSet) posting.clone();
+        }
+        result.and(posting);
+        return result;
+    }
+
+    // Materializes the range as a bitset unless it is larger than the candidates already
+    // found; then matches() does the range check on those candidates instead
+    private static BitSet andRange(BitSet result, NavigableMap<?, Ordinals> range) {
+        long size = 0;
+        for (Ordinals ordinals : range.values()) {
+            size += ordinals.size;
+        }
+        if (result != null && result.cardinality() <= size) {
+            return result;
+        }
+        BitSet posting = new BitSet();
+        for (Ordinals ordinals : range.values()) {
+            for (int i = 0; i < ordinals.size; i++) {
+                posting.set(ordinals.values[i]);
+            }
+        }
+        return and(result, posting);
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            vehicles.clear();
+            byMake.clear();
+            byModel.clear();
+            for (BitSet set : byType) {
+                set.clear();
+            }
+            withSidecar.clear();
+            statusChunks = new long[0][];
+            ordinalByPlate.clear();
+            byYear.clear();
+            bySeats.clear();
+            byHorsepower.clear();
+            byCargo.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
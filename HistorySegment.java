@@ -0,0 +1,410 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.IntUnaryOperator;
+
+// An immutable on-disk block of rental records, written once when RentalHistory moves
+// records out of memory. Rows are sorted by plate so one vehicle's records are contiguous,
+// and small sorted indexes (plate -> row range, customer -> postings, day -> day rows) let
+// queries binary-search the mapped file and read only the rows they need. Nothing but the
+// mapping stays on the heap.
+//
+// Layout (big-endian):
+//   header:  magic "RSEG", version, count, plate entries, customer entries, day entries,
+//            type count, offsets of rows, order, plate index, customer index, postings,
+//            plate days, customer days, day index and day rows, then the record type
+//            strings (short length + UTF-8)
+//   rows:    count x (plate code, customer id, epoch day, cents (long), type id (byte))
+//   order:   count x row, giving the rows in the order the records were added
+//   plates:  entries x (plate code, first row, row count), by plate code
+//   customers: entries x (customer id, first posting, posting count), by customer id
+//   postings: count x row, grouped by customer, in the order the records were added
+//   plate days: count x row, grouped like the rows, each plate's rows by day
+//   customer days: count x row, grouped like the postings, each customer's rows by day
+//   days:    entries x (epoch day, first day row, row count), by day
+//   day rows: count x row, by day
+// Wherever rows are ordered by day, rows of the same day keep the order they were added in.
+public class HistorySegment implements Closeable {
+    private static final int MAGIC = 0x52534547;
+    private static final int VERSION = 2;
+    private static final int ROW_BYTES = 4 + 4 + 4 + 8 + 1;
+    private static final int INDEX_BYTES = 12;
+    private static final int HEADER_BYTES = 64;
+
+    private final File file;
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+    private final int count;
+    private final int plateEntries;
+    private final int customerEntries;
+    private final int dayEntries;
+    private final int rowsOffset;
+    private final int orderOffset;
+    private final int plateIndexOffset;
+    private final int customerIndexOffset;
+    private final int postingsOffset;
+    private final int plateDaysOffset;
+    private final int customerDaysOffset;
+    private final int dayIndexOffset;
+    private final int dayRowsOffset;
+    private final String[] types;
+
+    // Looks up the objects a row refers to; every plate and customer in a segment must resolve
+    public interface Resolver {
+        Vehicle vehicle(int plateCode);
+
+        Customer customer(int customerId);
+    }
+
+    private HistorySegment(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not a history segment: " + file);
+        }
+        count = data.getInt(8);
+        plateEntries = data.getInt(12);
+        customerEntries = data.getInt(16);
+        dayEntries = data.getInt(20);
+        types = new String[data.getInt(24)];
+        rowsOffset = data.getInt(28);
+        orderOffset = data.getInt(32);
+        plateIndexOffset = data.getInt(36);
+        customerIndexOffset = data.getInt(40);
+        postingsOffset = data.getInt(44);
+        plateDaysOffset = data.getInt(48);
+        customerDaysOffset = data.getInt(52);
+        dayIndexOffset = data.getInt(56);
+        dayRowsOffset = data.getInt(60);
+        int pos = HEADER_BYTES;
+        for (int i = 0; i < types.length; i++) {
+            byte[] bytes = new byte[data.getShort(pos)];
+            data.get(pos + 2, bytes);
+            types[i] = new String(bytes, StandardCharsets.UTF_8);
+            pos += 2 + bytes.length;
+        }
+    }
+
+    public static HistorySegment open(File file) throws IOException {
+        return new HistorySegment(file);
+    }
+
+    // Writes the records, in the order given, as a new segment file and opens it
+    public static HistorySegment write(File file, List<RentalRecord> records) throws IOException {
+        int n = records.size();
+        Map<String, Integer> typeIds = new HashMap<>();
+        List<String> typeNames = new ArrayList<>();
+        int[] days = new int[n];
+        long[] byPlate = new long[n];
+        long[] byCustomer = new long[n];
+        long[] byDay = new long[n];
+        for (int i = 0; i < n; i++) {
+            RentalRecord record = records.get(i);
+            typeIds.computeIfAbsent(record.getRecordType(), t -> {
+                typeNames.add(t);
+                return typeNames.size() - 1;
+            });
+            days[i] = (int) record.getRecordDate().toEpochDay();
+            // (key, index) packed so that sorting the longs sorts by key, then by insertion order
+            byPlate[i] = (long) record.getVehicle().getPlateCode() << 32 | i;
+            byCustomer[i] = (long) record.getCustomer().getCustomerId() << 32 | i;
+            byDay[i] = (long) days[i] << 32 | i;
+        }
+        Arrays.sort(byPlate);
+        Arrays.sort(byCustomer);
+        Arrays.sort(byDay);
+
+        int[] rowOf = new int[n];
+        for (int row = 0; row < n; row++) {
+            rowOf[(int) byPlate[row]] = row;
+        }
+        int plateEntries = groups(byPlate);
+        int customerEntries = groups(byCustomer);
+        int dayEntries = groups(byDay);
+
+        int headerBytes = HEADER_BYTES;
+        for (String type : typeNames) {
+            headerBytes += 2 + type.getBytes(StandardCharsets.UTF_8).length;
+        }
+        long rowsOffset = headerBytes;
+        long orderOffset = rowsOffset + (long) n * ROW_BYTES;
+        long plateIndexOffset = orderOffset + 4L * n;
+        long customerIndexOffset = plateIndexOffset + (long) INDEX_BYTES * plateEntries;
+        long postingsOffset = customerIndexOffset + (long) INDEX_BYTES * customerEntries;
+        long plateDaysOffset = postingsOffset + 4L * n;
+        long customerDaysOffset = plateDaysOffset + 4L * n;
+        long dayIndexOffset = customerDaysOffset + 4L * n;
+        long dayRowsOffset = dayIndexOffset + (long) INDEX_BYTES * dayEntries;
+        if (dayRowsOffset + 4L * n > Integer.MAX_VALUE) {
+            throw new IOException("Too many records for one segment: " + n);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeInt(plateEntries);
+            out.writeInt(customerEntries);
+            out.writeInt(dayEntries);
+            out.writeInt(typeNames.size());
+            for (long offset : new long[] { rowsOffset, orderOffset, plateIndexOffset, customerIndexOffset, postingsOffset,
+                    plateDaysOffset, customerDaysOffset, dayIndexOffset, dayRowsOffset }) {
+                out.writeInt((int) offset);
+            }
+            for (String type : typeNames) {
+                byte[] bytes = type.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+            for (int row = 0; row < n; row++) {
+                RentalRecord record = records.get((int) byPlate[row]);
+                out.writeInt(record.getVehicle().getPlateCode());
+                out.writeInt(record.getCustomer().getCustomerId());
+                out.writeInt(days[(int) byPlate[row]]);
+                out.writeLong(record.getAmountCents());
+                out.writeByte(typeIds.get(record.getRecordType()));
+            }
+            for (int i = 0; i < n; i++) {
+                out.writeInt(rowOf[i]);
+            }
+            writeIndex(out, byPlate);
+            writeIndex(out, byCustomer);
+            for (int i = 0; i < n; i++) {
+                out.writeInt(rowOf[(int) byCustomer[i]]);
+            }
+            writeByDay(out, byPlate, days, rowOf);
+            writeByDay(out, byCustomer, days, rowOf);
+            writeIndex(out, byDay);
+            for (int i = 0; i < n; i++) {
+                out.writeInt(rowOf[(int) byDay[i]]);
+            }
+        }
+        return open(file);
+    }
+
+    // Number of distinct keys in a sorted (key, index) array
+    private static int groups(long[] sorted) {
+        int groups = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || (sorted[i] >> 32) != (sorted[i - 1] >> 32)) {
+                groups++;
+            }
+        }
+        return groups;
+    }
+
+    // One (key, first, count) entry per distinct key of a sorted (key, index) array
+    private static void writeIndex(DataOutputStream out, long[] sorted) throws IOException {
+        for (int first = 0; first < sorted.length; ) {
+            int end = groupEnd(sorted, first);
+            out.writeInt((int) (sorted[first] >> 32));
+            out.writeInt(first);
+            out.writeInt(end - first);
+            first = end;
+        }
+    }
+
+    // The rows of each key group again, this time ordered by day, then by insertion order
+    private static void writeByDay(DataOutputStream out, long[] sorted, int[] days, int[] rowOf) throws IOException {
+        for (int first = 0; first < sorted.length; ) {
+            int end = groupEnd(sorted, first);
+            long[] group = new long[end - first];
+            for (int i = first; i < end; i++) {
+                int index = (int) sorted[i];
+                group[i - first] = (long) days[index] << 32 | index;
+            }
+            Arrays.sort(group);
+            for (long entry : group) {
+                out.writeInt(rowOf[(int) entry]);
+            }
+            first = end;
+        }
+    }
+
+    private static int groupEnd(long[] sorted, int first) {
+        int end = first + 1;
+        while (end < sorted.length && (sorted[end] >> 32) == (sorted[first] >> 32)) {
+            end++;
+        }
+        return end;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // All records in insertion order, read from the mapping as they are accessed
+    public List<RentalRecord> records(Resolver resolver) {
+        return rows(0, count, i -> data.getInt(orderOffset + 4 * i), resolver);
+    }
+
+    // One vehicle's records in insertion order; empty if the segment has none
+    public List<RentalRecord> recordsByPlate(int plateCode, Resolver resolver) {
+        int entry = find(plateIndexOffset, plateEntries, plateCode);
+        if (entry < 0) {
+            return Collections.emptyList();
+        }
+        return rows(data.getInt(entry + 4), data.getInt(entry + 8), IntUnaryOperator.identity(), resolver);
+    }
+
+    public List<RentalRecord> recordsByCustomer(int customerId, Resolver resolver) {
+        int entry = find(customerIndexOffset, customerEntries, customerId);
+        if (entry < 0) {
+            return Collections.emptyList();
+        }
+        return rows(data.getInt(entry + 4), data.getInt(entry + 8), i -> data.getInt(postingsOffset + 4 * i), resolver);
+    }
+
+    // --- Date queries ---
+    // Days are epoch days, both ends inclusive; every result is ordered by day
+
+    public List<RentalRecord> recordsBetween(int fromDay, int toDay, Resolver resolver) {
+        int lo = lowerEntry(dayIndexOffset, dayEntries, fromDay);
+        int hi = lowerEntry(dayIndexOffset, dayEntries, (long) toDay + 1);
+        if (lo >= hi) {
+            return Collections.emptyList();
+        }
+        int first = data.getInt(dayIndexOffset + lo * INDEX_BYTES + 4);
+        int last = dayIndexOffset + (hi - 1) * INDEX_BYTES;
+        int end = data.getInt(last + 4) + data.getInt(last + 8);
+        return rows(first, end - first, i -> data.getInt(dayRowsOffset + 4 * i), resolver);
+    }
+
+    public List<RentalRecord> recordsByPlateBetween(int plateCode, int fromDay, int toDay, Resolver resolver) {
+        return keyBetween(find(plateIndexOffset, plateEntries, plateCode), plateDaysOffset, fromDay, toDay, resolver);
+    }
+
+    public List<RentalRecord> recordsByCustomerBetween(int customerId, int fromDay, int toDay, Resolver resolver) {
+        return keyBetween(find(customerIndexOffset, customerEntries, customerId), customerDaysOffset, fromDay, toDay, resolver);
+    }
+
+    private List<RentalRecord> keyBetween(int entry, int sectionOffset, int fromDay, int toDay, Resolver resolver) {
+        if (entry < 0) {
+            return Collections.emptyList();
+        }
+        int first = data.getInt(entry + 4);
+        int end = first + data.getInt(entry + 8);
+        IntUnaryOperator rowAt = i -> data.getInt(sectionOffset + 4 * i);
+        int lo = lowerDay(rowAt, first, end, fromDay);
+        int hi = lowerDay(rowAt, lo, end, (long) toDay + 1);
+        return rows(lo, hi - lo, rowAt, resolver);
+    }
+
+    // Adds the number of records on each day in the range to counts
+    public void addDayCounts(int fromDay, int toDay, SortedMap<LocalDate, Integer> counts) {
+        int hi = lowerEntry(dayIndexOffset, dayEntries, (long) toDay + 1);
+        for (int e = lowerEntry(dayIndexOffset, dayEntries, fromDay); e < hi; e++) {
+            int entry = dayIndexOffset + e * INDEX_BYTES;
+            counts.merge(LocalDate.ofEpochDay(data.getInt(entry)), data.getInt(entry + 8), Integer::sum);
+        }
+    }
+
+    public int countBetween(int fromDay, int toDay) {
+        int lo = lowerEntry(dayIndexOffset, dayEntries, fromDay);
+        int hi = lowerEntry(dayIndexOffset, dayEntries, (long) toDay + 1);
+        if (lo >= hi) {
+            return 0;
+        }
+        int last = dayIndexOffset + (hi - 1) * INDEX_BYTES;
+        return data.getInt(last + 4) + data.getInt(last + 8) - data.getInt(dayIndexOffset + lo * INDEX_BYTES + 4);
+    }
+
+    // First index entry whose key is at least key, or entries if there is none
+    private int lowerEntry(int indexOffset, int entries, long key) {
+        int low = 0;
+        int high = entries;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (data.getInt(indexOffset + mid * INDEX_BYTES) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First position in [first, end) whose row is dated day or later; the rows there are ordered by day
+    private int lowerDay(IntUnaryOperator rowAt, int first, int end, long day) {
+        int low = first;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (data.getInt(rowsOffset + rowAt.applyAsInt(mid) * ROW_BYTES + 8) < day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private List<RentalRecord> rows(int first, int length, IntUnaryOperator rowAt, Resolver resolver) {
+        return new AbstractList<RentalRecord>() {
+            @Override
+            public RentalRecord get(int index) {
+                if (index < 0 || index >= length) {
+                    throw new IndexOutOfBoundsException("Index: " + index);
+                }
+                return row(rowAt.applyAsInt(first + index), resolver);
+            }
+
+            @Override
+            public int size() {
+                return length;
+            }
+        };
+    }
+
+    private RentalRecord row(int row, Resolver resolver) {
+        int pos = rowsOffset + row * ROW_BYTES;
+        LocalDate date = LocalDate.ofEpochDay(data.getInt(pos + 8));
+        return RentalRecord.ofCents(resolver.vehicle(data.getInt(pos)), resolver.customer(data.getInt(pos + 4)), date,
+                data.getLong(pos + 12), types[data.get(pos + 20)]);
+    }
+
+    // Binary search over a sorted (key, first, length) index; returns the entry's offset or -1
+    private int find(int indexOffset, int entries, int key) {
+        int low = 0;
+        int high = entries - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midKey = data.getInt(indexOffset + mid * INDEX_BYTES);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return indexOffset + mid * INDEX_BYTES;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
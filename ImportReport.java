@@ -0,0 +1,79 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Outcome of a bulk import. Only rejected rows are stored, so importing a large file
+// keeps memory flat; any row not listed as rejected was added.
+public class ImportReport {
+    // NOT_SAVED: the row was valid but the journal append for its chunk failed
+    public enum Reason { INVALID, DUPLICATE_IN_BATCH, ALREADY_EXISTS, NOT_SAVED }
+
+    public static class Rejection {
+        private final long row;
+        private final String key;
+        private final Reason reason;
+        private final String message;
+
+        Rejection(long row, String key, Reason reason, String message) {
+            this.row = row;
+            this.key = key;
+            this.reason = reason;
+            this.message = message;
+        }
+
+        public long getRow() { return row; }
+
+        public String getKey() { return key; }
+
+        public Reason getReason() { return reason; }
+
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "Row " + row + " (" + key + "): " + reason + (message == null ? "" : " - " + message);
+        }
+    }
+
+    private final List<Rejection> rejections = new ArrayList<>();
+    private long accepted;
+
+    void accept() {
+        accepted++;
+    }
+
+    void reject(long row, String key, Reason reason, String message) {
+        rejections.add(new Rejection(row, key, reason, message));
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejections.size();
+    }
+
+    public long getTotal() {
+        return accepted + rejections.size();
+    }
+
+    public List<Rejection> getRejections() {
+        return Collections.unmodifiableList(rejections);
+    }
+
+    // The rejection for a row, or null if the row was added. Rows are numbered from 1.
+    public Rejection getRejection(long row) {
+        for (Rejection rejection : rejections) {
+            if (rejection.row == row) {
+                return rejection;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return accepted + " added, " + rejections.size() + " rejected";
+    }
+}
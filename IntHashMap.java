@@ -0,0 +1,234 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntFunction;
+
+// Open-addressing hash map keyed by a primitive int, so lookups never box the key.
+// Writers take a lock; readers go through an optimistic read and only fall back to
+// the read lock when a write raced with them.
+public class IntHashMap<V> {
+    private static final byte FULL = 1;
+
+    private static final class Table {
+        final int[] keys;
+        final Object[] values;
+        final byte[] states;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            values = new Object[capacity];
+            states = new byte[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private final StampedLock lock = new StampedLock();
+    private Table table;
+    private int size;
+
+    public IntHashMap() {
+        this(16);
+    }
+
+    public IntHashMap(int expectedSize) {
+        table = new Table(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // Spreads the bits so sequential ids don't cluster in neighbouring slots
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // The table is never more than 3/4 full, so probing always reaches an empty slot
+    private static Object find(Table t, int key) {
+        int slot = mix(key) & t.mask;
+        while (t.states[slot] == FULL) {
+            if (t.keys[slot] == key) {
+                return t.values[slot];
+            }
+            slot = (slot + 1) & t.mask;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        long stamp = lock.tryOptimisticRead();
+        Object value = find(table, key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = find(table, key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return (V) value;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    public V put(int key, V value) {
+        long stamp = lock.writeLock();
+        try {
+            return insert(key, value, true);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public V putIfAbsent(int key, V value) {
+        long stamp = lock.writeLock();
+        try {
+            return insert(key, value, false);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public V computeIfAbsent(int key, IntFunction<? extends V> factory) {
+        V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        long stamp = lock.writeLock();
+        try {
+            @SuppressWarnings("unchecked")
+            V raced = (V) find(table, key);
+            if (raced != null) {
+                return raced;
+            }
+            V created = factory.apply(key);
+            insert(key, created, true);
+            return created;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Removes the entry only while it still maps to this value. The entries after it in its
+    // probe run are shifted back, so lookups never need tombstones.
+    public boolean remove(int key, V value) {
+        long stamp = lock.writeLock();
+        try {
+            Table t = table;
+            int slot = mix(key) & t.mask;
+            while (t.states[slot] == FULL && t.keys[slot] != key) {
+                slot = (slot + 1) & t.mask;
+            }
+            if (t.states[slot] != FULL || t.values[slot] != value) {
+                return false;
+            }
+            int hole = slot;
+            for (int next = (hole + 1) & t.mask; t.states[next] == FULL; next = (next + 1) & t.mask) {
+                // The entry at next may fill the hole if the hole lies between its home slot and next
+                int home = mix(t.keys[next]) & t.mask;
+                if (((next - home) & t.mask) >= ((next - hole) & t.mask)) {
+                    t.keys[hole] = t.keys[next];
+                    t.values[hole] = t.values[next];
+                    hole = next;
+                }
+            }
+            t.states[hole] = 0;
+            t.values[hole] = null;
+            size--;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V insert(int key, V value, boolean replace) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported");
+        }
+        Table t = table;
+        int slot = mix(key) & t.mask;
+        while (t.states[slot] == FULL) {
+            if (t.keys[slot] == key) {
+                V old = (V) t.values[slot];
+                if (replace) {
+                    t.values[slot] = value;
+                }
+                return old;
+            }
+            slot = (slot + 1) & t.mask;
+        }
+        t.keys[slot] = key;
+        t.values[slot] = value;
+        t.states[slot] = FULL;
+        if (++size > (t.mask + 1) * 3 / 4) {
+            table = rehash(t, (t.mask + 1) << 1);
+        }
+        return null;
+    }
+
+    private static Table rehash(Table old, int capacity) {
+        Table t = new Table(capacity);
+        for (int i = 0; i < old.states.length; i++) {
+            if (old.states[i] == FULL) {
+                int slot = mix(old.keys[i]) & t.mask;
+                while (t.states[slot] == FULL) {
+                    slot = (slot + 1) & t.mask;
+                }
+                t.keys[slot] = old.keys[i];
+                t.values[slot] = old.values[i];
+                t.states[slot] = FULL;
+            }
+        }
+        return t;
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            table = new Table(16);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        long stamp = lock.readLock();
+        try {
+            Table t = table;
+            List<V> result = new ArrayList<>(size);
+            for (int i = 0; i < t.states.length; i++) {
+                if (t.states[i] == FULL) {
+                    result.add((V) t.values[i]);
+                }
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+import java.time.LocalDate;
+
+// One fact in a RentalJournal. Events are immutable and name vehicles and customers by
+// plate code and id, so a journal can be parsed without the state it builds.
+//
+// Each event is one CSV line whose first field is its tag:
+//   VEHICLE,<vehicle as in vehicles.txt>      CUSTOMER,<id>,<name>
+//   RENT,<plate>,<customer id>,<date>,<amount>[,<due date>]
+//   RETURN,<plate>,<customer id>,<date>,<amount>
+//   RESERVE,<plate>,<customer id>,<from>,<to>  CANCEL,<plate>,<customer id>,<from>,<to>
+//   STATUS,<plate>,<status>
+public sealed interface JournalEvent {
+    String toJournalLine();
+
+    // The vehicle's fields, not the Vehicle, which is mutable; extra holds the class fields
+    // as packed by VehicleType.packExtra
+    record VehicleAdded(VehicleType type, int plateCode, String make, String model, int year, long extra) implements JournalEvent {
+        static VehicleAdded of(Vehicle vehicle) {
+            return new VehicleAdded(VehicleType.of(vehicle), vehicle.getPlateCode(), vehicle.getMake(), vehicle.getModel(),
+                    vehicle.getYear(), VehicleType.packExtra(vehicle));
+        }
+
+        // A new AVAILABLE vehicle with these fields
+        Vehicle toVehicle() {
+            Vehicle vehicle = type.unpackVehicle(make, model, year, extra);
+            vehicle.setPlateCode(plateCode);
+            return vehicle;
+        }
+
+        @Override
+        public String toJournalLine() {
+            return "VEHICLE," + toVehicle().toFileString();
+        }
+    }
+
+    // The customer's fields, like VehicleAdded
+    record CustomerAdded(int customerId, String name) implements JournalEvent {
+        static CustomerAdded of(Customer customer) {
+            return new CustomerAdded(customer.getCustomerId(), customer.getCustomerName());
+        }
+
+        Customer toCustomer() {
+            return new Customer(customerId, name);
+        }
+
+        @Override
+        public String toJournalLine() {
+            return "CUSTOMER," + customerId + "," + name;
+        }
+    }
+
+    // due is LocalDate.MAX for a rent priced by hand
+    record Rented(int plateCode, int customerId, LocalDate date, long amountCents, LocalDate due) implements JournalEvent {
+        @Override
+        public String toJournalLine() {
+            StringBuilder line = new StringBuilder(48).append("RENT,");
+            PlateCode.appendTo(line, plateCode).append(',').append(customerId).append(',').append(date).append(',');
+            appendCents(line, amountCents);
+            if (!due.equals(LocalDate.MAX)) {
+                line.append(',').append(due);
+            }
+            return line.toString();
+        }
+    }
+
+    record Returned(int plateCode, int customerId, LocalDate date, long amountCents) implements JournalEvent {
+        @Override
+        public String toJournalLine() {
+            StringBuilder line = new StringBuilder(40).append("RETURN,");
+            PlateCode.appendTo(line, plateCode).append(',').append(customerId).append(',').append(date).append(',');
+            return appendCents(line, amountCents).toString();
+        }
+    }
+
+    record Reserved(int plateCode, int customerId, LocalDate from, LocalDate to) implements JournalEvent {
+        @Override
+        public String toJournalLine() {
+            return bookingLine("RESERVE,", plateCode, customerId, from, to);
+        }
+    }
+
+    record ReservationCancelled(int plateCode, int customerId, LocalDate from, LocalDate to) implements JournalEvent {
+        @Override
+        public String toJournalLine() {
+            return bookingLine("CANCEL,", plateCode, customerId, from, to);
+        }
+    }
+
+    // Only statuses set by hand are journaled; RENTED and RESERVED follow from the other events
+    record StatusChanged(int plateCode, Vehicle.VehicleStatus status) implements JournalEvent {
+        @Override
+        public String toJournalLine() {
+            return PlateCode.appendTo(new StringBuilder(24).append("STATUS,"), plateCode).append(',').append(status).toString();
+        }
+    }
+
+    // Returns null for a line with an unknown tag; throws IllegalArgumentException for bad fields
+    static JournalEvent parse(MappedFileReader.LineCursor line) {
+        if (line.nextFieldEqualsIgnoreCase("RENT")) {
+            int plate = line.nextPlateCode();
+            int customer = line.nextInt();
+            LocalDate date = line.nextDate();
+            long cents = Math.round(line.nextDouble() * 100);
+            return new Rented(plate, customer, date, cents, line.hasMoreFields() ? line.nextDate() : LocalDate.MAX);
+        } else if (line.nextFieldEqualsIgnoreCase("RETURN")) {
+            return new Returned(line.nextPlateCode(), line.nextInt(), line.nextDate(), Math.round(line.nextDouble() * 100));
+        } else if (line.nextFieldEqualsIgnoreCase("VEHICLE")) {
+            Vehicle vehicle = TextStorageCodec.parseVehicle(line);
+            return vehicle == null ? null : VehicleAdded.of(vehicle);
+        } else if (line.nextFieldEqualsIgnoreCase("CUSTOMER")) {
+            return CustomerAdded.of(TextStorageCodec.parseCustomer(line));
+        } else if (line.nextFieldEqualsIgnoreCase("RESERVE")) {
+            return new Reserved(line.nextPlateCode(), line.nextInt(), line.nextDate(), line.nextDate());
+        } else if (line.nextFieldEqualsIgnoreCase("CANCEL")) {
+            return new ReservationCancelled(line.nextPlateCode(), line.nextInt(), line.nextDate(), line.nextDate());
+        } else if (line.nextFieldEqualsIgnoreCase("STATUS")) {
+            return new StatusChanged(line.nextPlateCode(), Vehicle.VehicleStatus.valueOf(line.nextString().toUpperCase()));
+        }
+        return null;
+    }
+
+    private static String bookingLine(String tag, int plateCode, int customerId, LocalDate from, LocalDate to) {
+        StringBuilder line = new StringBuilder(40).append(tag);
+        return PlateCode.appendTo(line, plateCode).append(',').append(customerId).append(',')
+                .append(from).append(',').append(to).toString();
+    }
+
+    // Exact two-decimal amount, so cents survive the round trip
+    private static StringBuilder appendCents(StringBuilder line, long cents) {
+        if (cents < 0) {
+            line.append('-');
+            cents = -cents;
+        }
+        long fraction = cents % 100;
+        return line.append(cents / 100).append('.').append(fraction < 10 ? "0" : "").append(fraction);
+    }
+}
@@ -0,0 +1,8 @@
+import java.util.List;
+
+// A read model built from a RentalJournal. Replay and backfill hand it the journal in order,
+// one batch at a time. Live appends arrive as they happen, possibly from several threads at
+// once, but always in order for any one vehicle.
+public interface JournalProjection {
+    void apply(List<JournalEvent> batch);
+}
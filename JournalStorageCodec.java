@@ -0,0 +1,99 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+
+// The journal.txt a RentalSystem keeps in its data directory, as RentalData. Reading
+// replays the VEHICLE, CUSTOMER, RENT, RETURN and STATUS lines; reservations are not part
+// of RentalData and are skipped. Writing produces a journal a RentalSystem starts from,
+// with a STATUS line for each vehicle whose status the rental records do not explain.
+public class JournalStorageCodec implements StorageCodec {
+    public static final String JOURNAL_FILE = "journal.txt";
+
+    @Override
+    public void write(RentalData data, File directory) throws IOException {
+        directory.mkdirs();
+        IntHashMap<Vehicle.VehicleStatus> replayed = new IntHashMap<>();
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(new File(directory, JOURNAL_FILE))))) {
+            for (Vehicle vehicle : data.getVehicles()) {
+                out.println(JournalEvent.VehicleAdded.of(vehicle).toJournalLine());
+                replayed.put(vehicle.getPlateCode(), Vehicle.VehicleStatus.AVAILABLE);
+            }
+            for (Customer customer : data.getCustomers()) {
+                out.println(JournalEvent.CustomerAdded.of(customer).toJournalLine());
+            }
+            for (RentalRecord record : data.getRecords()) {
+                JournalEvent event = toEvent(record);
+                if (event == null) continue;
+                out.println(event.toJournalLine());
+                replayed.put(record.getVehicle().getPlateCode(), event instanceof JournalEvent.Rented
+                        ? Vehicle.VehicleStatus.RENTED : Vehicle.VehicleStatus.AVAILABLE);
+            }
+            for (Vehicle vehicle : data.getVehicles()) {
+                if (vehicle.getStatus() != replayed.get(vehicle.getPlateCode())) {
+                    out.println(new JournalEvent.StatusChanged(vehicle.getPlateCode(), vehicle.getStatus()).toJournalLine());
+                }
+            }
+        }
+    }
+
+    // Null for a record type the journal has no event for
+    private static JournalEvent toEvent(RentalRecord record) {
+        int plate = record.getVehicle().getPlateCode();
+        int customer = record.getCustomer().getCustomerId();
+        if (record.getRecordType().equals("RENT")) {
+            return new JournalEvent.Rented(plate, customer, record.getRecordDate(), record.getAmountCents(), LocalDate.MAX);
+        } else if (record.getRecordType().equals("RETURN")) {
+            return new JournalEvent.Returned(plate, customer, record.getRecordDate(), record.getAmountCents());
+        }
+        return null;
+    }
+
+    @Override
+    public RentalData read(File directory) throws IOException {
+        RentalData data = new RentalData();
+        IntHashMap<Vehicle> vehiclesByPlate = new IntHashMap<>();
+        IntHashMap<Customer> customersById = new IntHashMap<>();
+
+        File journal = new File(directory, JOURNAL_FILE);
+        if (!journal.exists()) {
+            return data;
+        }
+        MappedFileReader.forEachLine(journal, line -> {
+            JournalEvent event = JournalEvent.parse(line);
+            if (event instanceof JournalEvent.VehicleAdded added) {
+                Vehicle vehicle = added.toVehicle();
+                if (vehiclesByPlate.putIfAbsent(vehicle.getPlateCode(), vehicle) == null) {
+                    data.getVehicles().add(vehicle);
+                }
+            } else if (event instanceof JournalEvent.CustomerAdded added) {
+                Customer customer = added.toCustomer();
+                if (customersById.putIfAbsent(customer.getCustomerId(), customer) == null) {
+                    data.getCustomers().add(customer);
+                }
+            } else if (event instanceof JournalEvent.Rented rented) {
+                addRecord(data, vehiclesByPlate.get(rented.plateCode()), customersById.get(rented.customerId()),
+                        rented.date(), rented.amountCents(), "RENT", Vehicle.VehicleStatus.RENTED);
+            } else if (event instanceof JournalEvent.Returned returned) {
+                addRecord(data, vehiclesByPlate.get(returned.plateCode()), customersById.get(returned.customerId()),
+                        returned.date(), returned.amountCents(), "RETURN", Vehicle.VehicleStatus.AVAILABLE);
+            } else if (event instanceof JournalEvent.StatusChanged changed) {
+                Vehicle vehicle = vehiclesByPlate.get(changed.plateCode());
+                if (vehicle != null) {
+                    vehicle.setStatus(changed.status());
+                }
+            }
+        });
+        return data;
+    }
+
+    // Records of an unknown vehicle or customer are dropped, as on a RentalSystem replay
+    private static void addRecord(RentalData data, Vehicle vehicle, Customer customer, LocalDate date,
+                                  long cents, String type, Vehicle.VehicleStatus status) {
+        if (vehicle == null || customer == null) return;
+        data.getRecords().add(RentalRecord.ofCents(vehicle, customer, date, cents, type));
+        vehicle.setStatus(status);
+    }
+}
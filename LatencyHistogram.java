@@ -0,0 +1,126 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free log-linear histogram of nanosecond latencies, in the style of HdrHistogram:
+// every power of two is split into 32 linear sub-buckets, so any recorded value is
+// reported within about 3% while the whole range up to 2^62 ns fits in ~1900 counters.
+// The counters are striped like a LongAdder: each thread counts in the stripe its id
+// hashes to, so threads recording the same latency do not fight over one cache line,
+// and readers add the stripes up. A stripe is only allocated once a thread uses it.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (62 - SUB_BITS + 2) * SUB_BUCKETS;
+    private static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+    private final AtomicReferenceArray<AtomicLongArray> counts = new AtomicReferenceArray<>(STRIPES);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        int highBit = 63 - Long.numberOfLeadingZeros(value);
+        int shift = highBit - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    // Largest value that falls into the bucket
+    static long bucketHigh(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    // Smallest power of two that gives every processor its own stripe, at most 64
+    private static int stripes(int processors) {
+        return Integer.highestOneBit(Math.max(1, Math.min(processors, 64)) * 2 - 1);
+    }
+
+    private AtomicLongArray stripe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ id >>> 32) * 0x9E3779B9;
+        int index = (h ^ h >>> 16) & (STRIPES - 1);
+        AtomicLongArray stripe = counts.get(index);
+        if (stripe == null) {
+            counts.compareAndSet(index, null, new AtomicLongArray(BUCKETS));
+            stripe = counts.get(index);
+        }
+        return stripe;
+    }
+
+    public void record(long nanos) {
+        stripe().incrementAndGet(bucket(nanos));
+        total.increment();
+        sum.add(nanos);
+        // Only contends while the maximum is still climbing
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = total.sum();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    // Upper bound of the bucket holding the p-th percentile, capped at the recorded maximum
+    public long getPercentile(double percentile) {
+        long count = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray stripe = counts.get(s);
+            if (stripe == null) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                long n = stripe.get(i);
+                snapshot[i] += n;
+                count += n;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(bucketHigh(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray stripe = counts.get(s);
+            if (stripe == null) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                stripe.set(i, 0);
+            }
+        }
+        total.reset();
+        sum.reset();
+        max.set(0);
+    }
+}
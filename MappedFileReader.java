@@ -0,0 +1,303 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streams a comma-separated data file through memory-mapped windows and parses
+// fields straight from the bytes, without building a String per line or per field.
+public class MappedFileReader {
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    public interface LineHandler {
+        void onLine(LineCursor line);
+    }
+
+    // Field tokenizer over one line of the mapped buffer. Reused for every line.
+    public static class LineCursor {
+        private MappedByteBuffer buffer;
+        private int pos;
+        private int end;
+        private byte[] scratch = new byte[64];
+
+        void reset(MappedByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.pos = start;
+            // Tolerate files written with Windows line endings
+            this.end = end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+        }
+
+        public boolean isEmpty() {
+            return pos >= end;
+        }
+
+        public boolean hasMoreFields() {
+            return pos <= end;
+        }
+
+        private int fieldEnd() {
+            int i = pos;
+            while (i < end && buffer.get(i) != ',') {
+                i++;
+            }
+            return i;
+        }
+
+        private void skipField(int fieldEnd) {
+            pos = fieldEnd + 1;
+        }
+
+        private String decode(int from, int to) {
+            int length = to - from;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                scratch[i] = buffer.get(from + i);
+            }
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        public String nextString() {
+            int fieldEnd = fieldEnd();
+            String value = decode(pos, fieldEnd);
+            skipField(fieldEnd);
+            return value;
+        }
+
+        // Everything up to the end of the line, commas included
+        public String restOfLine() {
+            String value = decode(Math.min(pos, end), end);
+            pos = end + 1;
+            return value;
+        }
+
+        // Compares the next field to an ASCII keyword and consumes it only on a match
+        public boolean nextFieldEqualsIgnoreCase(String keyword) {
+            int fieldEnd = fieldEnd();
+            if (fieldEnd - pos != keyword.length()) {
+                return false;
+            }
+            for (int i = 0; i < keyword.length(); i++) {
+                int c = buffer.get(pos + i);
+                if (Character.toLowerCase(c) != Character.toLowerCase(keyword.charAt(i))) {
+                    return false;
+                }
+            }
+            skipField(fieldEnd);
+            return true;
+        }
+
+        public void skipNextField() {
+            skipField(fieldEnd());
+        }
+
+        public int nextInt() {
+            int fieldEnd = fieldEnd();
+            int i = pos;
+            boolean negative = i < fieldEnd && buffer.get(i) == '-';
+            if (negative) {
+                i++;
+            }
+            if (i == fieldEnd) {
+                throw new NumberFormatException("Empty number");
+            }
+            long value = 0;
+            for (; i < fieldEnd; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("Not a number: " + decode(pos, fieldEnd));
+                }
+                value = value * 10 + digit;
+                if (value > Integer.MAX_VALUE + 1L) {
+                    throw new NumberFormatException("Number out of range: " + decode(pos, fieldEnd));
+                }
+            }
+            value = negative ? -value : value;
+            if (value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("Number out of range: " + decode(pos, fieldEnd));
+            }
+            skipField(fieldEnd);
+            return (int) value;
+        }
+
+        // Plain decimals like 125.5 are parsed from the digits. Anything else (exponents,
+        // more than 15 significant digits) goes through Double.parseDouble.
+        public double nextDouble() {
+            int fieldEnd = fieldEnd();
+            int i = pos;
+            boolean negative = i < fieldEnd && buffer.get(i) == '-';
+            if (negative) {
+                i++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = -1;
+            boolean fastPath = i < fieldEnd;
+            for (; i < fieldEnd && fastPath; i++) {
+                int c = buffer.get(i);
+                if (c == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                } else if (c >= '0' && c <= '9' && digits < 15) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                    if (fractionDigits >= 0) {
+                        fractionDigits++;
+                    }
+                } else {
+                    fastPath = false;
+                }
+            }
+            double value;
+            if (fastPath && digits > 0) {
+                // Exact mantissa and power of ten, so one division rounds the same way parseDouble does
+                value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+                value = negative ? -value : value;
+            } else {
+                value = Double.parseDouble(decode(pos, fieldEnd));
+            }
+            skipField(fieldEnd);
+            return value;
+        }
+
+        // The next field as a PlateCode, or PlateCode.INVALID; no String is built
+        public int nextPlateCode() {
+            int fieldEnd = fieldEnd();
+            int length = fieldEnd - pos;
+            int code = PlateCode.INVALID;
+            if (length == PlateCode.LENGTH) {
+                for (int i = 0; i < length; i++) {
+                    scratch[i] = buffer.get(pos + i);
+                }
+                code = PlateCode.parse(scratch, 0, length);
+            }
+            skipField(fieldEnd);
+            return code;
+        }
+
+        public boolean nextBoolean() {
+            if (nextFieldEqualsIgnoreCase("true")) {
+                return true;
+            }
+            skipNextField();
+            return false;
+        }
+
+        // Parses an ISO yyyy-MM-dd date
+        public LocalDate nextDate() {
+            int fieldEnd = fieldEnd();
+            if (fieldEnd - pos != 10 || buffer.get(pos + 4) != '-' || buffer.get(pos + 7) != '-') {
+                throw new IllegalArgumentException("Invalid date: " + decode(pos, fieldEnd));
+            }
+            int year = digits(pos, 4);
+            int month = digits(pos + 5, 2);
+            int day = digits(pos + 8, 2);
+            skipField(fieldEnd);
+            return LocalDate.of(year, month, day);
+        }
+
+        private int digits(int from, int count) {
+            int value = 0;
+            for (int i = from; i < from + count; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new IllegalArgumentException("Invalid date digits");
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+    }
+
+    private static final double[] POWERS_OF_TEN = new double[16];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    public static void forEachLine(File file, LineHandler handler) throws IOException {
+        forEachLine(file, 0, handler);
+    }
+
+    // Visits the lines from byte offset start to the end of the file; start must be a line start
+    public static void forEachLine(File file, long start, LineHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            forEachLine(channel, start, channel.size(), handler);
+        }
+    }
+
+    // Visits every line that starts in [start, end). Ranges from splitAtLines never cut a line.
+    public static void forEachLine(FileChannel channel, long start, long end, LineHandler handler) throws IOException {
+        LineCursor cursor = new LineCursor();
+        long windowStart = start;
+        while (windowStart < end) {
+            long windowSize = Math.min(WINDOW_SIZE, end - windowStart);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+            int limit = (int) windowSize;
+            boolean lastWindow = windowStart + windowSize >= end;
+            if (!lastWindow) {
+                // Stop the window after its last complete line; the rest starts the next window
+                while (limit > 0 && buffer.get(limit - 1) != '\n') {
+                    limit--;
+                }
+                if (limit == 0) {
+                    throw new IOException("Line longer than " + WINDOW_SIZE + " bytes in " + channel);
+                }
+            }
+            int lineStart = 0;
+            for (int i = 0; i < limit; i++) {
+                if (buffer.get(i) == '\n') {
+                    visit(cursor, buffer, lineStart, i, handler);
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart < limit) {
+                visit(cursor, buffer, lineStart, limit, handler);
+            }
+            windowStart += limit;
+        }
+    }
+
+    private static void visit(LineCursor cursor, MappedByteBuffer buffer, int start, int end, LineHandler handler) {
+        cursor.reset(buffer, start, end);
+        if (!cursor.isEmpty()) {
+            handler.onLine(cursor);
+        }
+    }
+
+    // Splits the file into roughly equal [start, end) ranges that each begin at a line start
+    public static List<long[]> splitAtLines(FileChannel channel, int parts) throws IOException {
+        return splitAtLines(channel, 0, channel.size(), parts);
+    }
+
+    // The same for the lines in [from, size); from must be a line start
+    public static List<long[]> splitAtLines(FileChannel channel, long from, long size, int parts) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        long start = from;
+        java.nio.ByteBuffer one = java.nio.ByteBuffer.allocate(1);
+        for (int p = 1; p <= parts && start < size; p++) {
+            long end = p == parts ? size : Math.max(start, from + (size - from) * p / parts);
+            // Move the cut forward to just past the next newline
+            while (end < size) {
+                one.clear();
+                channel.read(one, end);
+                end++;
+                if (one.get(0) == '\n') {
+                    break;
+                }
+            }
+            if (end > start) {
+                ranges.add(new long[] { start, end });
+            }
+            start = end;
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,109 @@
+// License plates are always 3 letters followed by 3 digits, so a plate fits in an int:
+// the letters as a base-26 number times 1000, plus the digits. Codes sort the same way
+// as the upper-case plates, compare with ==, and hash without touching a String.
+// Parsing is case-insensitive and never allocates; INVALID marks anything malformed.
+public final class PlateCode {
+    public static final int INVALID = -1;
+    public static final int SPACE = 26 * 26 * 26 * 1000;
+    public static final int LENGTH = 6;
+
+    private PlateCode() {}
+
+    public static int parse(CharSequence plate) {
+        if (plate == null || plate.length() != LENGTH) {
+            return INVALID;
+        }
+        int code = 0;
+        for (int i = 0; i < 3; i++) {
+            int letter = letter(plate.charAt(i));
+            if (letter < 0) {
+                return INVALID;
+            }
+            code = code * 26 + letter;
+        }
+        for (int i = 3; i < LENGTH; i++) {
+            int digit = plate.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            code = code * 10 + digit;
+        }
+        return code;
+    }
+
+    // Same as parse, over the ASCII bytes of a data file
+    public static int parse(byte[] bytes, int offset, int length) {
+        if (length != LENGTH) {
+            return INVALID;
+        }
+        int code = 0;
+        for (int i = 0; i < 3; i++) {
+            int letter = letter((char) bytes[offset + i]);
+            if (letter < 0) {
+                return INVALID;
+            }
+            code = code * 26 + letter;
+        }
+        for (int i = 3; i < LENGTH; i++) {
+            int digit = bytes[offset + i] - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            code = code * 10 + digit;
+        }
+        return code;
+    }
+
+    private static int letter(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        return -1;
+    }
+
+    public static boolean isValid(CharSequence plate) {
+        return parse(plate) != INVALID;
+    }
+
+    public static boolean isValid(int code) {
+        return code >= 0 && code < SPACE;
+    }
+
+    // Writes the upper-case plate into dest at offset
+    public static void format(int code, char[] dest, int offset) {
+        if (!isValid(code)) {
+            throw new IllegalArgumentException("Not a plate code: " + code);
+        }
+        int letters = code / 1000;
+        int digits = code % 1000;
+        dest[offset] = (char) ('A' + letters / (26 * 26));
+        dest[offset + 1] = (char) ('A' + letters / 26 % 26);
+        dest[offset + 2] = (char) ('A' + letters % 26);
+        dest[offset + 3] = (char) ('0' + digits / 100);
+        dest[offset + 4] = (char) ('0' + digits / 10 % 10);
+        dest[offset + 5] = (char) ('0' + digits % 10);
+    }
+
+    public static StringBuilder appendTo(StringBuilder out, int code) {
+        if (!isValid(code)) {
+            throw new IllegalArgumentException("Not a plate code: " + code);
+        }
+        int letters = code / 1000;
+        int digits = code % 1000;
+        return out.append((char) ('A' + letters / (26 * 26)))
+                .append((char) ('A' + letters / 26 % 26))
+                .append((char) ('A' + letters % 26))
+                .append((char) ('0' + digits / 100))
+                .append((char) ('0' + digits / 10 % 10))
+                .append((char) ('0' + digits % 10));
+    }
+
+    public static String format(int code) {
+        char[] plate = new char[LENGTH];
+        format(code, plate, 0);
+        return new String(plate);
+    }
+}
@@ -0,0 +1,303 @@
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Prices rentals and returns from the vehicle's rate class, the dates, the length of the
+// rental and the customer's tier. All money is long cents and percentages are basis points.
+//
+// The setters edit the rate tables and compile them into flat lookup arrays, which are
+// published in one volatile write. Quotes read that snapshot without locking and without
+// allocating, so a quote never sees half an update.
+public class PricingEngine {
+    // Sport cars at or above this horsepower, and trucks at or above these capacities, price higher
+    public static final int HIGH_POWER_HP = 500;
+    public static final double MEDIUM_CARGO = 10.0;
+    public static final double HEAVY_CARGO = 25.0;
+
+    public enum RateClass {
+        CAR, SPORT_CAR, SPORT_CAR_HIGH_POWER, TRUCK_LIGHT, TRUCK_MEDIUM, TRUCK_HEAVY, MOTORCYCLE, MOTORCYCLE_SIDECAR
+    }
+
+    public enum CustomerTier {
+        STANDARD, SILVER, GOLD
+    }
+
+    private static final RateClass[] CLASSES = RateClass.values();
+    private static final CustomerTier[] TIERS = CustomerTier.values();
+    // In RateClass order
+    private static final long[] DEFAULT_DAILY_CENTS = { 4_500, 12_000, 18_000, 7_000, 9_500, 14_000, 3_000, 3_800 };
+    private static final long[] DEFAULT_RETURN_FEE_CENTS = { 1_500, 2_500, 2_500, 3_500, 3_500, 3_500, 1_000, 1_000 };
+
+    // The editable tables; only touched under the engine's lock
+    private final long[] dailyCents = new long[CLASSES.length];
+    private final long[] returnFeeCents = new long[CLASSES.length];
+    private final long[] tierMinRentals = new long[TIERS.length];
+    private final int[] tierDiscountBps = new int[TIERS.length];
+    private final List<int[]> durationDiscounts = new ArrayList<>();
+    private final List<Season> seasons = new ArrayList<>();
+    private int turboSurchargeBps;
+    private int lateFeeBps;
+
+    private volatile Rates rates;
+
+    private static final class Season {
+        final MonthDay from;
+        final MonthDay to;
+        final int surchargeBps;
+
+        Season(MonthDay from, MonthDay to, int surchargeBps) {
+            this.from = from;
+            this.to = to;
+            this.surchargeBps = surchargeBps;
+        }
+    }
+
+    // The compiled tables. paidByDay holds, for each class, the running total of its daily
+    // price with the season applied from Jan 1 up to each day of the year:
+    // [leap year ? 1 : 0][class * 367 + day of year], with day 0 holding 0. Any span of
+    // days is then priced from the two ends and whole years in between.
+    private static final class Rates {
+        final long[][] paidByDay = new long[2][CLASSES.length * 367];
+        final long[] dailyCents;
+        final long[] returnFeeCents;
+        final long[] tierMinRentals;
+        final int[] tierDiscountBps;
+        // Indexed by rental days, capped at the last entry
+        final int[] durationDiscountBps;
+        final int turboSurchargeBps;
+        final int lateFeeBps;
+
+        Rates(PricingEngine source) {
+            dailyCents = source.dailyCents.clone();
+            returnFeeCents = source.returnFeeCents.clone();
+            tierMinRentals = source.tierMinRentals.clone();
+            tierDiscountBps = source.tierDiscountBps.clone();
+            turboSurchargeBps = source.turboSurchargeBps;
+            lateFeeBps = source.lateFeeBps;
+
+            int longest = 1;
+            for (int[] discount : source.durationDiscounts) {
+                longest = Math.max(longest, discount[0]);
+            }
+            durationDiscountBps = new int[longest + 1];
+            for (int[] discount : source.durationDiscounts) {
+                Arrays.fill(durationDiscountBps, discount[0], durationDiscountBps.length, discount[1]);
+            }
+
+            for (int leap = 0; leap < 2; leap++) {
+                int[] seasonBps = new int[367];
+                // Later seasons override earlier ones where they overlap
+                for (Season season : source.seasons) {
+                    int from = dayOfYear(season.from, leap == 1);
+                    int to = dayOfYear(season.to, leap == 1);
+                    int length = leap == 1 ? 366 : 365;
+                    for (int d = from; ; d = d == length ? 1 : d + 1) {
+                        seasonBps[d] = season.surchargeBps;
+                        if (d == to) {
+                            break;
+                        }
+                    }
+                }
+                int length = leap == 1 ? 366 : 365;
+                for (int c = 0; c < CLASSES.length; c++) {
+                    long paid = 0;
+                    for (int d = 1; d <= 366; d++) {
+                        if (d <= length) {
+                            paid += applyBps(dailyCents[c], 10_000 + seasonBps[d]);
+                        }
+                        paidByDay[leap][c * 367 + d] = paid;
+                    }
+                }
+            }
+        }
+    }
+
+    public PricingEngine() {
+        resetToDefaults();
+    }
+
+    // Puts every table back to the defaults and publishes them as one update, so a quote
+    // sees either the old rates or the defaults, never a mix
+    public synchronized void resetToDefaults() {
+        System.arraycopy(DEFAULT_DAILY_CENTS, 0, dailyCents, 0, CLASSES.length);
+        System.arraycopy(DEFAULT_RETURN_FEE_CENTS, 0, returnFeeCents, 0, CLASSES.length);
+        Arrays.fill(tierMinRentals, 0);
+        Arrays.fill(tierDiscountBps, 0);
+        tierMinRentals[CustomerTier.SILVER.ordinal()] = 5;
+        tierDiscountBps[CustomerTier.SILVER.ordinal()] = 500;
+        tierMinRentals[CustomerTier.GOLD.ordinal()] = 20;
+        tierDiscountBps[CustomerTier.GOLD.ordinal()] = 1_000;
+        durationDiscounts.clear();
+        durationDiscounts.add(new int[] { 7, 1_000 });
+        durationDiscounts.add(new int[] { 28, 2_500 });
+        seasons.clear();
+        seasons.add(new Season(MonthDay.of(6, 15), MonthDay.of(8, 31), 2_500));
+        seasons.add(new Season(MonthDay.of(12, 20), MonthDay.of(1, 3), 2_000));
+        turboSurchargeBps = 1_000;
+        lateFeeBps = 15_000;
+        rates = new Rates(this);
+    }
+
+    public static RateClass rateClassOf(Vehicle vehicle) {
+        switch (VehicleType.of(vehicle)) {
+            case SPORT_CAR:
+                return ((SportCar) vehicle).getHorsepower() >= HIGH_POWER_HP ? RateClass.SPORT_CAR_HIGH_POWER : RateClass.SPORT_CAR;
+            case CAR:
+                return RateClass.CAR;
+            case TRUCK:
+                double cargo = ((Truck) vehicle).getCargoCapacity();
+                return cargo >= HEAVY_CARGO ? RateClass.TRUCK_HEAVY : cargo >= MEDIUM_CARGO ? RateClass.TRUCK_MEDIUM : RateClass.TRUCK_LIGHT;
+            default:
+                return ((Motorcycle) vehicle).hasSidecar() ? RateClass.MOTORCYCLE_SIDECAR : RateClass.MOTORCYCLE;
+        }
+    }
+
+    // --- Rate tables ---
+
+    public synchronized void setDailyRate(RateClass rateClass, long cents) {
+        dailyCents[rateClass.ordinal()] = checkCents(cents);
+        rates = new Rates(this);
+    }
+
+    public synchronized void setReturnFee(RateClass rateClass, long cents) {
+        returnFeeCents[rateClass.ordinal()] = checkCents(cents);
+        rates = new Rates(this);
+    }
+
+    // Customers with at least minRentals rentals get the tier's discount on rent
+    public synchronized void setTier(CustomerTier tier, long minRentals, int discountBps) {
+        if (minRentals < 0 || discountBps < 0 || discountBps > 10_000) {
+            throw new IllegalArgumentException("Invalid tier " + tier + ": " + minRentals + " rentals, " + discountBps + " bps");
+        }
+        tierMinRentals[tier.ordinal()] = minRentals;
+        tierDiscountBps[tier.ordinal()] = discountBps;
+        rates = new Rates(this);
+    }
+
+    // Rentals of at least minDays days get the discount; the longest matching rule applies
+    public synchronized void setDurationDiscount(int minDays, int discountBps) {
+        if (minDays < 1 || discountBps < 0 || discountBps > 10_000) {
+            throw new IllegalArgumentException("Invalid duration discount: " + minDays + " days, " + discountBps + " bps");
+        }
+        durationDiscounts.removeIf(d -> d[0] == minDays);
+        durationDiscounts.add(new int[] { minDays, discountBps });
+        durationDiscounts.sort((a, b) -> Integer.compare(a[0], b[0]));
+        rates = new Rates(this);
+    }
+
+    // Surcharge on every day from..to inclusive; a season may wrap around the new year
+    public synchronized void addSeason(MonthDay from, MonthDay to, int surchargeBps) {
+        if (surchargeBps < -10_000) {
+            throw new IllegalArgumentException("Invalid season surcharge " + surchargeBps);
+        }
+        seasons.add(new Season(from, to, surchargeBps));
+        rates = new Rates(this);
+    }
+
+    public synchronized void clearSeasons() {
+        seasons.clear();
+        rates = new Rates(this);
+    }
+
+    public synchronized void setTurboSurcharge(int surchargeBps) {
+        turboSurchargeBps = Math.max(0, surchargeBps);
+        rates = new Rates(this);
+    }
+
+    // Each day past the due date costs this share of the daily rate
+    public synchronized void setLateFee(int basisPoints) {
+        lateFeeBps = Math.max(0, basisPoints);
+        rates = new Rates(this);
+    }
+
+    // --- Quotes ---
+
+    public CustomerTier tierFor(long rentals) {
+        Rates r = rates;
+        CustomerTier tier = CustomerTier.STANDARD;
+        for (int t = 1; t < TIERS.length; t++) {
+            if (rentals >= r.tierMinRentals[t] && r.tierMinRentals[t] > 0) {
+                tier = TIERS[t];
+            }
+        }
+        return tier;
+    }
+
+    public long quoteRent(Vehicle vehicle, LocalDate start, int days, CustomerTier tier) {
+        return quoteRent(rates, vehicle, start, days, tier);
+    }
+
+    // Flat return fee plus the late fee for every day past due; no tier discount applies
+    public long quoteReturn(Vehicle vehicle, LocalDate due, LocalDate returned) {
+        Rates r = rates;
+        int rateClass = rateClassOf(vehicle).ordinal();
+        long fee = r.returnFeeCents[rateClass];
+        long lateDays = returned.toEpochDay() - due.toEpochDay();
+        if (lateDays > 0) {
+            fee += lateDays * applyBps(r.dailyCents[rateClass], r.lateFeeBps);
+        }
+        return fee;
+    }
+
+    // Prices vehicles[i] from starts[i] for days[i] days for a customer of tiers[i] into
+    // out[i]. The whole batch is priced from one snapshot of the rate tables.
+    public void quoteRents(Vehicle[] vehicles, LocalDate[] starts, int[] days, CustomerTier[] tiers, long[] out) {
+        int n = vehicles.length;
+        if (starts.length != n || days.length != n || tiers.length != n || out.length < n) {
+            throw new IllegalArgumentException("Batch arrays differ in length");
+        }
+        Rates r = rates;
+        for (int i = 0; i < n; i++) {
+            out[i] = quoteRent(r, vehicles[i], starts[i], days[i], tiers[i]);
+        }
+    }
+
+    private static long quoteRent(Rates r, Vehicle vehicle, LocalDate start, int days, CustomerTier tier) {
+        if (days < 1) {
+            throw new IllegalArgumentException("A rental lasts at least one day: " + days);
+        }
+        int base = rateClassOf(vehicle).ordinal() * 367;
+        LocalDate last = start.plusDays(days - 1);
+        long[] first = r.paidByDay[Year.isLeap(start.getYear()) ? 1 : 0];
+        long[] end = r.paidByDay[Year.isLeap(last.getYear()) ? 1 : 0];
+        long total = end[base + last.getDayOfYear()] - first[base + start.getDayOfYear() - 1];
+        if (last.getYear() != start.getYear()) {
+            // The rest of the first year, then every whole year between the two
+            total += first[base + 366];
+            long years = last.getYear() - start.getYear() - 1;
+            long leapYears = leapYearsUpTo(last.getYear() - 1) - leapYearsUpTo(start.getYear());
+            total += leapYears * r.paidByDay[1][base + 366] + (years - leapYears) * r.paidByDay[0][base + 366];
+        }
+        if (vehicle instanceof SportCar && ((SportCar) vehicle).hasTurbo()) {
+            total = applyBps(total, 10_000 + r.turboSurchargeBps);
+        }
+        total = applyBps(total, 10_000 - r.durationDiscountBps[Math.min(days, r.durationDiscountBps.length - 1)]);
+        return applyBps(total, 10_000 - r.tierDiscountBps[tier.ordinal()]);
+    }
+
+    // cents * bps / 10000, rounded half up
+    private static long applyBps(long cents, int bps) {
+        return Math.floorDiv(cents * bps + 5_000, 10_000);
+    }
+
+    // Leap years from a fixed origin up to and including year; differences count the leap
+    // years in a range
+    private static long leapYearsUpTo(long year) {
+        return Math.floorDiv(year, 4) - Math.floorDiv(year, 100) + Math.floorDiv(year, 400);
+    }
+
+    private static int dayOfYear(MonthDay day, boolean leap) {
+        // Feb 29 falls on Feb 28 in common years
+        return day.atYear(leap ? 2000 : 2001).getDayOfYear();
+    }
+
+    private static long checkCents(long cents) {
+        if (cents < 0) {
+            throw new IllegalArgumentException("Negative amount: " + cents);
+        }
+        return cents;
+    }
+}
@@ -0,0 +1,182 @@
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Running revenue and utilization totals, updated once per record as it is added to the
+// history, so reports never re-read the records. Money is kept as long cents.
+public class RentalAggregates {
+    // Day and month buckets cover 1970 to 2328; anything outside only counts in the totals
+    private static final int DAYS = 1 << 17;
+    private static final int MONTHS = DAYS / 28;
+
+    private final AtomicLongArray revenueByDay = new AtomicLongArray(DAYS);
+    private final AtomicLongArray rentalsByDay = new AtomicLongArray(DAYS);
+    private final AtomicLongArray revenueByMonth = new AtomicLongArray(MONTHS);
+    private final LongAdder[] revenueByType = adders();
+    private final LongAdder[] rentalsByType = adders();
+    private final LongAdder[] inFlightByType = adders();
+    private final LongAdder totalRevenue = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final IntHashMap<CustomerTotal> byCustomer = new IntHashMap<>();
+
+    public static class CustomerTotal {
+        private final int customerId;
+        private final LongAdder revenueCents = new LongAdder();
+        private final LongAdder rentals = new LongAdder();
+
+        CustomerTotal(int customerId) {
+            this.customerId = customerId;
+        }
+
+        public int getCustomerId() {
+            return customerId;
+        }
+
+        public long getRevenueCents() {
+            return revenueCents.sum();
+        }
+
+        public long getRentals() {
+            return rentals.sum();
+        }
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[VehicleType.values().length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static int monthIndex(int year, int month) {
+        return (year - 1970) * 12 + month - 1;
+    }
+
+    public void add(RentalRecord record) {
+        long cents = record.getAmountCents();
+        boolean rent = record.getRecordType().equals("RENT");
+        boolean ret = record.getRecordType().equals("RETURN");
+        int type = VehicleType.of(record.getVehicle()).ordinal();
+        LocalDate date = record.getRecordDate();
+
+        long day = date.toEpochDay();
+        if (day >= 0 && day < DAYS) {
+            revenueByDay.addAndGet((int) day, cents);
+            if (rent) {
+                rentalsByDay.incrementAndGet((int) day);
+            }
+        }
+        int month = monthIndex(date.getYear(), date.getMonthValue());
+        if (month >= 0 && month < MONTHS) {
+            revenueByMonth.addAndGet(month, cents);
+        }
+        totalRevenue.add(cents);
+        revenueByType[type].add(cents);
+
+        CustomerTotal customer = byCustomer.computeIfAbsent(record.getCustomer().getCustomerId(), CustomerTotal::new);
+        customer.revenueCents.add(cents);
+        if (rent) {
+            customer.rentals.increment();
+            rentalsByType[type].increment();
+            inFlightByType[type].increment();
+            inFlight.increment();
+        } else if (ret) {
+            inFlightByType[type].decrement();
+            inFlight.decrement();
+        }
+    }
+
+    public long getRevenueCents() {
+        return totalRevenue.sum();
+    }
+
+    public long getRevenueCents(LocalDate day) {
+        long index = day.toEpochDay();
+        return index >= 0 && index < DAYS ? revenueByDay.get((int) index) : 0;
+    }
+
+    public long getRentals(LocalDate day) {
+        long index = day.toEpochDay();
+        return index >= 0 && index < DAYS ? rentalsByDay.get((int) index) : 0;
+    }
+
+    public long getRevenueCents(YearMonth month) {
+        int index = monthIndex(month.getYear(), month.getMonthValue());
+        return index >= 0 && index < MONTHS ? revenueByMonth.get(index) : 0;
+    }
+
+    // Sums the day buckets in [from, to]; O(days in range)
+    public long getRevenueCents(LocalDate from, LocalDate to) {
+        long start = Math.max(0, from.toEpochDay());
+        long end = Math.min(DAYS - 1, to.toEpochDay());
+        long sum = 0;
+        for (long day = start; day <= end; day++) {
+            sum += revenueByDay.get((int) day);
+        }
+        return sum;
+    }
+
+    public long getRevenueCents(VehicleType type) {
+        return revenueByType[type.ordinal()].sum();
+    }
+
+    public long getRentals(VehicleType type) {
+        return rentalsByType[type.ordinal()].sum();
+    }
+
+    public long getRentalsInFlight() {
+        return inFlight.sum();
+    }
+
+    public long getRentalsInFlight(VehicleType type) {
+        return inFlightByType[type.ordinal()].sum();
+    }
+
+    public long getRevenueCentsForCustomer(int customerId) {
+        CustomerTotal total = byCustomer.get(customerId);
+        return total == null ? 0 : total.getRevenueCents();
+    }
+
+    public long getRentalsForCustomer(int customerId) {
+        CustomerTotal total = byCustomer.get(customerId);
+        return total == null ? 0 : total.getRentals();
+    }
+
+    // The n customers with the most revenue, highest first; O(customers log n)
+    public List<CustomerTotal> getTopCustomers(int n) {
+        PriorityQueue<CustomerTotal> top = new PriorityQueue<>(Comparator.comparingLong(CustomerTotal::getRevenueCents));
+        for (CustomerTotal total : byCustomer.values()) {
+            top.add(total);
+            if (top.size() > n) {
+                top.poll();
+            }
+        }
+        List<CustomerTotal> result = new ArrayList<>(top);
+        result.sort(Comparator.comparingLong(CustomerTotal::getRevenueCents).reversed());
+        return result;
+    }
+
+    public void clear() {
+        for (int i = 0; i < DAYS; i++) {
+            revenueByDay.set(i, 0);
+            rentalsByDay.set(i, 0);
+        }
+        for (int i = 0; i < MONTHS; i++) {
+            revenueByMonth.set(i, 0);
+        }
+        for (int i = 0; i < revenueByType.length; i++) {
+            revenueByType[i].reset();
+            rentalsByType[i].reset();
+            inFlightByType[i].reset();
+        }
+        totalRevenue.reset();
+        inFlight.reset();
+        byCustomer.clear();
+    }
+}
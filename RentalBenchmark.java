@@ -0,0 +1,445 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Benchmarks for the RentalSystem and RentalHistory hot paths, with warmup iterations and
+// JSON output for tracking results over time. Run it from an empty working directory,
+// because every fleet size starts with resetForTesting(), which deletes the data files there:
+//   java -Drental.durability=NONE RentalBenchmark [--sizes 1000,100000,1000000]
+//        [--threads 4] [--warmup 2] [--iterations 5] [--out bench-results.json]
+// or, through Maven, in core/target/bench-run: mvn -pl core exec:exec -Dbench.args="--sizes 1000"
+// The JMH benchmarks in jmh/ cover the same paths with forks and Blackholes; this harness
+// is the quick run, and the one with the memory and storage-format comparisons.
+public class RentalBenchmark {
+    private static final int MAX_OPS_PER_ITERATION = 1_000_000;
+
+    interface Operation {
+        // Runs one iteration and returns how many operations it performed
+        long run() throws Exception;
+    }
+
+    private static class Result {
+        final String name;
+        final int size;
+        final int threads;
+        final List<Double> nsPerOp = new ArrayList<>();
+        long opsPerIteration;
+
+        Result(String name, int size, int threads) {
+            this.name = name;
+            this.size = size;
+            this.threads = threads;
+        }
+
+        double mean() {
+            return nsPerOp.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        }
+
+        double min() {
+            return nsPerOp.stream().mapToDouble(Double::doubleValue).min().orElse(0);
+        }
+
+        double max() {
+            return nsPerOp.stream().mapToDouble(Double::doubleValue).max().orElse(0);
+        }
+    }
+
+    private final PrintStream console = System.out;
+    private final List<Result> results = new ArrayList<>();
+    private final List<String> memory = new ArrayList<>();
+    private final int warmup;
+    private final int iterations;
+    private final int threads;
+
+    RentalBenchmark(int warmup, int iterations, int threads) {
+        this.warmup = warmup;
+        this.iterations = iterations;
+        this.threads = threads;
+    }
+
+    private void measure(String name, int size, int threadCount, Operation operation) throws Exception {
+        Result result = new Result(name, size, threadCount);
+        for (int i = 0; i < warmup + iterations; i++) {
+            long start = System.nanoTime();
+            long ops = operation.run();
+            long elapsed = System.nanoTime() - start;
+            if (i >= warmup && ops > 0) {
+                result.nsPerOp.add((double) elapsed / ops);
+                result.opsPerIteration = ops;
+            }
+        }
+        results.add(result);
+        console.printf("%-34s size=%-9d threads=%-2d %12.1f ns/op (min %.1f, max %.1f)%n",
+                name, size, threadCount, result.mean(), result.min(), result.max());
+    }
+
+    private void runSize(int size) throws Exception {
+        RentalSystem system = RentalSystem.getInstance();
+        RentalHistory history = RentalHistory.getInstance();
+        Random random = new Random(size);
+        int customerCount = Math.max(1, size / 10);
+
+        Vehicle[] fleet = new Vehicle[size];
+        for (int i = 0; i < size; i++) {
+            fleet[i] = SyntheticDataGenerator.vehicle(i, random);
+        }
+        Customer[] customers = new Customer[customerCount];
+        for (int i = 0; i < customerCount; i++) {
+            customers[i] = SyntheticDataGenerator.customer(i, random);
+        }
+
+        // addVehicle/addCustomer include the save path; each iteration starts from an empty system
+        measure("addVehicle+saveVehicle", size, 1, () -> {
+            system.resetForTesting();
+            for (Vehicle v : fleet) {
+                v.setStatus(Vehicle.VehicleStatus.AVAILABLE);
+                system.addVehicle(v);
+            }
+            return size;
+        });
+        int[] round = { 0 };
+        measure("addCustomer+saveCustomer", size, 1, () -> {
+            // Fresh ids every iteration, since customers cannot be removed
+            int base = ++round[0] * customerCount + customerCount;
+            for (int i = 0; i < customerCount; i++) {
+                system.addCustomer(new Customer(base + i + 1, customers[i].getCustomerName()));
+            }
+            return customerCount;
+        });
+        for (Customer c : customers) {
+            system.addCustomer(c);
+        }
+
+        int lookups = Math.min(MAX_OPS_PER_ITERATION, Math.max(size, 100_000));
+        String[] plates = new String[lookups];
+        int[] customerIds = new int[lookups];
+        String[] customerIdStrings = new String[lookups];
+        for (int i = 0; i < lookups; i++) {
+            plates[i] = fleet[random.nextInt(size)].getLicensePlate().toLowerCase();
+            customerIds[i] = customers[random.nextInt(customerCount)].getCustomerId();
+            customerIdStrings[i] = String.valueOf(customerIds[i]);
+        }
+        measure("findVehicleByPlate", size, 1, () -> {
+            int found = 0;
+            for (String plate : plates) {
+                if (system.findVehicleByPlate(plate) != null) found++;
+            }
+            return check(found, lookups);
+        });
+        measure("findCustomerById(int)", size, 1, () -> {
+            int found = 0;
+            for (int id : customerIds) {
+                if (system.findCustomerById(id) != null) found++;
+            }
+            return check(found, lookups);
+        });
+        measure("findCustomerById(String)", size, 1, () -> {
+            int found = 0;
+            for (String id : customerIdStrings) {
+                if (system.findCustomerById(id) != null) found++;
+            }
+            return check(found, lookups);
+        });
+
+        FleetQuery[] searches = {
+            new FleetQuery().make("Toyota").yearBetween(2015, 2020).seatsBetween(4, 7),
+            new FleetQuery().horsepowerBetween(400, 600).status(Vehicle.VehicleStatus.AVAILABLE),
+            new FleetQuery().model("F150").cargoBetween(10, 30),
+        };
+        measure("searchVehicles", size, 1, () -> {
+            long hits = 0;
+            for (int i = 0; i < 100; i++) {
+                hits += system.searchVehicles(searches[i % searches.length], 100).size();
+            }
+            sink += hits;
+            return 100;
+        });
+
+        int cycles = Math.min(size, MAX_OPS_PER_ITERATION / 2);
+        LocalDate today = LocalDate.now();
+        PricingEngine pricing = system.getPricing();
+        int quotes = Math.min(size, 10_000);
+        LocalDate[] starts = new LocalDate[quotes];
+        int[] days = new int[quotes];
+        PricingEngine.CustomerTier[] tiers = new PricingEngine.CustomerTier[quotes];
+        for (int i = 0; i < quotes; i++) {
+            starts[i] = today.plusDays(i % 365);
+            days[i] = 1 + i % 21;
+            tiers[i] = PricingEngine.CustomerTier.values()[i % 3];
+        }
+        Vehicle[] quoted = java.util.Arrays.copyOf(fleet, quotes);
+        long[] prices = new long[quotes];
+        measure("quoteRents (batch)", size, 1, () -> {
+            pricing.quoteRents(quoted, starts, days, tiers, prices);
+            sink += prices[quotes - 1];
+            return quotes;
+        });
+        measure("rentVehicle+returnVehicle", size, 1, () -> {
+            for (int i = 0; i < cycles; i++) {
+                Customer c = customers[i % customerCount];
+                system.rentVehicle(fleet[i], c, today, 100.0);
+                system.returnVehicle(fleet[i], c, today, 10.0);
+            }
+            return cycles * 2L;
+        });
+        if (threads > 1) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                measure("rentVehicle+returnVehicle", size, threads, () -> {
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (int t = 0; t < threads; t++) {
+                        int first = t;
+                        futures.add(pool.submit(() -> {
+                            for (int i = first; i < cycles; i += threads) {
+                                Customer c = customers[i % customerCount];
+                                system.rentVehicle(fleet[i], c, today, 100.0);
+                                system.returnVehicle(fleet[i], c, today, 10.0);
+                            }
+                        }));
+                    }
+                    for (Future<?> f : futures) {
+                        f.get();
+                    }
+                    return cycles * 2L;
+                });
+            } finally {
+                pool.shutdown();
+            }
+
+            // The same load with one shard per thread; fresh vehicle objects with the same plates,
+            // since a vehicle reports its status changes to the system that indexed it
+            File shardRoot = java.nio.file.Files.createTempDirectory("bench-shards-" + size).toFile();
+            ShardedRentalSystem sharded = new ShardedRentalSystem(shardRoot, threads);
+            Random shardRandom = new Random(size);
+            Vehicle[] shardFleet = new Vehicle[cycles];
+            for (int i = 0; i < cycles; i++) {
+                shardFleet[i] = SyntheticDataGenerator.vehicle(i, shardRandom);
+                sharded.addVehicle(shardFleet[i]);
+            }
+            for (Customer c : customers) {
+                sharded.addCustomer(c);
+            }
+            ExecutorService shardPool = Executors.newFixedThreadPool(threads);
+            try {
+                measure("rent+return (" + threads + " shards)", size, threads, () -> {
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (int t = 0; t < threads; t++) {
+                        int first = t;
+                        futures.add(shardPool.submit(() -> {
+                            for (int i = first; i < cycles; i += threads) {
+                                Customer c = customers[i % customerCount];
+                                sharded.rentVehicle(shardFleet[i], c, today, 100.0);
+                                sharded.returnVehicle(shardFleet[i], c, today, 10.0);
+                            }
+                        }));
+                    }
+                    for (Future<?> f : futures) {
+                        f.get();
+                    }
+                    return cycles * 2L;
+                });
+            } finally {
+                shardPool.shutdown();
+                sharded.shutdown();
+                deleteTree(shardRoot);
+            }
+        }
+
+        int queries = Math.min(10_000, size);
+        measure("getRentalRecordsByVehicle", history.getRentalHistory().size(), 1, () -> {
+            long hits = 0;
+            for (int i = 0; i < queries; i++) {
+                hits += history.getRentalRecordsByVehicle(plates[i]).size();
+            }
+            sink += hits;
+            return queries;
+        });
+        measure("getRentalRecordsByCustomer", history.getRentalHistory().size(), 1, () -> {
+            long hits = 0;
+            for (int i = 0; i < queries; i++) {
+                hits += history.getRentalRecordsByCustomer(customers[i % customerCount].getCustomerName()).size();
+            }
+            sink += hits;
+            return queries;
+        });
+        measure("countBetween (one week)", history.getRentalHistory().size(), 1, () -> {
+            LocalDate first = history.getRentalHistory().get(0).getRecordDate();
+            long hits = 0;
+            for (int i = 0; i < queries; i++) {
+                LocalDate from = first.plusDays(i % 28);
+                hits += history.countBetween(from, from.plusDays(6));
+            }
+            sink += hits;
+            return queries;
+        });
+
+        // The loaders: the text codec parses the data files from before the journal the same
+        // way RentalSystem imports them
+        File data = new File("bench-data-" + size);
+        SyntheticDataGenerator.generate(data, size, customerCount, size, size);
+        measure("load (text, all three files)", size, 1, () -> {
+            RentalData loaded = new TextStorageCodec().read(data);
+            return loaded.getVehicles().size() + loaded.getCustomers().size() + loaded.getRecords().size();
+        });
+        File binary = new File(data, "rental.dat");
+        new BinaryStorageCodec().write(new TextStorageCodec().read(data), binary);
+        measure("load (binary)", size, 1, () -> {
+            RentalData loaded = new BinaryStorageCodec().read(binary);
+            return loaded.getVehicles().size() + loaded.getCustomers().size() + loaded.getRecords().size();
+        });
+        RentalData parsed = new TextStorageCodec().read(data);
+        File snapshot = new File(data, "rental.snapshot");
+        RentalSnapshot.write(snapshot, 0L, parsed.getVehicles(), new byte[parsed.getVehicles().size()],
+                parsed.getCustomers(), parsed.getRecords(), new ArrayList<>(), new HashMap<>());
+        measure("load (snapshot)", size, 1, () -> {
+            RentalSnapshot loaded = RentalSnapshot.read(snapshot);
+            return loaded.getVehicles().size() + loaded.getCustomers().size() + loaded.getRecords().size();
+        });
+
+        // The journal with every vehicle, customer and record as an event, replayed into a
+        // projection that only counts them, on one thread and with the parsing spread out
+        File journalFile = new File(data, "journal.txt");
+        journalFile.delete();
+        try (RentalJournal journal = new RentalJournal(new AppendWriter(journalFile, AppendWriter.Durability.NONE, 1 << 16, 0))) {
+            List<JournalEvent> events = new ArrayList<>();
+            for (Vehicle vehicle : parsed.getVehicles()) {
+                events.add(JournalEvent.VehicleAdded.of(vehicle));
+            }
+            for (Customer customer : parsed.getCustomers()) {
+                events.add(JournalEvent.CustomerAdded.of(customer));
+            }
+            for (RentalRecord record : parsed.getRecords()) {
+                int plate = record.getVehicle().getPlateCode();
+                int customer = record.getCustomer().getCustomerId();
+                events.add(record.getRecordType().equals("RENT")
+                        ? new JournalEvent.Rented(plate, customer, record.getRecordDate(), record.getAmountCents(), LocalDate.MAX)
+                        : new JournalEvent.Returned(plate, customer, record.getRecordDate(), record.getAmountCents()));
+            }
+            journal.append(events);
+            journal.flush();
+            int cores = Runtime.getRuntime().availableProcessors();
+            for (int parsers : cores > 1 ? new int[] { 1, cores } : new int[] { 1 }) {
+                measure("replay (journal)", events.size(), parsers, () -> {
+                    long[] count = { 0 };
+                    journal.replay(0, Long.MAX_VALUE, parsers, batch -> count[0] += batch.size());
+                    return count[0];
+                });
+            }
+        }
+    }
+
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+
+    // Heap bytes per vehicle for the object graph, from used heap after a full GC. Rough,
+    // but enough to see how the per-vehicle cost moves between runs.
+    private void measureMemory(int size) {
+        Random random = new Random(size);
+        long before = usedHeap();
+        List<Vehicle> objects = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            objects.add(SyntheticDataGenerator.vehicle(i, random));
+        }
+        double objectBytes = (double) (usedHeap() - before) / size;
+        sink += objects.size();
+
+        console.printf("%-34s size=%-9d objects %.1f B/vehicle%n", "memory", size, objectBytes);
+        memory.add(String.format("{\"store\": \"objects\", \"size\": %d, \"bytesPerVehicle\": %.1f}", size, objectBytes));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Results are folded into this so the JIT cannot drop the calls being measured
+    private static volatile long sink;
+
+    private static long check(int found, int expected) {
+        if (found != expected) {
+            throw new IllegalStateException("Lookup missed " + (expected - found) + " entries");
+        }
+        return expected;
+    }
+
+    private void writeJson(File out) throws IOException {
+        try (PrintWriter json = new PrintWriter(new FileWriter(out))) {
+            json.println("{");
+            json.println("  \"timestamp\": \"" + Instant.now() + "\",");
+            json.println("  \"java\": \"" + System.getProperty("java.version") + "\",");
+            json.println("  \"durability\": \"" + System.getProperty("rental.durability", "BATCH") + "\",");
+            json.println("  \"results\": [");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                json.printf("    {\"benchmark\": \"%s\", \"size\": %d, \"threads\": %d, \"opsPerIteration\": %d, "
+                                + "\"meanNsPerOp\": %.2f, \"minNsPerOp\": %.2f, \"maxNsPerOp\": %.2f, \"opsPerSecond\": %.0f}%s%n",
+                        r.name, r.size, r.threads, r.opsPerIteration, r.mean(), r.min(), r.max(),
+                        r.mean() == 0 ? 0.0 : 1e9 / r.mean(), i + 1 < results.size() ? "," : "");
+            }
+            json.println("  ],");
+            json.println("  \"memory\": [");
+            for (int i = 0; i < memory.size(); i++) {
+                json.println("    " + memory.get(i) + (i + 1 < memory.size() ? "," : ""));
+            }
+            json.println("  ]");
+            json.println("}");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String sizes = "1000,100000";
+        int threads = Runtime.getRuntime().availableProcessors();
+        int warmup = 2;
+        int iterations = 5;
+        String out = "bench-results.json";
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sizes": sizes = args[i + 1]; break;
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--warmup": warmup = Integer.parseInt(args[i + 1]); break;
+                case "--iterations": iterations = Integer.parseInt(args[i + 1]); break;
+                case "--out": out = args[i + 1]; break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        RentalBenchmark benchmark = new RentalBenchmark(warmup, Math.max(1, iterations), threads);
+        // Keep the per-rental console messages out of the measurements
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (String size : sizes.split(",")) {
+                benchmark.runSize(Integer.parseInt(size.trim()));
+                benchmark.measureMemory(Integer.parseInt(size.trim()));
+            }
+        } finally {
+            System.setOut(benchmark.console);
+            RentalSystem.getInstance().resetForTesting();
+        }
+        benchmark.writeJson(new File(out));
+        System.out.println("Results written to " + out);
+    }
+}
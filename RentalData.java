@@ -0,0 +1,31 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Everything a storage codec reads or writes: the fleet, the customers and the rental log
+public class RentalData {
+    private final List<Vehicle> vehicles;
+    private final List<Customer> customers;
+    private final List<RentalRecord> records;
+
+    public RentalData() {
+        this(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+    }
+
+    public RentalData(List<Vehicle> vehicles, List<Customer> customers, List<RentalRecord> records) {
+        this.vehicles = vehicles;
+        this.customers = customers;
+        this.records = records;
+    }
+
+    public List<Vehicle> getVehicles() {
+        return vehicles;
+    }
+
+    public List<Customer> getCustomers() {
+        return customers;
+    }
+
+    public List<RentalRecord> getRecords() {
+        return records;
+    }
+}
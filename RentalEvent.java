@@ -0,0 +1,51 @@
+import java.time.LocalDate;
+
+// A rent or return as delivered to RentalEventListeners. Instances are slots of the event
+// bus's ring buffer and are reused, so listeners must copy anything they want to keep.
+public class RentalEvent {
+    public enum Type { RENT, RETURN }
+
+    private Type type;
+    private Vehicle vehicle;
+    private Customer customer;
+    private LocalDate date;
+    private long amountCents;
+
+    void set(Type type, Vehicle vehicle, Customer customer, LocalDate date, long amountCents) {
+        this.type = type;
+        this.vehicle = vehicle;
+        this.customer = customer;
+        this.date = date;
+        this.amountCents = amountCents;
+    }
+
+    void clear() {
+        vehicle = null;
+        customer = null;
+        date = null;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Vehicle getVehicle() {
+        return vehicle;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public double getAmount() {
+        return amountCents / 100.0;
+    }
+
+    public long getAmountCents() {
+        return amountCents;
+    }
+}
@@ -0,0 +1,150 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.time.LocalDate;
+
+// Hands rental events to listeners on a background thread through a bounded ring buffer
+// of preallocated slots. Publishing claims a slot with a CAS and fills it in place, so it
+// never blocks and never allocates; when the buffer is full the event is dropped and counted.
+// close() delivers what is already published and stops the consumer thread; like
+// AppendWriter, the bus can be used again afterwards and starts a new one on the next publish.
+public class RentalEventBus {
+    private final RentalEvent[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final List<RentalEventListener> listeners = new CopyOnWriteArrayList<>();
+    // The running consumer, or null once closed; a consumer stops when it is no longer this
+    private volatile Thread consumer;
+    private volatile long consumed;
+    private volatile boolean sleeping;
+
+    public RentalEventBus(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        slots = new RentalEvent[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new RentalEvent();
+            published.set(i, -1);
+        }
+        mask = capacity - 1;
+        start();
+    }
+
+    private synchronized Thread start() {
+        if (consumer == null) {
+            Thread thread = new Thread(this::consume, "rental-event-bus");
+            thread.setDaemon(true);
+            consumer = thread;
+            thread.start();
+        }
+        return consumer;
+    }
+
+    public void addListener(RentalEventListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(RentalEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean publish(RentalEvent.Type type, Vehicle vehicle, Customer customer, LocalDate date, long amountCents) {
+        if (listeners.isEmpty()) {
+            return true;
+        }
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - consumed >= slots.length) {
+                dropped.increment();
+                return false;
+            }
+        } while (!claimed.compareAndSet(seq, seq + 1));
+
+        int index = (int) (seq & mask);
+        slots[index].set(type, vehicle, customer, date, amountCents);
+        published.lazySet(index, seq);
+        Thread thread = consumer;
+        if (thread == null) {
+            start();
+        } else if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    private void consume() {
+        long next = consumed;
+        int idle = 0;
+        Thread self = Thread.currentThread();
+        while (true) {
+            int index = (int) (next & mask);
+            if (published.get(index) == next) {
+                RentalEvent event = slots[index];
+                for (RentalEventListener listener : listeners) {
+                    try {
+                        listener.onRentalEvent(event);
+                    } catch (RuntimeException e) {
+                        System.err.println("Rental event listener failed: " + e.getMessage());
+                    }
+                }
+                event.clear();
+                consumed = ++next;
+                idle = 0;
+            } else if (consumer != self && next == claimed.get()) {
+                // Closed, and every event claimed before this check has been delivered; one
+                // still being published makes the loop wait for it instead
+                return;
+            } else if (++idle < 100) {
+                Thread.onSpinWait();
+            } else {
+                sleeping = true;
+                if (published.get(index) != next) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(10));
+                }
+                sleeping = false;
+            }
+        }
+    }
+
+    // Waits until every event published so far has been delivered, or the timeout passes
+    public boolean awaitDelivered(long timeoutMillis) {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (consumed < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(50_000);
+        }
+        return true;
+    }
+
+    // Delivers the events published so far, then stops the consumer thread. Holds the lock
+    // until it has stopped, so a publish cannot start a second consumer over the same slots.
+    public synchronized void close() {
+        Thread thread = consumer;
+        if (thread == null) {
+            return;
+        }
+        consumer = null;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,4 @@
+public interface RentalEventListener {
+    // Runs on the event bus thread, after the rent or return has completed
+    void onRentalEvent(RentalEvent event);
+}
@@ -1,44 +1,630 @@
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class RentalHistory {
-    private static RentalHistory instance = null;
-    private List<RentalRecord> rentalRecords = new ArrayList<>();
+// The rental history in two tiers. Recent records sit in memory in generations of up to
+// generationSize records, each with its own per-plate and per-customer lists. Once the
+// generations hold more than hotRecords, the oldest one is written out in the background
+// as a HistorySegment file and dropped from the heap. Queries read one snapshot of both
+// tiers, so a record is never missed or seen twice while a generation moves to disk.
+// Tiering is tuned with -Drental.history.hotRecords (default 1,000,000) and, for the
+// process-wide instance, -Drental.history.dir (default "history").
+public class RentalHistory implements HistorySegment.Resolver {
+    // Grams of this length index the customer search keys for substring queries
+    private static final int GRAM = 3;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final Comparator<RentalRecord> BY_DATE = Comparator.comparing(RentalRecord::getRecordDate);
 
-    private RentalHistory() {}
+    // Vehicles and customers seen in the history, so cold rows can be turned back into records
+    private final IntHashMap<Vehicle> vehiclesByPlate = new IntHashMap<>();
+    private final IntHashMap<CustomerEntry> customersById = new IntHashMap<>();
+    private final ConcurrentAppendList<CustomerEntry> customers = new ConcurrentAppendList<>();
+    private final Map<String, ConcurrentAppendList<CustomerEntry>> customersByGram = new ConcurrentHashMap<>();
+    private final RentalAggregates aggregates = new RentalAggregates();
 
-    public static RentalHistory getInstance() {
-        if (instance == null) {
-            instance = new RentalHistory();
+    private final Object tierLock = new Object();
+    private final AtomicInteger segmentSeq = new AtomicInteger();
+    private final ExecutorService spiller = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "rental-history-spill");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile Tiers tiers = new Tiers(new ArrayList<>(), List.of(new Generation()));
+    private volatile File segmentDir;
+    private volatile int hotRecords;
+    private volatile int generationSize;
+
+    // One entry per distinct customer seen in the history
+    private static class CustomerEntry {
+        final Customer customer;
+        final String searchKey;
+
+        CustomerEntry(Customer customer) {
+            this.customer = customer;
+            this.searchKey = customer.toString().toLowerCase();
+        }
+    }
+
+    private static final class Generation {
+        final ConcurrentAppendList<RentalRecord> records = new ConcurrentAppendList<>();
+        final IntHashMap<ConcurrentAppendList<RentalRecord>> byPlate = new IntHashMap<>();
+        final IntHashMap<ConcurrentAppendList<RentalRecord>> byCustomer = new IntHashMap<>();
+        // Date index: records per epoch day, and per (plate, day) and (customer, day), see dayKey.
+        // Skip lists take records in any date order, so replayed logs cost no more than live ones.
+        final ConcurrentSkipListMap<Integer, ConcurrentAppendList<RentalRecord>> byDay = new ConcurrentSkipListMap<>();
+        final ConcurrentSkipListMap<Long, ConcurrentAppendList<RentalRecord>> byPlateDay = new ConcurrentSkipListMap<>();
+        final ConcurrentSkipListMap<Long, ConcurrentAppendList<RentalRecord>> byCustomerDay = new ConcurrentSkipListMap<>();
+        // Adds in progress; a sealed generation is only written out once this drops to zero
+        final AtomicInteger writers = new AtomicInteger();
+        volatile boolean sealed;
+        boolean spilling;
+    }
+
+    // Position of a merge in one of the lists being merged
+    private static final class Head {
+        final int part;
+        int position;
+        RentalRecord record;
+
+        Head(int part, RentalRecord record) {
+            this.part = part;
+            this.record = record;
+        }
+    }
+
+    // Immutable snapshot: segments and generations, both oldest first; the last generation takes new records
+    private static final class Tiers {
+        final List<HistorySegment> cold;
+        final List<Generation> hot;
+
+        Tiers(List<HistorySegment> cold, List<Generation> hot) {
+            this.cold = cold;
+            this.hot = hot;
         }
-        return instance;
+
+        Generation current() {
+            return hot.get(hot.size() - 1);
+        }
+    }
+
+    private RentalHistory() {
+        this(new File(System.getProperty("rental.history.dir", "history")),
+                Integer.getInteger("rental.history.hotRecords", 1_000_000));
+    }
+
+    // A history of its own, e.g. for one shard, spilling to segment files in segmentDir
+    public RentalHistory(File segmentDir, int hotRecords) {
+        configureTiering(segmentDir, hotRecords);
+        // Segments are rebuilt from the rental log on every start
+        deleteSegmentFiles();
+    }
+
+    // Initialized by the class loader on first use, so no locking is needed
+    private static class Holder {
+        private static final RentalHistory INSTANCE = new RentalHistory();
+    }
+
+    public static RentalHistory getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    // Applies to generations sealed from now on
+    public void configureTiering(File directory, int hotRecords) {
+        this.segmentDir = directory;
+        this.hotRecords = Math.max(1, hotRecords);
+        this.generationSize = Math.max(1, Math.min(this.hotRecords / 4, 1 << 20));
     }
 
     public void addRecord(RentalRecord record) {
-        rentalRecords.add(record);
+        Vehicle vehicle = record.getVehicle();
+        Customer customer = record.getCustomer();
+        vehiclesByPlate.computeIfAbsent(vehicle.getPlateCode(), k -> vehicle);
+        customersById.computeIfAbsent(customer.getCustomerId(), id -> indexCustomer(customer));
+
+        Generation generation;
+        while (true) {
+            generation = tiers.current();
+            generation.writers.incrementAndGet();
+            if (!generation.sealed) {
+                break;
+            }
+            generation.writers.decrementAndGet();
+        }
+        int size;
+        try {
+            size = generation.records.append(record) + 1;
+            generation.byPlate.computeIfAbsent(vehicle.getPlateCode(), k -> new ConcurrentAppendList<>()).add(record);
+            generation.byCustomer.computeIfAbsent(customer.getCustomerId(), k -> new ConcurrentAppendList<>()).add(record);
+            int day = epochDay(record.getRecordDate());
+            generation.byDay.computeIfAbsent(day, k -> new ConcurrentAppendList<>()).add(record);
+            generation.byPlateDay.computeIfAbsent(dayKey(vehicle.getPlateCode(), day), k -> new ConcurrentAppendList<>()).add(record);
+            generation.byCustomerDay.computeIfAbsent(dayKey(customer.getCustomerId(), day), k -> new ConcurrentAppendList<>()).add(record);
+        } finally {
+            generation.writers.decrementAndGet();
+        }
+        aggregates.add(record);
+        if (size >= generationSize) {
+            roll(generation);
+        }
+    }
+
+    // Called once per new customer, under the customer map's write lock
+    private CustomerEntry indexCustomer(Customer customer) {
+        CustomerEntry entry = new CustomerEntry(customer);
+        customers.add(entry);
+        String key = entry.searchKey;
+        for (int i = 0; i + GRAM <= key.length(); i++) {
+            String gram = key.substring(i, i + GRAM);
+            // The same gram can repeat within a key; post the entry only once
+            if (key.indexOf(gram) == i) {
+                customersByGram.computeIfAbsent(gram, k -> new ConcurrentAppendList<>()).add(entry);
+            }
+        }
+        return entry;
+    }
+
+    // Seals the full generation, starts a new one and queues the oldest generations for disk
+    private void roll(Generation full) {
+        synchronized (tierLock) {
+            Tiers current = tiers;
+            if (current.current() != full) {
+                return;
+            }
+            full.sealed = true;
+            List<Generation> hot = new ArrayList<>(current.hot);
+            hot.add(new Generation());
+            tiers = new Tiers(current.cold, hot);
+
+            long inMemory = 0;
+            for (Generation g : hot) {
+                inMemory += g.spilling ? 0 : g.records.size();
+            }
+            for (Generation g : hot) {
+                if (inMemory <= hotRecords || !g.sealed) {
+                    break;
+                }
+                if (!g.spilling) {
+                    g.spilling = true;
+                    inMemory -= g.records.size();
+                    spiller.execute(() -> spill(g));
+                }
+            }
+        }
+    }
+
+    private void spill(Generation generation) {
+        while (generation.writers.get() > 0) {
+            Thread.onSpinWait();
+        }
+        HistorySegment segment;
+        try {
+            File dir = segmentDir;
+            dir.mkdirs();
+            File file = new File(dir, SEGMENT_PREFIX + segmentSeq.incrementAndGet() + SEGMENT_SUFFIX);
+            segment = HistorySegment.write(file, generation.records);
+        } catch (IOException e) {
+            // The generation just stays in memory
+            System.err.println("Error writing history segment: " + e.getMessage());
+            return;
+        }
+        synchronized (tierLock) {
+            Tiers current = tiers;
+            List<HistorySegment> cold = new ArrayList<>(current.cold);
+            cold.add(segment);
+            List<Generation> hot = new ArrayList<>(current.hot);
+            hot.remove(generation);
+            tiers = new Tiers(cold, hot);
+        }
+    }
+
+    // Waits until every generation queued for disk has been written
+    public void awaitTiering() {
+        try {
+            spiller.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error waiting for history segments: " + e.getMessage());
+        }
+    }
+
+    public int getSegmentCount() {
+        return tiers.cold.size();
+    }
+
+    public long getHotRecordCount() {
+        long count = 0;
+        for (Generation g : tiers.hot) {
+            count += g.records.size();
+        }
+        return count;
+    }
+
+    @Override
+    public Vehicle vehicle(int plateCode) {
+        return vehiclesByPlate.get(plateCode);
+    }
+
+    @Override
+    public Customer customer(int customerId) {
+        CustomerEntry entry = customersById.get(customerId);
+        return entry == null ? null : entry.customer;
+    }
+
+    public RentalAggregates getAggregates() {
+        return aggregates;
     }
 
+    // Every record, oldest first, as a read-only view over both tiers as they are now.
+    // Records added later are not part of the view, and nothing is copied.
     public List<RentalRecord> getRentalHistory() {
-        return rentalRecords;
+        Tiers snapshot = tiers;
+        List<List<RentalRecord>> parts = new ArrayList<>(snapshot.cold.size() + snapshot.hot.size());
+        for (HistorySegment segment : snapshot.cold) {
+            parts.add(segment.records(this));
+        }
+        for (Generation generation : snapshot.hot) {
+            parts.add(generation.records);
+        }
+        return concat(parts);
     }
 
+    // Matches against the customer's display string, as before, but only visits records
+    // of customers whose key contains the query. Results are grouped by customer.
     public List<RentalRecord> getRentalRecordsByCustomer(String customerName) {
-        List<RentalRecord> result = new ArrayList<>();
-        for (RentalRecord record : rentalRecords) {
-            if (record.getCustomer().toString().toLowerCase().contains(customerName.toLowerCase())) {
-                result.add(record);
+        String query = customerName.toLowerCase();
+        if (query.isEmpty()) {
+            return getRentalHistory();
+        }
+
+        List<CustomerEntry> candidates = customers;
+        if (query.length() >= GRAM) {
+            // Any gram's posting list is a superset of the matches; the shortest one is cheapest to verify
+            for (int i = 0; i + GRAM <= query.length(); i++) {
+                List<CustomerEntry> posting = customersByGram.get(query.substring(i, i + GRAM));
+                if (posting == null) {
+                    return Collections.emptyList();
+                }
+                if (posting.size() < candidates.size()) {
+                    candidates = posting;
+                }
+            }
+        }
+
+        Tiers snapshot = tiers;
+        List<List<RentalRecord>> parts = new ArrayList<>();
+        for (CustomerEntry entry : candidates) {
+            if (entry.searchKey.contains(query)) {
+                addCustomerParts(snapshot, entry.customer.getCustomerId(), parts);
+            }
+        }
+        return concat(parts);
+    }
+
+    public List<RentalRecord> getRentalRecordsByCustomer(int customerId) {
+        List<List<RentalRecord>> parts = new ArrayList<>();
+        addCustomerParts(tiers, customerId, parts);
+        return concat(parts);
+    }
+
+    private void addCustomerParts(Tiers snapshot, int customerId, List<List<RentalRecord>> parts) {
+        for (HistorySegment segment : snapshot.cold) {
+            parts.add(segment.recordsByCustomer(customerId, this));
+        }
+        for (Generation generation : snapshot.hot) {
+            List<RentalRecord> records = generation.byCustomer.get(customerId);
+            if (records != null) {
+                parts.add(records);
             }
         }
-        return result;
     }
 
     public List<RentalRecord> getRentalRecordsByVehicle(String licensePlate) {
-        List<RentalRecord> result = new ArrayList<>();
-        for (RentalRecord record : rentalRecords) {
-            if (record.getVehicle().getLicensePlate().equalsIgnoreCase(licensePlate)) {
-                result.add(record);
+        int code = PlateCode.parse(licensePlate);
+        return code == PlateCode.INVALID ? Collections.emptyList() : getRentalRecordsByVehicle(code);
+    }
+
+    public List<RentalRecord> getRentalRecordsByVehicle(int plateCode) {
+        Tiers snapshot = tiers;
+        List<List<RentalRecord>> parts = new ArrayList<>();
+        for (HistorySegment segment : snapshot.cold) {
+            parts.add(segment.recordsByPlate(plateCode, this));
+        }
+        for (Generation generation : snapshot.hot) {
+            List<RentalRecord> records = generation.byPlate.get(plateCode);
+            if (records != null) {
+                parts.add(records);
+            }
+        }
+        return concat(parts);
+    }
+
+    // --- Streams and pages ---
+    // Streams are lazy and read the same snapshot as the views above, so appends made while
+    // a stream is consumed are neither seen nor a problem. Since the history only grows,
+    // a record's position in any of these sequences never changes, and a page's cursor is
+    // simply the number of records already returned.
+
+    public Stream<RentalRecord> stream() {
+        return getRentalHistory().stream();
+    }
+
+    public Stream<RentalRecord> streamByVehicle(int plateCode) {
+        return getRentalRecordsByVehicle(plateCode).stream();
+    }
+
+    public Stream<RentalRecord> streamByCustomer(int customerId) {
+        return getRentalRecordsByCustomer(customerId).stream();
+    }
+
+    // --- Date queries ---
+    // Ranges are inclusive at both ends. Results are ordered by date, and records of the same
+    // day stay in the order they were added. Each tier answers from its date index in
+    // O(log n + k) and the tiers are merged as the stream is read.
+
+    public Stream<RentalRecord> streamBetween(LocalDate from, LocalDate to) {
+        int fromDay = epochDay(from);
+        int toDay = epochDay(to);
+        Tiers snapshot = tiers;
+        List<List<RentalRecord>> parts = new ArrayList<>();
+        if (fromDay <= toDay) {
+            for (HistorySegment segment : snapshot.cold) {
+                parts.add(segment.recordsBetween(fromDay, toDay, this));
+            }
+            for (Generation generation : snapshot.hot) {
+                parts.add(concat(new ArrayList<>(generation.byDay.subMap(fromDay, true, toDay, true).values())));
+            }
+        }
+        return mergeByDate(parts);
+    }
+
+    public Stream<RentalRecord> streamByVehicleBetween(int plateCode, LocalDate from, LocalDate to) {
+        int fromDay = epochDay(from);
+        int toDay = epochDay(to);
+        Tiers snapshot = tiers;
+        List<List<RentalRecord>> parts = new ArrayList<>();
+        if (fromDay <= toDay) {
+            for (HistorySegment segment : snapshot.cold) {
+                parts.add(segment.recordsByPlateBetween(plateCode, fromDay, toDay, this));
+            }
+            for (Generation generation : snapshot.hot) {
+                parts.add(keyBetween(generation.byPlateDay, plateCode, fromDay, toDay));
+            }
+        }
+        return mergeByDate(parts);
+    }
+
+    public Stream<RentalRecord> streamByCustomerBetween(int customerId, LocalDate from, LocalDate to) {
+        int fromDay = epochDay(from);
+        int toDay = epochDay(to);
+        Tiers snapshot = tiers;
+        List<List<RentalRecord>> parts = new ArrayList<>();
+        if (fromDay <= toDay) {
+            for (HistorySegment segment : snapshot.cold) {
+                parts.add(segment.recordsByCustomerBetween(customerId, fromDay, toDay, this));
+            }
+            for (Generation generation : snapshot.hot) {
+                parts.add(keyBetween(generation.byCustomerDay, customerId, fromDay, toDay));
+            }
+        }
+        return mergeByDate(parts);
+    }
+
+    public List<RentalRecord> getRentalRecordsBetween(LocalDate from, LocalDate to) {
+        return streamBetween(from, to).collect(Collectors.toList());
+    }
+
+    public int countBetween(LocalDate from, LocalDate to) {
+        int fromDay = epochDay(from);
+        int toDay = epochDay(to);
+        if (fromDay > toDay) {
+            return 0;
+        }
+        Tiers snapshot = tiers;
+        int count = 0;
+        for (HistorySegment segment : snapshot.cold) {
+            count += segment.countBetween(fromDay, toDay);
+        }
+        for (Generation generation : snapshot.hot) {
+            for (List<RentalRecord> records : generation.byDay.subMap(fromDay, true, toDay, true).values()) {
+                count += records.size();
+            }
+        }
+        return count;
+    }
+
+    // Number of records on each day of the range that has any
+    public SortedMap<LocalDate, Integer> countByDay(LocalDate from, LocalDate to) {
+        int fromDay = epochDay(from);
+        int toDay = epochDay(to);
+        SortedMap<LocalDate, Integer> counts = new TreeMap<>();
+        if (fromDay > toDay) {
+            return counts;
+        }
+        Tiers snapshot = tiers;
+        for (HistorySegment segment : snapshot.cold) {
+            segment.addDayCounts(fromDay, toDay, counts);
+        }
+        for (Generation generation : snapshot.hot) {
+            for (Map.Entry<Integer, ConcurrentAppendList<RentalRecord>> day
+                    : generation.byDay.subMap(fromDay, true, toDay, true).entrySet()) {
+                counts.merge(LocalDate.ofEpochDay(day.getKey()), day.getValue().size(), Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static List<RentalRecord> keyBetween(ConcurrentSkipListMap<Long, ConcurrentAppendList<RentalRecord>> index,
+            int key, int fromDay, int toDay) {
+        return concat(new ArrayList<>(index.subMap(dayKey(key, fromDay), true, dayKey(key, toDay), true).values()));
+    }
+
+    // Key first, then day; the day's sign bit is flipped so its bits sort like the signed day
+    private static long dayKey(int key, int day) {
+        return (long) key << 32 | ((day ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    // Dates outside the int range of epoch days are clamped; no record can have one
+    private static int epochDay(LocalDate date) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, date.toEpochDay()));
+    }
+
+    // Lazily merges lists that are each ordered by date; on equal dates the earlier list wins,
+    // which keeps the tiers' insertion order
+    private static Stream<RentalRecord> mergeByDate(List<List<RentalRecord>> parts) {
+        if (parts.size() == 1) {
+            return parts.get(0).stream();
+        }
+        // Each head holds the next record of its part, so segment rows are read once
+        PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, parts.size()), (a, b) -> {
+            int byDate = BY_DATE.compare(a.record, b.record);
+            return byDate != 0 ? byDate : Integer.compare(a.part, b.part);
+        });
+        long size = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            if (!parts.get(i).isEmpty()) {
+                heads.add(new Head(i, parts.get(i).get(0)));
+                size += parts.get(i).size();
+            }
+        }
+        Iterator<RentalRecord> merged = new Iterator<RentalRecord>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public RentalRecord next() {
+                Head head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                RentalRecord record = head.record;
+                List<RentalRecord> part = parts.get(head.part);
+                if (++head.position < part.size()) {
+                    head.record = part.get(head.position);
+                    heads.add(head);
+                }
+                return record;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(merged, size, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    public List<RentalRecord> page(int cursor, int limit) {
+        return page(getRentalHistory(), cursor, limit);
+    }
+
+    public List<RentalRecord> pageByVehicle(int plateCode, int cursor, int limit) {
+        return page(getRentalRecordsByVehicle(plateCode), cursor, limit);
+    }
+
+    public List<RentalRecord> pageByCustomer(int customerId, int cursor, int limit) {
+        return page(getRentalRecordsByCustomer(customerId), cursor, limit);
+    }
+
+    // Unlike the other pages this cursor can shift if records dated inside the range arrive late
+    public List<RentalRecord> pageBetween(LocalDate from, LocalDate to, int cursor, int limit) {
+        checkPage(cursor, limit);
+        return streamBetween(from, to).skip(cursor).limit(limit).collect(Collectors.toList());
+    }
+
+    private static List<RentalRecord> page(List<RentalRecord> records, int cursor, int limit) {
+        checkPage(cursor, limit);
+        int from = Math.min(cursor, records.size());
+        int to = (int) Math.min((long) from + limit, records.size());
+        return new ArrayList<>(records.subList(from, to));
+    }
+
+    private static void checkPage(int cursor, int limit) {
+        if (cursor < 0 || limit < 0) {
+            throw new IllegalArgumentException("Invalid page cursor " + cursor + " or limit " + limit);
+        }
+    }
+
+    // A read-only list over the parts as they are now; sizes are fixed here, so parts that
+    // are still being appended to do not change the view
+    private static List<RentalRecord> concat(List<List<RentalRecord>> parts) {
+        if (parts.size() == 1) {
+            List<RentalRecord> part = parts.get(0);
+            return Collections.unmodifiableList(part.subList(0, part.size()));
+        }
+        int[] ends = new int[parts.size()];
+        int total = 0;
+        for (int i = 0; i < ends.length; i++) {
+            total += parts.get(i).size();
+            ends[i] = total;
+        }
+        int size = total;
+        return new AbstractList<RentalRecord>() {
+            @Override
+            public RentalRecord get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index);
+                }
+                int part = 0;
+                while (index >= ends[part]) {
+                    part++;
+                }
+                return parts.get(part).get(part == 0 ? index : index - ends[part - 1]);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private void deleteSegmentFiles() {
+        File[] files = segmentDir.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    public void resetForTesting() {
+        awaitTiering();
+        synchronized (tierLock) {
+            for (HistorySegment segment : tiers.cold) {
+                try {
+                    segment.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing " + segment.getFile() + ": " + e.getMessage());
+                }
+                segment.getFile().delete();
             }
+            tiers = new Tiers(new ArrayList<>(), List.of(new Generation()));
         }
-        return result;
+        vehiclesByPlate.clear();
+        customersById.clear();
+        customers.clear();
+        customersByGram.clear();
+        aggregates.clear();
     }
 }
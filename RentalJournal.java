@@ -0,0 +1,172 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+// The single append-only log of a RentalSystem. Every change is written here as a
+// JournalEvent and then handed to the projections that hold the in-memory state, so a
+// live change and its replay at the next start go through the same code.
+public class RentalJournal implements Closeable {
+    // Events per batch when replaying or backfilling
+    public static final int BATCH_SIZE = 4096;
+
+    private final AppendWriter writer;
+    private final List<JournalProjection> projections = new CopyOnWriteArrayList<>();
+
+    public RentalJournal(AppendWriter writer) {
+        this.writer = writer;
+    }
+
+    public File getFile() {
+        return writer.getFile();
+    }
+
+    // Receives every batch appended or replayed from now on, after the projections added before it
+    public void addProjection(JournalProjection projection) {
+        projections.add(projection);
+    }
+
+    public void removeProjection(JournalProjection projection) {
+        projections.remove(projection);
+    }
+
+    public void append(JournalEvent event) throws IOException {
+        List<JournalEvent> batch = new ArrayList<>(1);
+        batch.add(event);
+        append(batch);
+    }
+
+    // Writes the events with one append and hands them to the projections as one batch.
+    // Nothing is applied when the write fails, so memory never holds a change the journal
+    // would not replay.
+    public void append(List<JournalEvent> events) throws IOException {
+        if (events.size() == 1) {
+            writer.append(events.get(0).toJournalLine());
+        } else if (!events.isEmpty()) {
+            List<String> lines = new ArrayList<>(events.size());
+            for (JournalEvent event : events) {
+                lines.add(event.toJournalLine());
+            }
+            writer.appendAll(lines);
+        }
+        deliver(events);
+    }
+
+    private void deliver(List<JournalEvent> batch) {
+        for (JournalProjection projection : projections) {
+            projection.apply(batch);
+        }
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    // Bytes on disk; after flush() this covers every event appended so far
+    public long length() {
+        return writer.getFile().length();
+    }
+
+    // Replays everything from the given offset into the registered projections
+    public long replay(long from, int threads) throws IOException {
+        return replay(from, Long.MAX_VALUE, threads, this::deliver);
+    }
+
+    // Feeds the events in [from, to) to the target in journal order, BATCH_SIZE at a time,
+    // and returns how many there were. With more than one thread the range is cut at line
+    // boundaries and the pieces are parsed in parallel before being applied in order.
+    public long replay(long from, long to, int threads, JournalProjection target) throws IOException {
+        File file = getFile();
+        if (!file.exists()) return 0;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long end = Math.min(to, channel.size());
+            if (threads <= 1) {
+                List<JournalEvent> batch = new ArrayList<>(BATCH_SIZE);
+                long[] count = { 0 };
+                MappedFileReader.forEachLine(channel, from, end, line -> {
+                    JournalEvent event = parse(line);
+                    if (event == null) {
+                        return;
+                    }
+                    batch.add(event);
+                    count[0]++;
+                    if (batch.size() == BATCH_SIZE) {
+                        // Projections may keep the list they are given
+                        target.apply(new ArrayList<>(batch));
+                        batch.clear();
+                    }
+                });
+                if (!batch.isEmpty()) {
+                    target.apply(batch);
+                }
+                return count[0];
+            }
+
+            List<long[]> ranges = MappedFileReader.splitAtLines(channel, from, end, threads);
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                List<List<JournalEvent>> parsed = pool.submit(() -> ranges.parallelStream()
+                        .map(range -> parseRange(channel, range))
+                        .collect(Collectors.toList())).get();
+                long count = 0;
+                for (List<JournalEvent> piece : parsed) {
+                    for (int i = 0; i < piece.size(); i += BATCH_SIZE) {
+                        target.apply(piece.subList(i, Math.min(piece.size(), i + BATCH_SIZE)));
+                    }
+                    count += piece.size();
+                }
+                return count;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while replaying " + file, e);
+            } catch (ExecutionException e) {
+                throw new IOException("Error replaying " + file + ": " + e.getCause().getMessage(), e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static List<JournalEvent> parseRange(FileChannel channel, long[] range) {
+        List<JournalEvent> events = new ArrayList<>();
+        try {
+            MappedFileReader.forEachLine(channel, range[0], range[1], line -> {
+                JournalEvent event = parse(line);
+                if (event != null) {
+                    events.add(event);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return events;
+    }
+
+    // Returns null for lines that are not events, after saying why if they were malformed
+    private static JournalEvent parse(MappedFileReader.LineCursor line) {
+        try {
+            return JournalEvent.parse(line);
+        } catch (RuntimeException e) {
+            System.err.println("Skipping journal entry: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public String getMetrics() {
+        return writer.getMetrics();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Load generator for RentalServer. A request file has one request path per line, such as
+// /rent?plate=ABC123&customer=1&days=3; blank lines and lines starting with # are skipped.
+//   java RentalLoadClient generate <file> <vehicles> <customers> <cycles> [seed]
+//   java RentalLoadClient run <base-url> <file> [--clients 16] [--repeat 1]
+// run sends every line once per repeat, spread over the clients, and reports throughput,
+// status counts and latency percentiles.
+public class RentalLoadClient {
+
+    // Adds the fleet and customers, then rents and returns random vehicles with lookups in between
+    public static void generate(File file, int vehicles, int customers, int cycles, long seed) throws IOException {
+        Random random = new Random(seed);
+        LocalDate day = LocalDate.of(2024, 1, 1);
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < vehicles; i++) {
+                Vehicle v = SyntheticDataGenerator.vehicle(i, random);
+                out.write("/vehicles/add?" + vehicleQuery(v));
+                out.newLine();
+            }
+            for (int i = 0; i < customers; i++) {
+                Customer c = SyntheticDataGenerator.customer(i, random);
+                out.write("/customers/add?id=" + c.getCustomerId() + "&name=" + encode(c.getCustomerName()));
+                out.newLine();
+            }
+            for (int i = 0; i < cycles; i++) {
+                String plate = SyntheticDataGenerator.plate(random.nextInt(vehicles));
+                int customer = 1 + random.nextInt(customers);
+                out.write("/rent?plate=" + plate + "&customer=" + customer + "&days=" + (1 + random.nextInt(14)) + "&date=" + day);
+                out.newLine();
+                out.write("/vehicles?plate=" + plate);
+                out.newLine();
+                out.write("/return?plate=" + plate + "&customer=" + customer + "&date=" + day);
+                out.newLine();
+                if (i % 10 == 0) {
+                    out.write("/history?plate=" + plate);
+                    out.newLine();
+                }
+            }
+        }
+    }
+
+    private static String vehicleQuery(Vehicle v) {
+        String query = "plate=" + v.getLicensePlate() + "&make=" + encode(v.getMake()) + "&model=" + encode(v.getModel())
+                + "&year=" + v.getYear();
+        switch (VehicleType.of(v)) {
+            case CAR:
+                return "type=car&" + query + "&seats=" + ((Car) v).getNumSeats();
+            case SPORT_CAR:
+                SportCar s = (SportCar) v;
+                return "type=sportcar&" + query + "&seats=" + s.getNumSeats() + "&horsepower=" + s.getHorsepower()
+                        + "&turbo=" + s.hasTurbo();
+            case TRUCK:
+                return "type=truck&" + query + "&cargo=" + ((Truck) v).getCargoCapacity();
+            default:
+                return "type=motorcycle&" + query + "&sidecar=" + ((Motorcycle) v).hasSidecar();
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    public static void run(String baseUrl, File file, int clients, int repeat) throws Exception {
+        List<String> paths = new ArrayList<>();
+        for (String line : Files.readAllLines(file.toPath())) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                paths.add(trimmed);
+            }
+        }
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        int total = paths.size() * repeat;
+        long[] latencies = new long[total];
+        AtomicLong next = new AtomicLong();
+        AtomicLong[] statuses = new AtomicLong[6];
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = new AtomicLong();
+        }
+        AtomicLong failures = new AtomicLong();
+
+        // Requests are handed out in file order, so adds run ahead of the rentals that use them
+        ExecutorService pool = RentalServer.newRequestExecutor();
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                workers.add(pool.submit(() -> {
+                    for (long i = next.getAndIncrement(); i < total; i = next.getAndIncrement()) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(base + paths.get((int) (i % paths.size()))))
+                                .timeout(Duration.ofSeconds(30)).build();
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            statuses[Math.min(5, response.statusCode() / 100)].incrementAndGet();
+                        } catch (IOException e) {
+                            failures.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        latencies[(int) i] = System.nanoTime() - sent;
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.printf("%d requests from %d clients in %.2f s: %.0f requests/s%n",
+                total, clients, elapsed / 1e9, total / (elapsed / 1e9));
+        System.out.printf("status 2xx %d, 4xx %d, 5xx %d, connection failures %d%n",
+                statuses[2].get(), statuses[4].get(), statuses[5].get(), failures.get());
+        System.out.printf("latency ms: p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                percentile(latencies, 99.9), total == 0 ? 0.0 : latencies[total - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 5 && args[0].equals("generate")) {
+            long seed = args.length > 5 ? Long.parseLong(args[5]) : 42;
+            generate(new File(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]), seed);
+            System.out.println("Requests written to " + args[1]);
+        } else if (args.length >= 3 && args[0].equals("run")) {
+            int clients = 16;
+            int repeat = 1;
+            for (int i = 3; i + 1 < args.length; i += 2) {
+                switch (args[i]) {
+                    case "--clients": clients = Integer.parseInt(args[i + 1]); break;
+                    case "--repeat": repeat = Integer.parseInt(args[i + 1]); break;
+                    default:
+                        System.err.println("Unknown option " + args[i]);
+                        System.exit(1);
+                }
+            }
+            run(args[1], new File(args[2]), clients, repeat);
+        } else {
+            System.err.println("Usage: RentalLoadClient generate <file> <vehicles> <customers> <cycles> [seed]");
+            System.err.println("       RentalLoadClient run <base-url> <file> [--clients 16] [--repeat 1]");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Latency histograms and failure counters for the RentalSystem hot paths, plus the
+// startup load phase timings. Call sites do
+//     long start = RentalMetrics.start();
+//     ...
+//     RentalMetrics.record(RentalMetrics.Op.RENT, start, ok);
+// Recording never locks. With -Drental.metrics=false, ENABLED is a constant false and
+// the JIT drops both calls, so disabled metrics cost nothing on the hot path.
+public final class RentalMetrics {
+    public static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("rental.metrics"));
+
+    public enum Op {
+        RENT, RETURN, FIND_VEHICLE, FIND_CUSTOMER, SAVE_VEHICLE, SAVE_CUSTOMER, SAVE_RECORD, SAVE_RESERVATION
+    }
+
+    private static final Op[] OPS = Op.values();
+    private static final LatencyHistogram[] LATENCIES = new LatencyHistogram[OPS.length];
+    private static final LongAdder[] FAILURES = new LongAdder[OPS.length];
+    private static final Map<String, Long> LOAD_PHASES = Collections.synchronizedMap(new LinkedHashMap<>());
+    private static ScheduledExecutorService exporter;
+
+    static {
+        for (int i = 0; i < OPS.length; i++) {
+            LATENCIES[i] = new LatencyHistogram();
+            FAILURES[i] = new LongAdder();
+        }
+    }
+
+    private RentalMetrics() {}
+
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public static void record(Op op, long start) {
+        if (ENABLED) {
+            LATENCIES[op.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    // A failed operation still counts towards the latency; failures are also counted apart
+    public static void record(Op op, long start, boolean ok) {
+        if (ENABLED) {
+            LATENCIES[op.ordinal()].record(System.nanoTime() - start);
+            if (!ok) {
+                FAILURES[op.ordinal()].increment();
+            }
+        }
+    }
+
+    // Startup timings are kept even when metrics are off; they are recorded once per phase
+    public static void recordLoadPhase(String phase, long startNanos) {
+        LOAD_PHASES.put(phase, (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    public static LatencyHistogram getLatency(Op op) {
+        return LATENCIES[op.ordinal()];
+    }
+
+    public static long getFailures(Op op) {
+        return FAILURES[op.ordinal()].sum();
+    }
+
+    public static Map<String, Long> getLoadPhaseMillis() {
+        synchronized (LOAD_PHASES) {
+            return new LinkedHashMap<>(LOAD_PHASES);
+        }
+    }
+
+    public static void reset() {
+        for (int i = 0; i < OPS.length; i++) {
+            LATENCIES[i].reset();
+            FAILURES[i].reset();
+        }
+    }
+
+    public static String snapshot() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-17s %10s %8s %10s %10s %10s %10s%n", "operation", "count", "failed", "mean us", "p50 us", "p99 us", "max us"));
+        for (Op op : OPS) {
+            LatencyHistogram h = getLatency(op);
+            out.append(String.format("%-17s %10d %8d %10.1f %10.1f %10.1f %10.1f%n", op, h.getCount(), getFailures(op),
+                    h.getMean() / 1e3, h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3, h.getMax() / 1e3));
+        }
+        out.append("load phases (ms): ").append(getLoadPhaseMillis());
+        return out.toString();
+    }
+
+    public static String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"timestamp\": \"").append(java.time.Instant.now()).append("\",\n");
+        json.append("  \"enabled\": ").append(ENABLED).append(",\n  \"operations\": [\n");
+        for (int i = 0; i < OPS.length; i++) {
+            LatencyHistogram h = LATENCIES[i];
+            json.append(String.format("    {\"op\": \"%s\", \"count\": %d, \"failures\": %d, \"meanNs\": %.0f, "
+                            + "\"p50Ns\": %d, \"p90Ns\": %d, \"p99Ns\": %d, \"p999Ns\": %d, \"maxNs\": %d}%s%n",
+                    OPS[i], h.getCount(), FAILURES[i].sum(), h.getMean(), h.getPercentile(50), h.getPercentile(90),
+                    h.getPercentile(99), h.getPercentile(99.9), h.getMax(), i + 1 < OPS.length ? "," : ""));
+        }
+        json.append("  ],\n  \"loadPhasesMs\": {");
+        boolean first = true;
+        for (Map.Entry<String, Long> phase : getLoadPhaseMillis().entrySet()) {
+            json.append(first ? "" : ", ").append('"').append(phase.getKey()).append("\": ").append(phase.getValue());
+            first = false;
+        }
+        return json.append("}\n}\n").toString();
+    }
+
+    // Rewrites the file with a JSON snapshot every periodMillis. The snapshot goes to a
+    // temporary file first, so readers never see a half-written one.
+    public static synchronized void startExport(File file, long periodMillis) {
+        if (exporter != null) {
+            return;
+        }
+        exporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rental-metrics-export");
+            t.setDaemon(true);
+            return t;
+        });
+        exporter.scheduleAtFixedRate(() -> exportTo(file), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopExport() {
+        if (exporter != null) {
+            exporter.shutdown();
+            exporter = null;
+        }
+    }
+
+    public static void exportTo(File file) {
+        try {
+            File tmp = new File(file.getPath() + ".tmp");
+            Files.write(tmp.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error exporting metrics: " + e.getMessage());
+        }
+    }
+
+    public static void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("rental:type=RentalMetrics");
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), name);
+            }
+        } catch (JMException e) {
+            System.err.println("Error registering metrics MBean: " + e.getMessage());
+        }
+    }
+
+    private static class MXBean implements RentalMetricsMXBean {
+        @Override
+        public Map<String, Long> getCounts() {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (Op op : OPS) {
+                counts.put(op.name(), getLatency(op).getCount());
+            }
+            return counts;
+        }
+
+        @Override
+        public Map<String, Long> getFailures() {
+            Map<String, Long> failures = new LinkedHashMap<>();
+            for (Op op : OPS) {
+                failures.put(op.name(), RentalMetrics.getFailures(op));
+            }
+            return failures;
+        }
+
+        @Override
+        public Map<String, Double> getMeanMicros() {
+            Map<String, Double> means = new LinkedHashMap<>();
+            for (Op op : OPS) {
+                means.put(op.name(), getLatency(op).getMean() / 1e3);
+            }
+            return means;
+        }
+
+        @Override
+        public Map<String, Double> getP99Micros() {
+            Map<String, Double> p99 = new LinkedHashMap<>();
+            for (Op op : OPS) {
+                p99.put(op.name(), getLatency(op).getPercentile(99) / 1e3);
+            }
+            return p99;
+        }
+
+        @Override
+        public Map<String, Long> getLoadPhaseMillis() {
+            return RentalMetrics.getLoadPhaseMillis();
+        }
+
+        @Override
+        public String getSnapshotJson() {
+            return toJson();
+        }
+
+        @Override
+        public void reset() {
+            RentalMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+import java.util.Map;
+
+// JMX view of RentalMetrics, registered as rental:type=RentalMetrics
+public interface RentalMetricsMXBean {
+    Map<String, Long> getCounts();
+
+    Map<String, Long> getFailures();
+
+    Map<String, Double> getMeanMicros();
+
+    Map<String, Double> getP99Micros();
+
+    Map<String, Long> getLoadPhaseMillis();
+
+    String getSnapshotJson();
+
+    void reset();
+}
@@ -4,17 +4,26 @@ public class RentalRecord {
     private Vehicle vehicle;
     private Customer customer;
     private LocalDate recordDate;
-    private double totalAmount;
+    private long amountCents;
     private String recordType; // "RENT" or "RETURN"
 
     public RentalRecord(Vehicle vehicle, Customer customer, LocalDate recordDate, double totalAmount, String recordType) {
+        this(vehicle, customer, recordDate, recordType, Math.round(totalAmount * 100));
+    }
+
+    private RentalRecord(Vehicle vehicle, Customer customer, LocalDate recordDate, String recordType, long amountCents) {
         this.vehicle = vehicle;
         this.customer = customer;
         this.recordDate = recordDate;
-        this.totalAmount = totalAmount;
+        this.amountCents = amountCents;
         this.recordType = recordType;
     }
 
+    // Amounts are kept in cents; the double constructor rounds to the nearest cent
+    public static RentalRecord ofCents(Vehicle vehicle, Customer customer, LocalDate recordDate, long amountCents, String recordType) {
+        return new RentalRecord(vehicle, customer, recordDate, recordType, amountCents);
+    }
+
     public Customer getCustomer(){
     	return customer;
     }
@@ -22,16 +31,32 @@ public class RentalRecord {
     public Vehicle getVehicle(){
     	return vehicle;
     }
+
+    public String getRecordType(){
+    	return recordType;
+    }
+
+    public LocalDate getRecordDate(){
+    	return recordDate;
+    }
+
+    public double getTotalAmount(){
+    	return amountCents / 100.0;
+    }
+
+    public long getAmountCents(){
+    	return amountCents;
+    }
     
     @Override
     public String toString() {
         return recordType + " | Plate: " + vehicle.getLicensePlate() + 
                " | Customer: " + customer.getCustomerName() + 
                " | Date: " + recordDate + 
-               " | Amount: $" + totalAmount;
+               " | Amount: $" + getTotalAmount();
     }
 
     public String toFileString() {
-        return recordType + "," + vehicle.getLicensePlate() + "," + customer.getCustomerId() + "," + recordDate + "," + totalAmount;
+        return recordType + "," + vehicle.getLicensePlate() + "," + customer.getCustomerId() + "," + recordDate + "," + getTotalAmount();
     }
 }
\ No newline at end of file
@@ -0,0 +1,297 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Serves RentalSystem over HTTP so many clients can use it at once. Every operation takes
+// its arguments as query parameters (GET or POST) and answers in plain text:
+//   /vehicles/add?type=car|sportcar|truck|motorcycle&plate=&make=&model=&year=
+//                 [&seats=][&horsepower=&turbo=][&cargo=][&sidecar=]
+//   /customers/add?id=&name=
+//   /rent?plate=&customer=[&days=1 | &amount=][&date=yyyy-MM-dd]
+//   /return?plate=&customer=[&amount=][&date=yyyy-MM-dd]
+// Without an amount, the pricing engine sets the price.
+//   /vehicles?plate=
+//   /history?plate=   or   /history?customer=<name>   [&cursor=0][&limit=]
+//     answers "<n> records" and, when there are more, "next <cursor>" before the records
+// Requests run on a virtual thread each when the JDK has them, otherwise on a cached pool.
+//   java RentalServer [port]
+public class RentalServer {
+    static {
+        // Without TCP_NODELAY the headers and body go out as separate small segments and
+        // keep-alive clients wait out the peer's delayed ACK (~40 ms) on every request.
+        // Has to be set before the first HttpServer is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final RentalSystem system;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private static class BadRequest extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        BadRequest(String message) {
+            super(message);
+        }
+    }
+
+    private interface Operation {
+        Response handle(Map<String, String> params) throws BadRequest;
+    }
+
+    private static class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    public RentalServer(RentalSystem system, int port) throws IOException {
+        this.system = system;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        route("/vehicles/add", this::addVehicle);
+        route("/customers/add", this::addCustomer);
+        route("/rent", params -> rentOrReturn(params, true));
+        route("/return", params -> rentOrReturn(params, false));
+        route("/vehicles", this::lookupVehicle);
+        route("/history", this::history);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor exists from Java 21; look it up so this
+    // still compiles and runs on older JDKs
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "rental-server-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void route(String path, Operation operation) {
+        server.createContext(path, exchange -> handle(exchange, path, operation));
+    }
+
+    private void handle(HttpExchange exchange, String path, Operation operation) throws IOException {
+        Response response;
+        try {
+            // Contexts match by prefix; only the exact path is an operation
+            if (!exchange.getRequestURI().getPath().equals(path)) {
+                response = new Response(404, "Unknown operation " + exchange.getRequestURI().getPath());
+            } else {
+                response = operation.handle(parseQuery(exchange.getRequestURI().getRawQuery()));
+            }
+        } catch (BadRequest e) {
+            response = new Response(400, e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Error handling " + exchange.getRequestURI() + ": " + e.getMessage());
+            response = new Response(500, "Internal error");
+        }
+        byte[] body = (response.body + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private Response addVehicle(Map<String, String> params) throws BadRequest {
+        Vehicle vehicle;
+        String make = required(params, "make");
+        String model = required(params, "model");
+        int year = intParam(params, "year");
+        try {
+            switch (required(params, "type").toLowerCase()) {
+                case "car":
+                    vehicle = new Car(make, model, year, intParam(params, "seats"));
+                    break;
+                case "sportcar":
+                    vehicle = new SportCar(make, model, year, intParam(params, "seats"), intParam(params, "horsepower"),
+                            Boolean.parseBoolean(params.get("turbo")));
+                    break;
+                case "truck":
+                    vehicle = new Truck(make, model, year, doubleParam(params, "cargo"));
+                    break;
+                case "motorcycle":
+                    vehicle = new Motorcycle(make, model, year, Boolean.parseBoolean(params.get("sidecar")));
+                    break;
+                default:
+                    throw new BadRequest("Unknown vehicle type " + params.get("type"));
+            }
+            vehicle.setLicensePlate(required(params, "plate"));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequest(e.getMessage());
+        }
+        return system.addVehicle(vehicle)
+                ? new Response(200, "Added " + vehicle.getLicensePlate())
+                : new Response(409, "Vehicle " + vehicle.getLicensePlate() + " already exists");
+    }
+
+    private Response addCustomer(Map<String, String> params) throws BadRequest {
+        Customer customer;
+        try {
+            customer = new Customer(intParam(params, "id"), required(params, "name"));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequest(e.getMessage());
+        }
+        return system.addCustomer(customer)
+                ? new Response(200, "Added customer " + customer.getCustomerId())
+                : new Response(409, "Customer " + customer.getCustomerId() + " already exists");
+    }
+
+    private Response rentOrReturn(Map<String, String> params, boolean rent) throws BadRequest {
+        Vehicle vehicle = vehicle(params);
+        Customer customer = system.findCustomerById(required(params, "customer"));
+        if (vehicle == null || customer == null) {
+            return new Response(404, vehicle == null ? "Unknown vehicle" : "Unknown customer");
+        }
+        LocalDate date;
+        try {
+            date = params.containsKey("date") ? LocalDate.parse(params.get("date")) : LocalDate.now();
+        } catch (DateTimeParseException e) {
+            throw new BadRequest("Invalid date " + params.get("date"));
+        }
+        boolean done;
+        if (params.containsKey("amount")) {
+            double amount = doubleParam(params, "amount");
+            done = rent
+                    ? system.rentVehicle(vehicle, customer, date, amount)
+                    : system.returnVehicle(vehicle, customer, date, amount);
+        } else if (rent) {
+            int days = params.containsKey("days") ? intParam(params, "days") : 1;
+            if (days < 1 || days > RentalSystem.MAX_RENTAL_DAYS) {
+                throw new BadRequest("Invalid days " + days);
+            }
+            done = system.rentVehicle(vehicle, customer, date, days);
+        } else {
+            done = system.returnVehicle(vehicle, customer, date);
+        }
+        if (!done) {
+            return new Response(409, "Vehicle " + vehicle.getLicensePlate() + " is " + vehicle.getStatus());
+        }
+        return new Response(200, (rent ? "Rented " : "Returned ") + vehicle.getLicensePlate());
+    }
+
+    private Response lookupVehicle(Map<String, String> params) throws BadRequest {
+        Vehicle vehicle = vehicle(params);
+        return vehicle == null ? new Response(404, "Unknown vehicle") : new Response(200, vehicle.getInfo());
+    }
+
+    private Response history(Map<String, String> params) throws BadRequest {
+        List<RentalRecord> records;
+        if (params.containsKey("plate")) {
+            records = system.getHistory().getRentalRecordsByVehicle(params.get("plate"));
+        } else {
+            records = system.getHistory().getRentalRecordsByCustomer(required(params, "customer"));
+        }
+        // The lists are snapshot views, so paging does not copy the records it skips
+        int cursor = params.containsKey("cursor") ? intParam(params, "cursor") : 0;
+        int limit = params.containsKey("limit") ? intParam(params, "limit") : Integer.MAX_VALUE;
+        if (cursor < 0 || limit < 0) {
+            throw new BadRequest("Invalid cursor or limit");
+        }
+        int from = Math.min(cursor, records.size());
+        int to = (int) Math.min((long) from + limit, records.size());
+        StringBuilder body = new StringBuilder();
+        body.append(to - from).append(" records");
+        if (to < records.size()) {
+            body.append("\nnext ").append(to);
+        }
+        for (RentalRecord record : records.subList(from, to)) {
+            body.append('\n').append(record);
+        }
+        return new Response(200, body.toString());
+    }
+
+    private Vehicle vehicle(Map<String, String> params) throws BadRequest {
+        String plate = required(params, "plate");
+        if (!Vehicle.isValidPlate(plate)) {
+            throw new BadRequest("Invalid plate " + plate);
+        }
+        return system.findVehicleByPlate(plate);
+    }
+
+    private static String required(Map<String, String> params, String name) throws BadRequest {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new BadRequest("Missing parameter " + name);
+        }
+        return value;
+    }
+
+    private static int intParam(Map<String, String> params, String name) throws BadRequest {
+        try {
+            return Integer.parseInt(required(params, name));
+        } catch (NumberFormatException e) {
+            throw new BadRequest("Invalid " + name + " " + params.get(name));
+        }
+    }
+
+    private static double doubleParam(Map<String, String> params, String name) throws BadRequest {
+        try {
+            return Double.parseDouble(required(params, name));
+        } catch (NumberFormatException e) {
+            throw new BadRequest("Invalid " + name + " " + params.get(name));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        RentalSystem system = RentalSystem.getInstance();
+        RentalServer server = new RentalServer(system, port);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            system.shutdown();
+        }, "rental-server-shutdown"));
+        System.out.println("Rental server listening on port " + server.getPort());
+    }
+}
@@ -0,0 +1,272 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A checkpoint of the whole RentalSystem in one file: vehicles with their status, customers,
+// the rental history, open reservations and due dates, plus how long the journal was when
+// it was taken. Restoring loads the file and then replays only the events after that offset.
+//
+// Layout (big-endian), every section but the strings fixed width so it loads straight
+// from a mapping:
+//   header:   magic "RSNP", version, created (epoch millis, long), journal length (long)
+//   strings:  count, then each string (short length + UTF-8): makes, models, record types
+//   vehicles: count x (type (byte), plate code, make id, model id, year (short), status (byte),
+//             class fields packed by VehicleType.packExtra (long))
+//   customers: count x (id, name (short length + UTF-8))
+//   records:  count x (plate code, customer id, epoch day, cents (long), type id)
+//   reservations: count x (plate code, customer id, first day, last day)
+//   due dates: count x (plate code, epoch day), Integer.MAX_VALUE for no due date
+public class RentalSnapshot {
+    private static final int MAGIC = 0x52534E50;
+    private static final int VERSION = 2;
+    private static final int NO_DUE_DATE = Integer.MAX_VALUE;
+    private static final VehicleType[] TYPES = VehicleType.values();
+    private static final Vehicle.VehicleStatus[] STATUSES = Vehicle.VehicleStatus.values();
+
+    private final long createdMillis;
+    private final long journalOffset;
+    private final List<Vehicle> vehicles;
+    private final List<Customer> customers;
+    private final List<RentalRecord> records;
+    private final List<Reservation> reservations;
+    private final Map<Integer, LocalDate> dueDates;
+
+    private RentalSnapshot(long createdMillis, long journalOffset, List<Vehicle> vehicles, List<Customer> customers,
+            List<RentalRecord> records, List<Reservation> reservations, Map<Integer, LocalDate> dueDates) {
+        this.createdMillis = createdMillis;
+        this.journalOffset = journalOffset;
+        this.vehicles = vehicles;
+        this.customers = customers;
+        this.records = records;
+        this.reservations = reservations;
+        this.dueDates = dueDates;
+    }
+
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    // Byte length of the journal when the snapshot was cut
+    public long getJournalOffset() {
+        return journalOffset;
+    }
+
+    // The vehicles carry the status they had when the snapshot was taken
+    public List<Vehicle> getVehicles() {
+        return vehicles;
+    }
+
+    public List<Customer> getCustomers() {
+        return customers;
+    }
+
+    public List<RentalRecord> getRecords() {
+        return records;
+    }
+
+    public List<Reservation> getReservations() {
+        return reservations;
+    }
+
+    // Plate code to due date, LocalDate.MAX for rentals priced by hand
+    public Map<Integer, LocalDate> getDueDates() {
+        return dueDates;
+    }
+
+    // Writes to a temporary file first and moves it over the target, so a crash midway
+    // leaves the previous snapshot in place. statuses[i] is the ordinal of vehicles[i]'s
+    // status when the snapshot was cut, since the vehicles themselves may have moved on.
+    public static void write(File target, long journalOffset, List<Vehicle> vehicles, byte[] statuses,
+            List<Customer> customers, List<RentalRecord> records, List<Reservation> reservations,
+            Map<Integer, LocalDate> dueDates) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int vehicleCount = statuses.length;
+        for (int i = 0; i < vehicleCount; i++) {
+            intern(ids, strings, vehicles.get(i).getMake());
+            intern(ids, strings, vehicles.get(i).getModel());
+        }
+        for (RentalRecord record : records) {
+            intern(ids, strings, record.getRecordType());
+        }
+
+        File tmp = new File(target.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeLong(journalOffset);
+
+            out.writeInt(strings.size());
+            for (String s : strings) {
+                writeString(out, s);
+            }
+
+            out.writeInt(vehicleCount);
+            for (int i = 0; i < vehicleCount; i++) {
+                Vehicle vehicle = vehicles.get(i);
+                out.writeByte(VehicleType.of(vehicle).ordinal());
+                out.writeInt(vehicle.getPlateCode());
+                out.writeInt(ids.get(nullToEmpty(vehicle.getMake())));
+                out.writeInt(ids.get(nullToEmpty(vehicle.getModel())));
+                out.writeShort(vehicle.getYear());
+                out.writeByte(statuses[i]);
+                out.writeLong(VehicleType.packExtra(vehicle));
+            }
+
+            out.writeInt(customers.size());
+            for (Customer customer : customers) {
+                out.writeInt(customer.getCustomerId());
+                writeString(out, customer.getCustomerName());
+            }
+
+            out.writeInt(records.size());
+            for (RentalRecord record : records) {
+                out.writeInt(record.getVehicle().getPlateCode());
+                out.writeInt(record.getCustomer().getCustomerId());
+                out.writeInt((int) record.getRecordDate().toEpochDay());
+                out.writeLong(record.getAmountCents());
+                out.writeInt(ids.get(record.getRecordType()));
+            }
+
+            out.writeInt(reservations.size());
+            for (Reservation reservation : reservations) {
+                out.writeInt(reservation.getVehicle().getPlateCode());
+                out.writeInt(reservation.getCustomer().getCustomerId());
+                out.writeInt((int) reservation.getStartDate().toEpochDay());
+                out.writeInt((int) reservation.getEndDate().toEpochDay());
+            }
+
+            out.writeInt(dueDates.size());
+            for (Map.Entry<Integer, LocalDate> entry : dueDates.entrySet()) {
+                LocalDate date = entry.getValue();
+                out.writeInt(entry.getKey());
+                out.writeInt(date.equals(LocalDate.MAX) ? NO_DUE_DATE : (int) date.toEpochDay());
+            }
+        }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static RentalSnapshot read(File source) throws IOException {
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large to map: " + source);
+            }
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Not a rental snapshot: " + source);
+            }
+            long created = in.getLong();
+            long offset = in.getLong();
+
+            String[] strings = new String[in.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(in);
+            }
+
+            int vehicleCount = in.getInt();
+            List<Vehicle> vehicles = new ArrayList<>(vehicleCount);
+            IntHashMap<Vehicle> byPlate = new IntHashMap<>(vehicleCount);
+            for (int i = 0; i < vehicleCount; i++) {
+                VehicleType type = TYPES[in.get()];
+                int plate = in.getInt();
+                String make = strings[in.getInt()];
+                String model = strings[in.getInt()];
+                int year = in.getShort();
+                Vehicle.VehicleStatus status = STATUSES[in.get()];
+                Vehicle vehicle = type.unpackVehicle(make, model, year, in.getLong());
+                vehicle.setPlateCode(plate);
+                vehicle.setStatus(status);
+                vehicles.add(vehicle);
+                byPlate.put(plate, vehicle);
+            }
+
+            int customerCount = in.getInt();
+            List<Customer> customers = new ArrayList<>(customerCount);
+            IntHashMap<Customer> byId = new IntHashMap<>(customerCount);
+            for (int i = 0; i < customerCount; i++) {
+                Customer customer = new Customer(in.getInt(), readString(in));
+                customers.add(customer);
+                byId.put(customer.getCustomerId(), customer);
+            }
+
+            int recordCount = in.getInt();
+            List<RentalRecord> records = new ArrayList<>(recordCount);
+            for (int i = 0; i < recordCount; i++) {
+                Vehicle vehicle = byPlate.get(in.getInt());
+                Customer customer = byId.get(in.getInt());
+                LocalDate date = LocalDate.ofEpochDay(in.getInt());
+                long cents = in.getLong();
+                String type = strings[in.getInt()];
+                if (vehicle == null || customer == null) {
+                    throw new IOException("Record " + i + " refers to an unknown vehicle or customer in " + source);
+                }
+                records.add(RentalRecord.ofCents(vehicle, customer, date, cents, type));
+            }
+
+            int reservationCount = in.getInt();
+            List<Reservation> reservations = new ArrayList<>(reservationCount);
+            for (int i = 0; i < reservationCount; i++) {
+                Vehicle vehicle = byPlate.get(in.getInt());
+                Customer customer = byId.get(in.getInt());
+                LocalDate from = LocalDate.ofEpochDay(in.getInt());
+                LocalDate to = LocalDate.ofEpochDay(in.getInt());
+                if (vehicle == null || customer == null) {
+                    throw new IOException("Reservation " + i + " refers to an unknown vehicle or customer in " + source);
+                }
+                reservations.add(new Reservation(vehicle, customer, from, to));
+            }
+
+            int dueCount = in.getInt();
+            Map<Integer, LocalDate> dueDates = new HashMap<>(dueCount * 2);
+            for (int i = 0; i < dueCount; i++) {
+                int plate = in.getInt();
+                int day = in.getInt();
+                dueDates.put(plate, day == NO_DUE_DATE ? LocalDate.MAX : LocalDate.ofEpochDay(day));
+            }
+            return new RentalSnapshot(created, offset, vehicles, customers, records, reservations, dueDates);
+        } catch (RuntimeException e) {
+            // A truncated or corrupt file shows up as buffer underflow or a bad index
+            throw new IOException("Corrupt rental snapshot " + source + ": " + e, e);
+        }
+    }
+
+    private static void intern(Map<String, Integer> ids, List<String> strings, String s) {
+        ids.computeIfAbsent(nullToEmpty(s), k -> {
+            strings.add(k);
+            return strings.size() - 1;
+        });
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = nullToEmpty(s).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("String too long for a snapshot: " + bytes.length + " bytes");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
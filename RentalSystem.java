@@ -1,25 +1,156 @@
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import java.time.Clock;
 import java.time.LocalDate;
 import java.io.*;
 
+// One fleet with its customers, history and journal. getInstance() is the process-wide
+// system working in the current directory; ShardedRentalSystem runs several, each in its
+// own directory.
+//
+// Every change is validated here, written to the journal as events and only then applied:
+// the fleet and the history are projections of the journal, fed by the same code when a
+// change is made and when the journal is replayed at start-up.
 public class RentalSystem {
-    private static RentalSystem instance;
+    private static volatile RentalSystem instance;
+    // Data files from before the journal, imported into it once
+    private static final String[] LEGACY_FILES = { "vehicles.txt", "customers.txt", "rental_records.txt", "reservations.txt" };
+    // Longest rental priced by the engine, -Drental.maxRentalDays (a year by default)
+    public static final int MAX_RENTAL_DAYS = Integer.getInteger("rental.maxRentalDays", 366);
 
+    // Null for the process-wide instance, whose files live in the working directory
+    private final File dataDir;
+    private final RentalHistory history;
+    // Rentals a customer has made so far, for pricing tiers
+    private final ToLongFunction<Customer> customerRentals;
     private List<Vehicle> vehicles;
     private List<Customer> customers;
-    private List<RentalRecord> rentalRecords;
-    private Map<String, List<RentalRecord>> rentalHistory;
+    private IntHashMap<Vehicle> vehiclesByPlate;
+    // Vehicles added live whose VehicleAdded event is being written. They have claimed their
+    // plate already, and the projection indexes them instead of building a copy, so callers
+    // keep working with the vehicle they passed in.
+    private final IntHashMap<Vehicle> pendingVehicles = new IntHashMap<>();
+    // The same for customers added live
+    private final IntHashMap<Customer> pendingCustomers = new IntHashMap<>();
+    // One instance of each make and model in this fleet, shared by its vehicles
+    private final Map<String, String> names = new ConcurrentHashMap<>();
+    private IntHashMap<Customer> customersById;
+    private VehicleStatusIndex statusIndex;
+    private AtomicIntegerArray fleetByType;
+    private final PricingEngine pricing;
+    // Whether this system created its pricing engine; a shared engine belongs to whoever
+    // shares it and is never reset from here
+    private final boolean ownsPricing;
+    // When each rented vehicle is due back, by plate code; LocalDate.MAX when the rent was
+    // priced by hand and has no due date
+    private IntHashMap<LocalDate> dueDates;
+    private FleetSearch fleetSearch;
+    private final RentalEventBus eventBus;
+    private ReservationBook reservations;
+    // RESERVED only says a vehicle is booked for today. Renting and booking decide from the
+    // reservations themselves; the status is worked out again when the day changes.
+    private Clock clock = Clock.systemDefaultZone();
+    private volatile long nextDayMillis;
+    private final Object dayMonitor = new Object();
+    private RentalJournal journal;
+    private File snapshotFile;
+    private ScheduledExecutorService checkpointer;
+    // Mutations in progress. checkpoint() raises cutting and waits for the count to drain,
+    // so the state it copies and the journal offset it records describe the same moment.
+    private final LongAdder mutations = new LongAdder();
+    private volatile boolean cutting;
+    private final Object cutMonitor = new Object();
 
     // Private constructor to prevent instantiation
     private RentalSystem() {
-        if (instance != null) {
+        this(null, RentalHistory.getInstance(), null, null);
+    }
+
+    // An independent system keeping its data files, snapshot and history segments in dataDir
+    public RentalSystem(File dataDir) {
+        this(dataDir, null, null);
+    }
+
+    // Shards of a ShardedRentalSystem share one pricing engine, and count a customer's
+    // rentals over all shards; a null pricing creates an engine of this system's own, and a
+    // null customerRentals counts this system's own history
+    RentalSystem(File dataDir, PricingEngine pricing, ToLongFunction<Customer> customerRentals) {
+        this(dataDir, new RentalHistory(new File(dataDir, "history"), Integer.getInteger("rental.history.hotRecords", 1_000_000)),
+                pricing, customerRentals);
+    }
+
+    private RentalSystem(File dataDir, RentalHistory history, PricingEngine pricing, ToLongFunction<Customer> customerRentals) {
+        if (dataDir == null && instance != null) {
             throw new RuntimeException("Use getInstance() method to get the single instance of this class.");
         }
+        if (dataDir != null && !dataDir.isDirectory() && !dataDir.mkdirs()) {
+            throw new UncheckedIOException(new IOException("Cannot create data directory " + dataDir));
+        }
+        this.dataDir = dataDir;
+        this.history = history;
+        this.customerRentals = customerRentals != null ? customerRentals
+                : customer -> history.getAggregates().getRentalsForCustomer(customer.getCustomerId());
+
+        vehicles = new ConcurrentAppendList<>();
+        customers = new ConcurrentAppendList<>();
+        vehiclesByPlate = new IntHashMap<>();
+        customersById = new IntHashMap<>();
+        fleetSearch = new FleetSearch();
+        statusIndex = new VehicleStatusIndex(fleetSearch);
+        fleetByType = new AtomicIntegerArray(VehicleType.values().length);
+        this.ownsPricing = pricing == null;
+        this.pricing = ownsPricing ? new PricingEngine() : pricing;
+        dueDates = new IntHashMap<>();
+        reservations = new ReservationBook();
+        eventBus = new RentalEventBus(Integer.getInteger("rental.eventBufferSize", 4096));
+
+        // Durability and batching can be tuned with -Drental.durability=NONE|BATCH|EVERY_WRITE,
+        // -Drental.batchBytes and -Drental.flushMillis
+        AppendWriter.Durability durability = AppendWriter.Durability.valueOf(
+                System.getProperty("rental.durability", "BATCH").toUpperCase());
+        int batchBytes = Integer.getInteger("rental.batchBytes", 64 * 1024);
+        long flushMillis = Long.getLong("rental.flushMillis", 20);
+        journal = new RentalJournal(new AppendWriter(new File(dataDir, "journal.txt"), durability, batchBytes, flushMillis));
+        // The fleet first: the history resolves plates and customer ids through it
+        journal.addProjection(this::applyToFleet);
+        journal.addProjection(this::applyToHistory);
+
+        // -Drental.metrics=false turns metrics off; -Drental.metricsFile=<path> exports a JSON
+        // snapshot every -Drental.metricsMillis (10 s by default)
+        if (RentalMetrics.ENABLED) {
+            RentalMetrics.registerMBean();
+            String metricsFile = System.getProperty("rental.metricsFile");
+            if (metricsFile != null) {
+                RentalMetrics.startExport(new File(metricsFile), Long.getLong("rental.metricsMillis", 10_000));
+            }
+        }
 
-        vehicles = new ArrayList<>();
-        customers = new ArrayList<>();
-        rentalRecords = new ArrayList<>();
-        rentalHistory = new HashMap<>();
+        // Restores from -Drental.snapshot (rental.snapshot by default) when it is usable;
+        // -Drental.checkpointMillis=N writes a new one every N ms
+        snapshotFile = dataDir == null ? new File(System.getProperty("rental.snapshot", "rental.snapshot"))
+                : new File(dataDir, "rental.snapshot");
+        loadData();
+        long checkpointMillis = Long.getLong("rental.checkpointMillis", 0);
+        if (checkpointMillis > 0) {
+            checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "rental-checkpoint");
+                t.setDaemon(true);
+                return t;
+            });
+            checkpointer.scheduleWithFixedDelay(() -> {
+                try {
+                    checkpoint();
+                } catch (IOException e) {
+                    System.err.println("Error writing checkpoint: " + e.getMessage());
+                }
+            }, checkpointMillis, checkpointMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     public static RentalSystem getInstance() {
@@ -44,176 +175,968 @@ public class RentalSystem {
         return getInstance();
     }
 
-    // --- Save Methods ---
-    private void saveVehicle(Vehicle vehicle) {
-        try (PrintWriter out = new PrintWriter(new FileWriter("vehicles.txt", true))) {
-            out.println(vehicle.toFileString());
+    // --- Journal ---
+    // Writes the events and applies them. Callers validate first and hold the vehicle's lock,
+    // so each vehicle's events are applied in the order they are written. Returns false when
+    // the append failed and nothing was applied; the caller then reports the change as failed.
+    private boolean save(List<JournalEvent> events, RentalMetrics.Op op, String what) {
+        long start = RentalMetrics.start();
+        try {
+            journal.append(events);
+            RentalMetrics.record(op, start, true);
+            return true;
         } catch (IOException e) {
-            System.err.println("Error saving vehicle: " + e.getMessage());
+            RentalMetrics.record(op, start, false);
+            System.err.println("Error saving " + what + ": " + e.getMessage());
+            return false;
         }
     }
 
-    private void saveCustomer(Customer customer) {
-        try (PrintWriter out = new PrintWriter(new FileWriter("customers.txt", true))) {
-            out.println(customer.toFileString());
-        } catch (IOException e) {
-            System.err.println("Error saving customer: " + e.getMessage());
-        }
+    private static JournalEvent.ReservationCancelled cancelled(Reservation reservation) {
+        return new JournalEvent.ReservationCancelled(reservation.getVehicle().getPlateCode(),
+                reservation.getCustomer().getCustomerId(), reservation.getStartDate(), reservation.getEndDate());
     }
 
-    private void saveRecord(RentalRecord record) {
-        try (PrintWriter out = new PrintWriter(new FileWriter("rental_records.txt", true))) {
-            out.println(record.toFileString());
+    // Delivers the pending rental events, stops the event bus thread, then writes out anything
+    // still buffered and closes the journal. Whoever owns the process calls this on the way
+    // out; RentalSystem registers no shutdown hook of its own.
+    public void shutdown() {
+        eventBus.close();
+        try {
+            journal.close();
         } catch (IOException e) {
-            System.err.println("Error saving rental record: " + e.getMessage());
+            System.err.println("Error closing " + journal.getFile() + ": " + e.getMessage());
         }
     }
 
+    public RentalEventBus getEventBus() {
+        return eventBus;
+    }
+
+    public String getPersistenceMetrics() {
+        return journal.getMetrics();
+    }
+
     // --- Load Methods ---
+    // Each phase's wall time is kept in RentalMetrics.getLoadPhaseMillis()
+    // With a usable snapshot only the events appended after it are replayed. A full replay
+    // is parsed with -Drental.loadThreads threads and applied in journal order; the tail
+    // after a snapshot is short and always read on this thread.
     private void loadData() {
-        loadVehicles();
-        loadCustomers();
-        loadRentalRecords();
-    }
-
-    private void loadVehicles() {
-        File file = new File("vehicles.txt");
-        if (!file.exists()) return;
-
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-
-                String type = parts[0];
-                String plate = parts[1];
-                String make = parts[2];
-                String model = parts[3];
-                int year = Integer.parseInt(parts[4]);
-
-                Vehicle vehicle;
-                if (type.equalsIgnoreCase("Car")) {
-                    int seats = Integer.parseInt(parts[5]);
-                    vehicle = new Car(make, model, year, seats);
-                } else if (type.equalsIgnoreCase("Motorcycle")) {
-                    boolean hasSidecar = Boolean.parseBoolean(parts[5]);
-                    vehicle = new Motorcycle(make, model, year, hasSidecar);
-                } else {
-                    continue;
-                }
+        long start = System.nanoTime();
+        long phase = start;
+        long from = restoreSnapshot();
+        if (from >= 0) {
+            RentalMetrics.recordLoadPhase("snapshot", phase);
+        }
+        phase = System.nanoTime();
+        if (from < 0 && journal.length() == 0) {
+            importLegacyFiles();
+            RentalMetrics.recordLoadPhase("import", phase);
+        } else {
+            try {
+                journal.replay(Math.max(from, 0), from > 0 ? 1 : Integer.getInteger("rental.loadThreads", 1));
+            } catch (IOException e) {
+                System.err.println("Error loading journal: " + e.getMessage());
+            }
+            RentalMetrics.recordLoadPhase("journal", phase);
+        }
+        markReservedToday();
+        RentalMetrics.recordLoadPhase("total", start);
+    }
+
+    // Loads the snapshot and returns the journal offset to replay from, or -1 when there is
+    // no snapshot or it cannot be used, e.g. because the journal is now shorter than when
+    // the snapshot was taken
+    private long restoreSnapshot() {
+        if (!snapshotFile.exists()) return -1;
+
+        RentalSnapshot snapshot;
+        try {
+            snapshot = RentalSnapshot.read(snapshotFile);
+        } catch (IOException e) {
+            System.err.println("Error loading snapshot, replaying the journal instead: " + e.getMessage());
+            return -1;
+        }
+        long offset = snapshot.getJournalOffset();
+        if (journal.length() < offset) {
+            System.err.println("Snapshot does not match " + journal.getFile() + ", replaying the journal instead");
+            return -1;
+        }
 
-                vehicle.setLicensePlate(plate);
+        for (Vehicle vehicle : snapshot.getVehicles()) {
+            if (vehiclesByPlate.putIfAbsent(vehicle.getPlateCode(), vehicle) == null) {
                 vehicles.add(vehicle);
+                indexVehicle(vehicle);
             }
+        }
+        for (Customer customer : snapshot.getCustomers()) {
+            if (customersById.putIfAbsent(customer.getCustomerId(), customer) == null) {
+                customers.add(customer);
+            }
+        }
+        for (RentalRecord record : snapshot.getRecords()) {
+            history.addRecord(record);
+        }
+        for (Reservation reservation : snapshot.getReservations()) {
+            reservations.add(reservation);
+        }
+        for (Map.Entry<Integer, LocalDate> due : snapshot.getDueDates().entrySet()) {
+            dueDates.put(due.getKey(), due.getValue());
+        }
+        return offset;
+    }
+
+    // Runs when there is no journal yet. The old data files are read in the order they used
+    // to be loaded and appended to the journal as events, which applies them as well; the
+    // files themselves are left alone.
+    private void importLegacyFiles() {
+        for (String name : LEGACY_FILES) {
+            File file = new File(dataDir, name);
+            if (!file.exists()) continue;
+
+            List<JournalEvent> batch = new ArrayList<>(RentalJournal.BATCH_SIZE);
+            try {
+                MappedFileReader.forEachLine(file, line -> {
+                    JournalEvent event;
+                    try {
+                        event = legacyEvent(name, line);
+                    } catch (RuntimeException e) {
+                        System.err.println("Skipping " + name + " entry: " + e.getMessage());
+                        return;
+                    }
+                    if (event != null) {
+                        batch.add(event);
+                    }
+                    if (batch.size() == RentalJournal.BATCH_SIZE) {
+                        importBatch(batch);
+                        batch.clear();
+                    }
+                });
+                importBatch(batch);
+            } catch (IOException e) {
+                System.err.println("Error importing " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Rental records and reservations were already written as RENT, RETURN, RESERVE and
+    // CANCEL lines, which parse as events unchanged
+    private static JournalEvent legacyEvent(String name, MappedFileReader.LineCursor line) {
+        if (name.equals("vehicles.txt")) {
+            Vehicle vehicle = TextStorageCodec.parseVehicle(line);
+            return vehicle == null ? null : JournalEvent.VehicleAdded.of(vehicle);
+        } else if (name.equals("customers.txt")) {
+            return JournalEvent.CustomerAdded.of(TextStorageCodec.parseCustomer(line));
+        }
+        return JournalEvent.parse(line);
+    }
+
+    private void importBatch(List<JournalEvent> batch) {
+        if (batch.isEmpty()) return;
+        try {
+            journal.append(new ArrayList<>(batch));
         } catch (IOException e) {
-            System.err.println("Error loading vehicles: " + e.getMessage());
+            System.err.println("Error saving imported events: " + e.getMessage());
         }
     }
 
-    private void loadCustomers() {
-        File file = new File("customers.txt");
-        if (!file.exists()) return;
+    // Whether a vehicle is reserved depends on the day, so it is worked out again after
+    // loading and by the first status query or change after midnight
+    private void rollOverDay() {
+        if (clock.millis() < nextDayMillis) return;
+        synchronized (dayMonitor) {
+            if (clock.millis() >= nextDayMillis) {
+                markReservedToday();
+            }
+        }
+    }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                int id = Integer.parseInt(parts[0]);
-                String name = parts[1];
+    private void markReservedToday() {
+        LocalDate today = LocalDate.now(clock);
+        nextDayMillis = today.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+        for (Vehicle vehicle : vehicles) {
+            synchronized (vehicle) {
+                Vehicle.VehicleStatus status = vehicle.getStatus();
+                boolean booked = reservations.reservationOn(vehicle, today) != null;
+                if (status == Vehicle.VehicleStatus.AVAILABLE && booked) {
+                    vehicle.setStatus(Vehicle.VehicleStatus.RESERVED);
+                } else if (status == Vehicle.VehicleStatus.RESERVED && !booked) {
+                    vehicle.setStatus(Vehicle.VehicleStatus.AVAILABLE);
+                }
+            }
+        }
+    }
 
-                Customer customer = new Customer(id, name);
+    // --- Projections ---
+    // Vehicles and customers, statuses, due dates and reservations. Live events arrive under
+    // the vehicle's lock, replayed ones on the loading thread.
+    private void applyToFleet(List<JournalEvent> batch) {
+        LocalDate today = LocalDate.now(clock);
+        for (JournalEvent event : batch) {
+            if (event instanceof JournalEvent.Rented rented) {
+                Vehicle vehicle = vehiclesByPlate.get(rented.plateCode());
+                if (vehicle != null) {
+                    vehicle.setStatus(Vehicle.VehicleStatus.RENTED);
+                    dueDates.put(rented.plateCode(), rented.due());
+                }
+            } else if (event instanceof JournalEvent.Returned returned) {
+                Vehicle vehicle = vehiclesByPlate.get(returned.plateCode());
+                if (vehicle != null) {
+                    vehicle.setStatus(reservations.reservationOn(vehicle, today) != null
+                            ? Vehicle.VehicleStatus.RESERVED : Vehicle.VehicleStatus.AVAILABLE);
+                }
+            } else if (event instanceof JournalEvent.VehicleAdded added) {
+                // A replayed vehicle is built from the event and claims its plate here
+                Vehicle vehicle = pendingVehicles.get(added.plateCode());
+                if (vehicle == null) {
+                    vehicle = added.toVehicle();
+                    if (vehiclesByPlate.putIfAbsent(added.plateCode(), vehicle) != null) {
+                        continue;
+                    }
+                }
+                vehicles.add(vehicle);
+                indexVehicle(vehicle);
+                pendingVehicles.remove(added.plateCode(), vehicle);
+            } else if (event instanceof JournalEvent.CustomerAdded added) {
+                Customer customer = pendingCustomers.get(added.customerId());
+                if (customer == null) {
+                    customer = added.toCustomer();
+                    if (customersById.putIfAbsent(added.customerId(), customer) != null) {
+                        continue;
+                    }
+                }
                 customers.add(customer);
+                pendingCustomers.remove(added.customerId(), customer);
+            } else if (event instanceof JournalEvent.Reserved reserved) {
+                Reservation reservation = toReservation(reserved.plateCode(), reserved.customerId(), reserved.from(), reserved.to());
+                if (reservation != null && reservations.add(reservation)) {
+                    Vehicle vehicle = reservation.getVehicle();
+                    if (vehicle.getStatus() == Vehicle.VehicleStatus.AVAILABLE && reservation.covers(today)) {
+                        vehicle.setStatus(Vehicle.VehicleStatus.RESERVED);
+                    }
+                }
+            } else if (event instanceof JournalEvent.ReservationCancelled cancelled) {
+                Reservation reservation = toReservation(cancelled.plateCode(), cancelled.customerId(), cancelled.from(), cancelled.to());
+                if (reservation != null && reservations.remove(reservation)) {
+                    Vehicle vehicle = reservation.getVehicle();
+                    if (vehicle.getStatus() == Vehicle.VehicleStatus.RESERVED && reservations.reservationOn(vehicle, today) == null) {
+                        vehicle.setStatus(Vehicle.VehicleStatus.AVAILABLE);
+                    }
+                }
+            } else if (event instanceof JournalEvent.StatusChanged changed) {
+                Vehicle vehicle = vehiclesByPlate.get(changed.plateCode());
+                if (vehicle != null) {
+                    boolean booked = changed.status() == Vehicle.VehicleStatus.AVAILABLE
+                            && reservations.reservationOn(vehicle, today) != null;
+                    vehicle.setStatus(booked ? Vehicle.VehicleStatus.RESERVED : changed.status());
+                }
+            }
+        }
+    }
+
+    // Null when the vehicle or customer is unknown
+    private Reservation toReservation(int plateCode, int customerId, LocalDate from, LocalDate to) {
+        Vehicle vehicle = vehiclesByPlate.get(plateCode);
+        Customer customer = customersById.get(customerId);
+        return vehicle == null || customer == null ? null : new Reservation(vehicle, customer, from, to);
+    }
+
+    // The rental history with its aggregates: one record per RENT and RETURN
+    private void applyToHistory(List<JournalEvent> batch) {
+        for (JournalEvent event : batch) {
+            if (event instanceof JournalEvent.Rented rented) {
+                recordRental(rented.plateCode(), rented.customerId(), rented.date(), rented.amountCents(), "RENT");
+            } else if (event instanceof JournalEvent.Returned returned) {
+                recordRental(returned.plateCode(), returned.customerId(), returned.date(), returned.amountCents(), "RETURN");
+            }
+        }
+    }
+
+    // Records for an unknown vehicle or customer are skipped, as they always were on load
+    private void recordRental(int plateCode, int customerId, LocalDate date, long amountCents, String type) {
+        Vehicle vehicle = vehiclesByPlate.get(plateCode);
+        Customer customer = customersById.get(customerId);
+        if (vehicle != null && customer != null) {
+            history.addRecord(RentalRecord.ofCents(vehicle, customer, date, amountCents, type));
+        }
+    }
+
+    // Adds a read model of the caller's own. It is backfilled from the whole journal, parsed
+    // with -Drental.loadThreads threads, and from then on gets every new event once. Changes
+    // wait only while the journal is flushed: events appended during the backfill are held
+    // back and applied right after it, and live batches reach the projection one at a time.
+    public void addProjection(JournalProjection projection) throws IOException {
+        CatchUp catchUp = new CatchUp(projection);
+        long end;
+        synchronized (this) {
+            holdMutations();
+            try {
+                journal.flush();
+                end = journal.length();
+                journal.addProjection(catchUp);
+            } finally {
+                releaseMutations();
             }
+        }
+        try {
+            journal.replay(0, end, Integer.getInteger("rental.loadThreads", 1), projection);
         } catch (IOException e) {
-            System.err.println("Error loading customers: " + e.getMessage());
+            journal.removeProjection(catchUp);
+            throw e;
         }
+        catchUp.finishBackfill();
     }
 
+    // Holds back the live batches for a projection until its backfill is done
+    private static final class CatchUp implements JournalProjection {
+        private final JournalProjection target;
+        private List<JournalEvent> held = new ArrayList<>();
 
-    private void loadRentalRecords() {
-        File file = new File("rental_records.txt");
-        if (!file.exists()) return;
+        CatchUp(JournalProjection target) {
+            this.target = target;
+        }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                String recordType = parts[0];
-                String plate = parts[1];
-                String customerId = parts[2];
-                LocalDate date = LocalDate.parse(parts[3]);
-                double amount = Double.parseDouble(parts[4]);
+        @Override
+        public synchronized void apply(List<JournalEvent> batch) {
+            if (held != null) {
+                held.addAll(batch);
+            } else {
+                target.apply(batch);
+            }
+        }
 
-                Vehicle vehicle = findVehicleByPlate(plate);
-                Customer customer = findCustomerById(customerId);
+        synchronized void finishBackfill() {
+            if (!held.isEmpty()) {
+                target.apply(held);
+            }
+            held = null;
+        }
+    }
 
-                if (vehicle != null && customer != null) {
-                    RentalRecord record = new RentalRecord(vehicle, customer, date, amount, recordType);
-                    rentalRecords.add(record);
-                    rentalHistory.computeIfAbsent(plate, k -> new ArrayList<>()).add(record);
+    // --- Checkpoints ---
+    // Every method that changes state or appends to a data file runs between these two.
+    // While a checkpoint is cutting, new mutations wait here instead of starting.
+    private void beginMutation() {
+        boolean interrupted = false;
+        while (true) {
+            mutations.increment();
+            if (!cutting) {
+                break;
+            }
+            mutations.decrement();
+            synchronized (cutMonitor) {
+                while (cutting) {
+                    try {
+                        cutMonitor.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
                 }
             }
-        } catch (IOException e) {
-            System.err.println("Error loading rental records: " + e.getMessage());
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
     }
 
+    private void endMutation() {
+        mutations.decrement();
+    }
+
+    // Stops new mutations and waits for the running ones; the caller holds this system's lock
+    private void holdMutations() {
+        cutting = true;
+        while (mutations.sum() != 0) {
+            Thread.yield();
+        }
+    }
+
+    private void releaseMutations() {
+        synchronized (cutMonitor) {
+            cutting = false;
+            cutMonitor.notifyAll();
+        }
+    }
+
+    public void checkpoint() throws IOException {
+        checkpoint(snapshotFile);
+    }
+
+    // Writes a snapshot of the whole system. Mutations are held off only while the journal
+    // is flushed and the state is copied; the history is taken as a view, so the copy is
+    // O(fleet + customers + reservations) and the records are read while writing.
+    public synchronized void checkpoint(File target) throws IOException {
+        long offset;
+        byte[] statuses;
+        List<Customer> customerCopy;
+        List<RentalRecord> records;
+        List<Reservation> booked;
+        Map<Integer, LocalDate> due = new HashMap<>();
+        holdMutations();
+        try {
+            journal.flush();
+            offset = journal.length();
+            statuses = new byte[vehicles.size()];
+            for (int i = 0; i < statuses.length; i++) {
+                Vehicle vehicle = vehicles.get(i);
+                statuses[i] = (byte) vehicle.getStatus().ordinal();
+                LocalDate dueDate = dueDates.get(vehicle.getPlateCode());
+                if (dueDate != null && vehicle.getStatus() == Vehicle.VehicleStatus.RENTED) {
+                    due.put(vehicle.getPlateCode(), dueDate);
+                }
+            }
+            int customerCount = customers.size();
+            customerCopy = new ArrayList<>(customerCount);
+            for (int i = 0; i < customerCount; i++) {
+                customerCopy.add(customers.get(i));
+            }
+            records = history.getRentalHistory();
+            booked = reservations.all();
+        } finally {
+            releaseMutations();
+        }
+        RentalSnapshot.write(target, offset, vehicles, statuses, customerCopy, records, booked, due);
+    }
+
     // --- Business Logic ---
     public boolean addVehicle(Vehicle vehicle) {
-        if (findVehicleByPlate(vehicle.getLicensePlate()) != null) {
-            System.out.println("Vehicle with plate " + vehicle.getLicensePlate() + " already exists.");
-            return false;
+        beginMutation();
+        try {
+            // Built first: it throws for fields the journal cannot hold, before the plate is claimed
+            JournalEvent event = JournalEvent.VehicleAdded.of(vehicle);
+            if (vehiclesByPlate.putIfAbsent(vehicle.getPlateCode(), vehicle) != null) {
+                System.out.println("Vehicle with plate " + vehicle.getLicensePlate() + " already exists.");
+                return false;
+            }
+            pendingVehicles.put(vehicle.getPlateCode(), vehicle);
+            if (!save(List.of(event), RentalMetrics.Op.SAVE_VEHICLE, "vehicle")) {
+                pendingVehicles.remove(vehicle.getPlateCode(), vehicle);
+                vehiclesByPlate.remove(vehicle.getPlateCode(), vehicle);
+                return false;
+            }
+            return true;
+        } finally {
+            endMutation();
+        }
+    }
+
+    private void indexVehicle(Vehicle vehicle) {
+        vehicle.shareNames(names);
+        statusIndex.add(vehicle);
+        fleetByType.incrementAndGet(VehicleType.of(vehicle).ordinal());
+        fleetSearch.add(vehicle);
+    }
+
+    // --- Bulk Import ---
+    public ImportReport addVehicles(Collection<? extends Vehicle> batch) {
+        ImportReport report = new ImportReport();
+        List<Vehicle> vehicleList = new ArrayList<>(batch);
+        long[] rows = new long[vehicleList.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i + 1;
+        }
+        addVehicleChunk(vehicleList, rows, report);
+        return report;
+    }
+
+    public ImportReport addCustomers(Collection<Customer> batch) {
+        ImportReport report = new ImportReport();
+        List<Customer> customerList = new ArrayList<>(batch);
+        long[] rows = new long[customerList.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i + 1;
+        }
+        addCustomerChunk(customerList, rows, report);
+        return report;
+    }
+
+    // Reads vehicles in the vehicles.txt format and adds them chunkSize at a time
+    public ImportReport importVehicles(File file, int chunkSize) throws IOException {
+        ImportReport report = new ImportReport();
+        List<Vehicle> chunk = new ArrayList<>(chunkSize);
+        long[] rows = new long[chunkSize];
+        long[] row = { 0 };
+        MappedFileReader.forEachLine(file, line -> {
+            row[0]++;
+            Vehicle vehicle;
+            try {
+                vehicle = TextStorageCodec.parseVehicle(line);
+            } catch (IllegalArgumentException e) {
+                report.reject(row[0], null, ImportReport.Reason.INVALID, e.getMessage());
+                return;
+            }
+            if (vehicle == null) {
+                report.reject(row[0], null, ImportReport.Reason.INVALID, "Unknown vehicle type");
+                return;
+            }
+            rows[chunk.size()] = row[0];
+            chunk.add(vehicle);
+            if (chunk.size() == chunkSize) {
+                addVehicleChunk(chunk, rows, report);
+                chunk.clear();
+            }
+        });
+        addVehicleChunk(chunk, rows, report);
+        return report;
+    }
+
+    // Reads customers in the customers.txt format and adds them chunkSize at a time
+    public ImportReport importCustomers(File file, int chunkSize) throws IOException {
+        ImportReport report = new ImportReport();
+        List<Customer> chunk = new ArrayList<>(chunkSize);
+        long[] rows = new long[chunkSize];
+        long[] row = { 0 };
+        MappedFileReader.forEachLine(file, line -> {
+            row[0]++;
+            try {
+                rows[chunk.size()] = row[0];
+                chunk.add(TextStorageCodec.parseCustomer(line));
+            } catch (IllegalArgumentException e) {
+                report.reject(row[0], null, ImportReport.Reason.INVALID, e.getMessage());
+                return;
+            }
+            if (chunk.size() == chunkSize) {
+                addCustomerChunk(chunk, rows, report);
+                chunk.clear();
+            }
+        });
+        addCustomerChunk(chunk, rows, report);
+        return report;
+    }
+
+    // Validates the chunk against itself and the fleet, and journals all accepted vehicles
+    // with a single append and sync
+    private void addVehicleChunk(List<Vehicle> chunk, long[] rows, ImportReport report) {
+        beginMutation();
+        try {
+            IntHashMap<Vehicle> seen = new IntHashMap<>(chunk.size());
+            List<JournalEvent> events = new ArrayList<>(chunk.size());
+            int[] accepted = new int[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                Vehicle vehicle = chunk.get(i);
+                String plate = vehicle == null ? null : vehicle.getLicensePlate();
+                if (plate == null) {
+                    report.reject(rows[i], null, ImportReport.Reason.INVALID, "Missing license plate");
+                    continue;
+                }
+                JournalEvent event;
+                try {
+                    event = JournalEvent.VehicleAdded.of(vehicle);
+                } catch (IllegalArgumentException e) {
+                    report.reject(rows[i], plate, ImportReport.Reason.INVALID, e.getMessage());
+                    continue;
+                }
+                if (seen.putIfAbsent(vehicle.getPlateCode(), vehicle) != null) {
+                    report.reject(rows[i], plate, ImportReport.Reason.DUPLICATE_IN_BATCH, null);
+                } else if (vehiclesByPlate.putIfAbsent(vehicle.getPlateCode(), vehicle) != null) {
+                    report.reject(rows[i], plate, ImportReport.Reason.ALREADY_EXISTS, null);
+                } else {
+                    accepted[events.size()] = i;
+                    pendingVehicles.put(vehicle.getPlateCode(), vehicle);
+                    events.add(event);
+                }
+            }
+            if (!events.isEmpty()) {
+                try {
+                    journal.append(events);
+                } catch (IOException e) {
+                    System.err.println("Error saving vehicles: " + e.getMessage());
+                    // Nothing was applied; free the plates again
+                    for (int k = 0; k < events.size(); k++) {
+                        Vehicle vehicle = chunk.get(accepted[k]);
+                        pendingVehicles.remove(vehicle.getPlateCode(), vehicle);
+                        vehiclesByPlate.remove(vehicle.getPlateCode(), vehicle);
+                        report.reject(rows[accepted[k]], vehicle.getLicensePlate(), ImportReport.Reason.NOT_SAVED, e.getMessage());
+                    }
+                    return;
+                }
+                for (int k = 0; k < events.size(); k++) {
+                    report.accept();
+                }
+            }
+        } finally {
+            endMutation();
+        }
+    }
+
+    private void addCustomerChunk(List<Customer> chunk, long[] rows, ImportReport report) {
+        beginMutation();
+        try {
+            IntHashMap<Customer> seen = new IntHashMap<>(chunk.size());
+            List<JournalEvent> events = new ArrayList<>(chunk.size());
+            int[] accepted = new int[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                Customer customer = chunk.get(i);
+                if (customer == null || customer.getCustomerName() == null) {
+                    report.reject(rows[i], null, ImportReport.Reason.INVALID, "Missing customer");
+                    continue;
+                }
+                String key = String.valueOf(customer.getCustomerId());
+                if (seen.putIfAbsent(customer.getCustomerId(), customer) != null) {
+                    report.reject(rows[i], key, ImportReport.Reason.DUPLICATE_IN_BATCH, null);
+                } else if (customersById.putIfAbsent(customer.getCustomerId(), customer) != null) {
+                    report.reject(rows[i], key, ImportReport.Reason.ALREADY_EXISTS, null);
+                } else {
+                    accepted[events.size()] = i;
+                    pendingCustomers.put(customer.getCustomerId(), customer);
+                    events.add(JournalEvent.CustomerAdded.of(customer));
+                }
+            }
+            if (!events.isEmpty()) {
+                try {
+                    journal.append(events);
+                } catch (IOException e) {
+                    System.err.println("Error saving customers: " + e.getMessage());
+                    // Nothing was applied; free the ids again
+                    for (int k = 0; k < events.size(); k++) {
+                        Customer customer = chunk.get(accepted[k]);
+                        pendingCustomers.remove(customer.getCustomerId(), customer);
+                        customersById.remove(customer.getCustomerId(), customer);
+                        report.reject(rows[accepted[k]], String.valueOf(customer.getCustomerId()),
+                                ImportReport.Reason.NOT_SAVED, e.getMessage());
+                    }
+                    return;
+                }
+                for (int k = 0; k < events.size(); k++) {
+                    report.accept();
+                }
+            }
+        } finally {
+            endMutation();
         }
-        vehicles.add(vehicle);
-        saveVehicle(vehicle);
-        return true;
     }
 
     public boolean addCustomer(Customer customer) {
-        if (findCustomerById(String.valueOf(customer.getCustomerId())) != null) {
-            System.out.println("Customer with ID " + customer.getCustomerId() + " already exists.");
-            return false;
+        beginMutation();
+        try {
+            if (customersById.putIfAbsent(customer.getCustomerId(), customer) != null) {
+                System.out.println("Customer with ID " + customer.getCustomerId() + " already exists.");
+                return false;
+            }
+            pendingCustomers.put(customer.getCustomerId(), customer);
+            if (!save(List.of(JournalEvent.CustomerAdded.of(customer)), RentalMetrics.Op.SAVE_CUSTOMER, "customer")) {
+                pendingCustomers.remove(customer.getCustomerId(), customer);
+                customersById.remove(customer.getCustomerId(), customer);
+                return false;
+            }
+            return true;
+        } finally {
+            endMutation();
         }
-        customers.add(customer);
-        saveCustomer(customer);
-        return true;
     }
 
+    // Status changes lock only the vehicle itself, so rentals of different vehicles never contend
+    // A vehicle booked for the rental date can only be rented by the customer holding the
+    // reservation, and doing so uses the reservation up. A rental priced for a number of
+    // days also needs those days free of other customers' bookings.
+    // Events name the customer by id and the vehicle by plate, so only registered customers
+    // can rent, return or book, and only with the fleet's own Vehicle object: its monitor is
+    // what keeps two rentals of one vehicle apart
     public boolean rentVehicle(Vehicle vehicle, Customer customer, LocalDate date, double amount) {
-        if (vehicle.getStatus() != Vehicle.VehicleStatus.AVAILABLE) {
-            return false;
+        long start = RentalMetrics.start();
+        boolean rented = rent(vehicle, customer, date, Math.round(amount * 100), LocalDate.MAX);
+        RentalMetrics.record(RentalMetrics.Op.RENT, start, rented);
+        return rented;
+    }
+
+    // Rents for the given number of days at the price the pricing engine quotes; throws
+    // IllegalArgumentException for more than MAX_RENTAL_DAYS days
+    public boolean rentVehicle(Vehicle vehicle, Customer customer, LocalDate date, int days) {
+        if (days > MAX_RENTAL_DAYS) {
+            throw new IllegalArgumentException("A rental lasts at most " + MAX_RENTAL_DAYS + " days: " + days);
         }
-        if (vehicle instanceof Rentable rentableVehicle) {
-            rentableVehicle.rentVehicle();
-            RentalHistory.getInstance().addRecord(new RentalRecord(vehicle, customer, date, amount, "RENT"));
+        long start = RentalMetrics.start();
+        long cents = pricing.quoteRent(vehicle, date, days, tierOf(customer));
+        boolean rented = rent(vehicle, customer, date, cents, date.plusDays(days));
+        RentalMetrics.record(RentalMetrics.Op.RENT, start, rented);
+        return rented;
+    }
+
+    private boolean rent(Vehicle vehicle, Customer customer, LocalDate date, long amountCents, LocalDate due) {
+        beginMutation();
+        try {
+            if (!(vehicle instanceof Rentable) || !isRegistered(vehicle) || !isRegistered(customer)) {
+                return false;
+            }
+            rollOverDay();
+            synchronized (vehicle) {
+                // RESERVED is no reason to refuse by itself: a booking that was never picked
+                // up stops counting once its days have passed
+                Vehicle.VehicleStatus status = vehicle.getStatus();
+                if (status != Vehicle.VehicleStatus.AVAILABLE && status != Vehicle.VehicleStatus.RESERVED) {
+                    return false;
+                }
+                List<JournalEvent> events = new ArrayList<>(2);
+                Reservation booked = reservations.reservationOn(vehicle, date);
+                if (booked != null) {
+                    if (booked.getCustomer().getCustomerId() != customer.getCustomerId()) {
+                        return false;
+                    }
+                    events.add(cancelled(booked));
+                }
+                // A rental with a due date must not run into someone else's booking before it
+                if (!due.equals(LocalDate.MAX) && due.isAfter(date)
+                        && reservations.heldByOthers(vehicle, date, due.minusDays(1), customer.getCustomerId()) != null) {
+                    return false;
+                }
+                events.add(new JournalEvent.Rented(vehicle.getPlateCode(), customer.getCustomerId(), date, amountCents, due));
+                if (!save(events, RentalMetrics.Op.SAVE_RECORD, "rental record")) {
+                    return false;
+                }
+            }
+            eventBus.publish(RentalEvent.Type.RENT, vehicle, customer, date, amountCents);
             return true;
+        } finally {
+            endMutation();
         }
-        return false;
+    }
+
+    private boolean isRegistered(Customer customer) {
+        return customersById.get(customer.getCustomerId()) != null;
+    }
+
+    // A copy with the same plate does not count; the fleet's instance is the one locked and changed
+    private boolean isRegistered(Vehicle vehicle) {
+        return vehiclesByPlate.get(vehicle.getPlateCode()) == vehicle;
     }
 
     public boolean returnVehicle(Vehicle vehicle, Customer customer, LocalDate date, double amount) {
-        if (vehicle.getStatus() != Vehicle.VehicleStatus.RENTED) {
-            return false;
+        long start = RentalMetrics.start();
+        boolean returned = giveBack(vehicle, customer, date, Math.round(amount * 100));
+        RentalMetrics.record(RentalMetrics.Op.RETURN, start, returned);
+        return returned;
+    }
+
+    // Charges the return fee the pricing engine quotes, including late days past the due date
+    public boolean returnVehicle(Vehicle vehicle, Customer customer, LocalDate date) {
+        long start = RentalMetrics.start();
+        boolean returned = giveBack(vehicle, customer, date, -1);
+        RentalMetrics.record(RentalMetrics.Op.RETURN, start, returned);
+        return returned;
+    }
+
+    // A negative amount means the fee is quoted once the vehicle is known to be rented
+    private boolean giveBack(Vehicle vehicle, Customer customer, LocalDate date, long amountCents) {
+        beginMutation();
+        try {
+            if (!(vehicle instanceof Rentable) || !isRegistered(vehicle) || !isRegistered(customer)) {
+                return false;
+            }
+            rollOverDay();
+            synchronized (vehicle) {
+                if (vehicle.getStatus() != Vehicle.VehicleStatus.RENTED) {
+                    return false;
+                }
+                if (amountCents < 0) {
+                    // Rentals imported from rental_records.txt have no due date and pay only the flat fee
+                    LocalDate due = dueDates.get(vehicle.getPlateCode());
+                    amountCents = pricing.quoteReturn(vehicle, due == null ? date : due, date);
+                }
+                if (!save(List.of(new JournalEvent.Returned(vehicle.getPlateCode(), customer.getCustomerId(), date, amountCents)),
+                        RentalMetrics.Op.SAVE_RECORD, "rental record")) {
+                    return false;
+                }
+            }
+            eventBus.publish(RentalEvent.Type.RETURN, vehicle, customer, date, amountCents);
+            return true;
+        } finally {
+            endMutation();
+        }
+    }
+
+    // Takes a vehicle out of service or puts it back. RENTED and RESERVED follow from rentals
+    // and bookings and cannot be set; a rented vehicle has to be returned first.
+    public boolean setVehicleStatus(Vehicle vehicle, Vehicle.VehicleStatus status) {
+        if (status == Vehicle.VehicleStatus.RENTED || status == Vehicle.VehicleStatus.RESERVED) {
+            throw new IllegalArgumentException("Status is set by rentals and reservations: " + status);
+        }
+        beginMutation();
+        try {
+            if (!isRegistered(vehicle)) {
+                return false;
+            }
+            rollOverDay();
+            synchronized (vehicle) {
+                if (vehicle.getStatus() == Vehicle.VehicleStatus.RENTED) {
+                    return false;
+                }
+                return save(List.of(new JournalEvent.StatusChanged(vehicle.getPlateCode(), status)),
+                        RentalMetrics.Op.SAVE_VEHICLE, "vehicle status");
+            }
+        } finally {
+            endMutation();
+        }
+    }
+
+    // --- Reservations ---
+    // Books the vehicle for [from, to] unless that overlaps another booking or the rental
+    // it is out on. The checks and the journal append happen under the vehicle's lock, like
+    // renting.
+    public Reservation reserveVehicle(Vehicle vehicle, Customer customer, LocalDate from, LocalDate to) {
+        beginMutation();
+        try {
+            Vehicle.VehicleStatus status = vehicle.getStatus();
+            if (status == Vehicle.VehicleStatus.MAINTENANCE || status == Vehicle.VehicleStatus.OUTOFSERVICE
+                    || !isRegistered(vehicle) || !isRegistered(customer)) {
+                return null;
+            }
+            Reservation reservation = new Reservation(vehicle, customer, from, to);
+            rollOverDay();
+            synchronized (vehicle) {
+                if (!backBy(vehicle, from) || !reservations.isFree(vehicle, from, to)) {
+                    return null;
+                }
+                if (!save(List.of(new JournalEvent.Reserved(vehicle.getPlateCode(), customer.getCustomerId(), from, to)),
+                        RentalMetrics.Op.SAVE_RESERVATION, "reservation")) {
+                    return null;
+                }
+            }
+            return reservation;
+        } finally {
+            endMutation();
         }
-        if (vehicle instanceof Rentable rentableVehicle) {
-            rentableVehicle.returnVehicle();
-            RentalHistory.getInstance().addRecord(new RentalRecord(vehicle, customer, date, amount, "RETURN"));
+    }
+
+    public boolean cancelReservation(Reservation reservation) {
+        beginMutation();
+        try {
+            rollOverDay();
+            synchronized (reservation.getVehicle()) {
+                if (!reservations.contains(reservation)) {
+                    return false;
+                }
+                return save(List.of(cancelled(reservation)), RentalMetrics.Op.SAVE_RESERVATION, "reservation");
+            }
+        } finally {
+            endMutation();
+        }
+    }
+
+    // A rented vehicle can be booked from its due date on; one rented without a due date
+    // cannot be booked until it is back
+    private boolean backBy(Vehicle vehicle, LocalDate from) {
+        if (vehicle.getStatus() != Vehicle.VehicleStatus.RENTED) {
             return true;
         }
-        return false;
+        LocalDate due = dueDates.get(vehicle.getPlateCode());
+        return due != null && !from.isBefore(due);
     }
 
-    public void displayVehicles(boolean onlyAvailable) {
-        System.out.println("|     Type         |\tPlate\t|\tMake\t|\tModel\t|\tYear\t|");
-        System.out.println("---------------------------------------------------------------------------------");
-        for (Vehicle v : vehicles) {
-            if (!onlyAvailable || v.getStatus() == Vehicle.VehicleStatus.AVAILABLE) {
-                System.out.println("|     " + (v instanceof Car ? "Car          " : "Motorcycle   ") +
-                        "|\t" + v.getLicensePlate() + "\t|\t" + v.getMake() +
-                        "\t|\t" + v.getModel() + "\t|\t" + v.getYear() + "\t|");
+    public List<Reservation> getReservations(Vehicle vehicle) {
+        return reservations.reservationsFor(vehicle);
+    }
+
+    // Vehicles that are in service, back from any rental by from, and have no booking
+    // overlapping [from, to]: exactly the ones reserveVehicle would book. Each vehicle costs
+    // one O(log k) check of its own bookings.
+    public List<Vehicle> findFreeVehicles(LocalDate from, LocalDate to) {
+        rollOverDay();
+        List<Vehicle> free = new ArrayList<>();
+        for (Vehicle.VehicleStatus status : new Vehicle.VehicleStatus[] {
+                Vehicle.VehicleStatus.AVAILABLE, Vehicle.VehicleStatus.RESERVED, Vehicle.VehicleStatus.RENTED }) {
+            for (Vehicle vehicle : statusIndex.vehicles(status)) {
+                if (backBy(vehicle, from) && reservations.isFree(vehicle, from, to)) {
+                    free.add(vehicle);
+                }
             }
         }
+        return free;
+    }
+
+    public void displayVehicles(boolean onlyAvailable) {
+        rollOverDay();
+        printVehicleHeader();
+        for (Vehicle v : onlyAvailable ? statusIndex.vehicles(Vehicle.VehicleStatus.AVAILABLE) : vehicles) {
+            printVehicleRow(v);
+        }
+        System.out.println();
+    }
+
+    // Prints one page of vehicles with the given status and returns the cursor for the
+    // next page, or null when this was the last one
+    public String displayVehicles(Vehicle.VehicleStatus status, String afterPlate, int limit) {
+        rollOverDay();
+        List<Vehicle> page = statusIndex.pageAfter(status, afterPlate, limit);
+        printVehicleHeader();
+        for (Vehicle v : page) {
+            printVehicleRow(v);
+        }
         System.out.println();
+        return page.size() < limit ? null : page.get(page.size() - 1).getLicensePlate();
+    }
+
+    private void printVehicleHeader() {
+        System.out.println("|     Type         |\tPlate\t|\tMake\t|\tModel\t|\tYear\t|");
+        System.out.println("---------------------------------------------------------------------------------");
+    }
+
+    private void printVehicleRow(Vehicle v) {
+        System.out.println("|     " + String.format("%-13s", VehicleType.of(v).getDisplayName()) +
+                "|\t" + v.getLicensePlate() + "\t|\t" + v.getMake() +
+                "\t|\t" + v.getModel() + "\t|\t" + v.getYear() + "\t|");
+    }
+
+    public int countVehicles(Vehicle.VehicleStatus status) {
+        rollOverDay();
+        return statusIndex.count(status);
+    }
+
+    public List<Vehicle> getVehicles(Vehicle.VehicleStatus status, int offset, int limit) {
+        rollOverDay();
+        return statusIndex.page(status, offset, limit);
+    }
+
+    public List<Vehicle> getVehiclesAfter(Vehicle.VehicleStatus status, String afterPlate, int limit) {
+        rollOverDay();
+        return statusIndex.pageAfter(status, afterPlate, limit);
+    }
+
+    public List<Vehicle> searchVehicles(FleetQuery query, int limit) {
+        return fleetSearch.search(query, limit);
+    }
+
+    public int countVehicles(VehicleType type) {
+        return fleetByType.get(type.ordinal());
+    }
+
+    // --- Pricing ---
+
+    public PricingEngine getPricing() {
+        return pricing;
+    }
+
+    // Tiers follow the number of rentals the customer has made so far
+    public PricingEngine.CustomerTier tierOf(Customer customer) {
+        return pricing.tierFor(customerRentals.applyAsLong(customer));
+    }
+
+    public long quoteRent(Vehicle vehicle, Customer customer, LocalDate date, int days) {
+        return pricing.quoteRent(vehicle, date, days, tierOf(customer));
+    }
+
+    // Null for the process-wide instance, which uses the working directory
+    public File getDataDir() {
+        return dataDir;
+    }
+
+    public RentalHistory getHistory() {
+        return history;
+    }
+
+    public RentalAggregates getAggregates() {
+        return history.getAggregates();
+    }
+
+    // Share of the class's fleet that is out on rent right now, from the running aggregates
+    public double getUtilization(VehicleType type) {
+        int fleet = countVehicles(type);
+        return fleet == 0 ? 0 : (double) getAggregates().getRentalsInFlight(type) / fleet;
+    }
+
+    public double getUtilization() {
+        int fleet = vehicles.size();
+        return fleet == 0 ? 0 : (double) getAggregates().getRentalsInFlight() / fleet;
     }
 
     public void displayAllCustomers() {
@@ -223,40 +1146,118 @@ public class RentalSystem {
     }
 
     public void displayRentalHistory() {
-        for (List<RentalRecord> records : rentalHistory.values()) {
-            for (RentalRecord record : records) {
-                System.out.println(record.toString());
-            }
+        history.stream().forEach(record -> System.out.println(record.toString()));
+    }
+
+    // Prints one page of the rental history, oldest first, and returns the cursor for the
+    // next page, or -1 when this was the last one
+    public int displayRentalHistory(int cursor, int limit) {
+        List<RentalRecord> page = history.page(cursor, limit);
+        for (RentalRecord record : page) {
+            System.out.println(record.toString());
         }
+        return page.size() < limit ? -1 : cursor + page.size();
     }
 
     public Vehicle findVehicleByPlate(String plate) {
-        for (Vehicle v : vehicles) {
-            if (v.getLicensePlate().equalsIgnoreCase(plate)) {
-                return v;
-            }
-        }
-        return null;
+        long start = RentalMetrics.start();
+        int code = PlateCode.parse(plate);
+        Vehicle vehicle = code == PlateCode.INVALID ? null : vehiclesByPlate.get(code);
+        RentalMetrics.record(RentalMetrics.Op.FIND_VEHICLE, start, vehicle != null);
+        return vehicle;
+    }
+
+    public Vehicle findVehicleByPlate(int plateCode) {
+        long start = RentalMetrics.start();
+        Vehicle vehicle = plateCode == PlateCode.INVALID ? null : vehiclesByPlate.get(plateCode);
+        RentalMetrics.record(RentalMetrics.Op.FIND_VEHICLE, start, vehicle != null);
+        return vehicle;
+    }
+
+    public Customer findCustomerById(int id) {
+        long start = RentalMetrics.start();
+        Customer customer = customersById.get(id);
+        RentalMetrics.record(RentalMetrics.Op.FIND_CUSTOMER, start, customer != null);
+        return customer;
     }
 
     public Customer findCustomerById(String id) {
-        for (Customer c : customers) {
-            if (String.valueOf(c.getCustomerId()).equals(id)) {
-                return c;
+        if (id == null) {
+            return null;
+        }
+        // Parse by hand so a bad id is a miss instead of a NumberFormatException. Only the
+        // id exactly as String.valueOf writes it matches: no spaces, sign or leading zeros.
+        int length = id.length();
+        if (length == 0 || length > 11) {
+            return null;
+        }
+        int start = id.charAt(0) == '-' ? 1 : 0;
+        if (start == length || (id.charAt(start) == '0' && length - start > 1) || (start == 1 && id.charAt(1) == '0')) {
+            return null;
+        }
+        long value = 0;
+        for (int i = start; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
             }
+            value = value * 10 + (c - '0');
+        }
+        if (start == 1) {
+            value = -value;
         }
-        return null;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return null;
+        }
+        return findCustomerById((int) value);
     }
     
     public void resetForTesting() {
+        clearState();
+        history.resetForTesting();
+        shutdown();
+        // Optionally delete contents of files too
+        journal.getFile().delete();
+        for (String name : LEGACY_FILES) {
+            new File(dataDir, name).delete();
+        }
+        snapshotFile.delete();
+    }
+
+    // Drops everything held in memory and loads it again the way a restart would
+    public void restartForTesting() {
+        shutdown();
+        clearState();
+        history.resetForTesting();
+        loadData();
+    }
+
+    // Moves "today" for reservations; the next status query or change re-marks the fleet
+    void setClockForTesting(Clock clock) {
+        this.clock = clock;
+        nextDayMillis = 0;
+    }
+
+    private void clearState() {
+        clock = Clock.systemDefaultZone();
+        nextDayMillis = 0;
         vehicles.clear();
         customers.clear();
-        rentalRecords.clear();
-        rentalHistory.clear();
-        // Optionally delete contents of files too
-        new File("vehicles.txt").delete();
-        new File("customers.txt").delete();
-        new File("rental_records.txt").delete();
+        vehiclesByPlate.clear();
+        pendingVehicles.clear();
+        pendingCustomers.clear();
+        names.clear();
+        customersById.clear();
+        statusIndex.clear();
+        for (int i = 0; i < fleetByType.length(); i++) {
+            fleetByType.set(i, 0);
+        }
+        fleetSearch.clear();
+        reservations.clear();
+        dueDates.clear();
+        if (ownsPricing) {
+            pricing.resetToDefaults();
+        }
     }
 
 }
@@ -0,0 +1,49 @@
+import java.time.LocalDate;
+
+// A booking of one vehicle for an inclusive date range
+public class Reservation {
+    private final Vehicle vehicle;
+    private final Customer customer;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+
+    public Reservation(Vehicle vehicle, Customer customer, LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("Reservation ends before it starts");
+        }
+        this.vehicle = vehicle;
+        this.customer = customer;
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    public Vehicle getVehicle() {
+        return vehicle;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public boolean covers(LocalDate date) {
+        return !date.isBefore(startDate) && !date.isAfter(endDate);
+    }
+
+    @Override
+    public String toString() {
+        return "Plate: " + vehicle.getLicensePlate() + " | Customer: " + customer.getCustomerName()
+                + " | From: " + startDate + " | To: " + endDate;
+    }
+
+    public String toFileString() {
+        return vehicle.getLicensePlate() + "," + customer.getCustomerId() + "," + startDate + "," + endDate;
+    }
+}
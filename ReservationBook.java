@@ -0,0 +1,134 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Per-vehicle reservations kept sorted by start day. A vehicle's reservations never overlap,
+// so the only one that can overlap a new range is the last one starting on or before its
+// end, and every check is O(log k) in that vehicle's bookings.
+// Each vehicle's map is only touched while holding that vehicle's lock, the same lock
+// RentalSystem holds while renting it.
+public class ReservationBook {
+    private final IntHashMap<TreeMap<Long, Reservation>> byPlate = new IntHashMap<>();
+
+    // Adds the reservation unless it overlaps an existing one for the same vehicle
+    public boolean add(Reservation reservation) {
+        Vehicle vehicle = reservation.getVehicle();
+        synchronized (vehicle) {
+            TreeMap<Long, Reservation> book = byPlate.computeIfAbsent(vehicle.getPlateCode(), k -> new TreeMap<>());
+            if (overlapping(book, reservation.getStartDate(), reservation.getEndDate()) != null) {
+                return false;
+            }
+            book.put(reservation.getStartDate().toEpochDay(), reservation);
+            return true;
+        }
+    }
+
+    // Removes the booking with the same vehicle, start, end and customer
+    public boolean remove(Reservation reservation) {
+        Vehicle vehicle = reservation.getVehicle();
+        synchronized (vehicle) {
+            if (matching(reservation) == null) {
+                return false;
+            }
+            byPlate.get(vehicle.getPlateCode()).remove(reservation.getStartDate().toEpochDay());
+            return true;
+        }
+    }
+
+    // Whether remove() would find the booking
+    public boolean contains(Reservation reservation) {
+        synchronized (reservation.getVehicle()) {
+            return matching(reservation) != null;
+        }
+    }
+
+    // The caller holds the vehicle's lock
+    private Reservation matching(Reservation reservation) {
+        TreeMap<Long, Reservation> book = byPlate.get(reservation.getVehicle().getPlateCode());
+        if (book == null) {
+            return null;
+        }
+        Reservation stored = book.get(reservation.getStartDate().toEpochDay());
+        if (stored == null || !stored.getEndDate().equals(reservation.getEndDate())
+                || stored.getCustomer().getCustomerId() != reservation.getCustomer().getCustomerId()) {
+            return null;
+        }
+        return stored;
+    }
+
+    public boolean isFree(Vehicle vehicle, LocalDate from, LocalDate to) {
+        TreeMap<Long, Reservation> book = byPlate.get(vehicle.getPlateCode());
+        if (book == null) {
+            return true;
+        }
+        synchronized (vehicle) {
+            return overlapping(book, from, to) == null;
+        }
+    }
+
+    // The reservation covering the given day, or null; the caller holds the vehicle's lock
+    public Reservation reservationOn(Vehicle vehicle, LocalDate date) {
+        TreeMap<Long, Reservation> book = byPlate.get(vehicle.getPlateCode());
+        return book == null ? null : overlapping(book, date, date);
+    }
+
+    // A booking overlapping [from, to] that the customer does not hold, or null; the caller
+    // holds the vehicle's lock. Only the booking starting on or before from and the ones
+    // starting inside the range can overlap it.
+    public Reservation heldByOthers(Vehicle vehicle, LocalDate from, LocalDate to, int customerId) {
+        TreeMap<Long, Reservation> book = byPlate.get(vehicle.getPlateCode());
+        if (book == null) {
+            return null;
+        }
+        Map.Entry<Long, Reservation> before = book.floorEntry(from.toEpochDay());
+        if (before != null && !before.getValue().getEndDate().isBefore(from)
+                && before.getValue().getCustomer().getCustomerId() != customerId) {
+            return before.getValue();
+        }
+        for (Reservation reservation : book.subMap(from.toEpochDay(), false, to.toEpochDay(), true).values()) {
+            if (reservation.getCustomer().getCustomerId() != customerId) {
+                return reservation;
+            }
+        }
+        return null;
+    }
+
+    public List<Reservation> reservationsFor(Vehicle vehicle) {
+        TreeMap<Long, Reservation> book = byPlate.get(vehicle.getPlateCode());
+        if (book == null) {
+            return new ArrayList<>();
+        }
+        synchronized (vehicle) {
+            return new ArrayList<>(book.values());
+        }
+    }
+
+    // Every booking, vehicle by vehicle in start order
+    public List<Reservation> all() {
+        List<Reservation> result = new ArrayList<>();
+        for (TreeMap<Long, Reservation> book : byPlate.values()) {
+            Map.Entry<Long, Reservation> first = book.firstEntry();
+            if (first == null) {
+                continue;
+            }
+            synchronized (first.getValue().getVehicle()) {
+                result.addAll(book.values());
+            }
+        }
+        return result;
+    }
+
+    private static Reservation overlapping(TreeMap<Long, Reservation> book, LocalDate from, LocalDate to) {
+        Map.Entry<Long, Reservation> candidate = book.floorEntry(to.toEpochDay());
+        if (candidate != null && !candidate.getValue().getEndDate().isBefore(from)) {
+            return candidate.getValue();
+        }
+        return null;
+    }
+
+    public void clear() {
+        byPlate.clear();
+    }
+}
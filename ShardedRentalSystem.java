@@ -0,0 +1,298 @@
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Splits the fleet over independent RentalSystem shards, each with its own maps, locks,
+// history and data files under root/shard-<i>. A vehicle lives in the shard its plate code
+// hashes to, so everything about one vehicle is a single-shard operation and shards never
+// contend. Customers are copied into every shard, since any shard may rent to any customer.
+// Queries that span shards run on every shard in parallel and merge the answers.
+public class ShardedRentalSystem {
+    private static final String SHARD_PREFIX = "shard-";
+
+    private final RentalSystem[] shards;
+    private final PricingEngine pricing = new PricingEngine();
+    private final ForkJoinPool pool;
+
+    // Reopening a root with a different shard count would send plates to the wrong shard,
+    // so that is refused
+    public ShardedRentalSystem(File root, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1: " + shardCount);
+        }
+        File[] existing = root.listFiles((dir, name) -> name.startsWith(SHARD_PREFIX));
+        if (existing != null && existing.length > 0 && existing.length != shardCount) {
+            throw new IllegalStateException(root + " holds " + existing.length + " shards, not " + shardCount);
+        }
+        pool = new ForkJoinPool(Math.min(shardCount, Runtime.getRuntime().availableProcessors()));
+        shards = new RentalSystem[shardCount];
+        // Each shard loads its own files, so the shards load in parallel too
+        try {
+            pool.submit(() -> IntStream.range(0, shardCount).parallel().forEach(i ->
+                    shards[i] = new RentalSystem(new File(root, SHARD_PREFIX + i), pricing, this::rentalsAcrossShards))).join();
+        } catch (RuntimeException e) {
+            pool.shutdown();
+            throw e;
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public RentalSystem getShard(int index) {
+        return shards[index];
+    }
+
+    // Fibonacci hashing spreads neighbouring plate codes, then the multiply-shift maps the
+    // hash onto [0, shardCount) without a division
+    public int shardIndex(int plateCode) {
+        int hash = plateCode * 0x9E3779B9;
+        return (int) ((Integer.toUnsignedLong(hash ^ (hash >>> 16)) * shards.length) >>> 32);
+    }
+
+    public RentalSystem shardFor(int plateCode) {
+        return shards[shardIndex(plateCode)];
+    }
+
+    public RentalSystem shardFor(Vehicle vehicle) {
+        return shardFor(vehicle.getPlateCode());
+    }
+
+    // Shared by all shards; rate changes apply everywhere at once
+    public PricingEngine getPricing() {
+        return pricing;
+    }
+
+    public void addListener(RentalEventListener listener) {
+        for (RentalSystem shard : shards) {
+            shard.getEventBus().addListener(listener);
+        }
+    }
+
+    // Every shard backfills and feeds the projection from its own journal: each vehicle's
+    // events arrive in order, but batches from different shards may arrive concurrently
+    public void addProjection(JournalProjection projection) throws IOException {
+        for (RentalSystem shard : shards) {
+            shard.addProjection(projection);
+        }
+    }
+
+    // --- Single-shard operations ---
+    public boolean addVehicle(Vehicle vehicle) {
+        return shardFor(vehicle).addVehicle(vehicle);
+    }
+
+    public Vehicle findVehicleByPlate(String plate) {
+        int code = PlateCode.parse(plate);
+        return code == PlateCode.INVALID ? null : shardFor(code).findVehicleByPlate(code);
+    }
+
+    public Vehicle findVehicleByPlate(int plateCode) {
+        return plateCode == PlateCode.INVALID ? null : shardFor(plateCode).findVehicleByPlate(plateCode);
+    }
+
+    public boolean rentVehicle(Vehicle vehicle, Customer customer, LocalDate date, int days) {
+        return shardFor(vehicle).rentVehicle(vehicle, customer, date, days);
+    }
+
+    public boolean rentVehicle(Vehicle vehicle, Customer customer, LocalDate date, double amount) {
+        return shardFor(vehicle).rentVehicle(vehicle, customer, date, amount);
+    }
+
+    public boolean returnVehicle(Vehicle vehicle, Customer customer, LocalDate date) {
+        return shardFor(vehicle).returnVehicle(vehicle, customer, date);
+    }
+
+    public boolean returnVehicle(Vehicle vehicle, Customer customer, LocalDate date, double amount) {
+        return shardFor(vehicle).returnVehicle(vehicle, customer, date, amount);
+    }
+
+    public Reservation reserveVehicle(Vehicle vehicle, Customer customer, LocalDate from, LocalDate to) {
+        return shardFor(vehicle).reserveVehicle(vehicle, customer, from, to);
+    }
+
+    public boolean cancelReservation(Reservation reservation) {
+        return shardFor(reservation.getVehicle()).cancelReservation(reservation);
+    }
+
+    public List<Reservation> getReservations(Vehicle vehicle) {
+        return shardFor(vehicle).getReservations(vehicle);
+    }
+
+    public List<RentalRecord> getRentalRecordsByVehicle(int plateCode) {
+        return shardFor(plateCode).getHistory().getRentalRecordsByVehicle(plateCode);
+    }
+
+    // --- Customers ---
+    // Added to every shard that does not have the customer yet, so a partly copied customer
+    // is completed by adding it again
+    public boolean addCustomer(Customer customer) {
+        boolean added = false;
+        for (RentalSystem shard : shards) {
+            if (shard.findCustomerById(customer.getCustomerId()) == null) {
+                added |= shard.addCustomer(customer);
+            }
+        }
+        if (!added) {
+            System.out.println("Customer with ID " + customer.getCustomerId() + " already exists.");
+        }
+        return added;
+    }
+
+    public Customer findCustomerById(int id) {
+        return shards[0].findCustomerById(id);
+    }
+
+    public Customer findCustomerById(String id) {
+        return shards[0].findCustomerById(id);
+    }
+
+    public PricingEngine.CustomerTier tierOf(Customer customer) {
+        return pricing.tierFor(rentalsAcrossShards(customer));
+    }
+
+    // Tiers count rentals in every shard; one counter read per shard
+    private long rentalsAcrossShards(Customer customer) {
+        long rentals = 0;
+        for (RentalSystem shard : shards) {
+            rentals += shard.getAggregates().getRentalsForCustomer(customer.getCustomerId());
+        }
+        return rentals;
+    }
+
+    // --- Cross-shard queries ---
+    public int countVehicles(Vehicle.VehicleStatus status) {
+        int count = 0;
+        for (RentalSystem shard : shards) {
+            count += shard.countVehicles(status);
+        }
+        return count;
+    }
+
+    public int countVehicles(VehicleType type) {
+        int count = 0;
+        for (RentalSystem shard : shards) {
+            count += shard.countVehicles(type);
+        }
+        return count;
+    }
+
+    // Each shard returns its first limit vehicles after the cursor and the merge keeps the
+    // first limit overall; plate codes sort like the plates
+    public List<Vehicle> getVehiclesAfter(Vehicle.VehicleStatus status, String afterPlate, int limit) {
+        List<Vehicle> merged = flatten(fanOut(shard -> shard.getVehiclesAfter(status, afterPlate, limit)));
+        merged.sort(Comparator.comparingInt(Vehicle::getPlateCode));
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    public List<Vehicle> searchVehicles(FleetQuery query, int limit) {
+        List<Vehicle> merged = flatten(fanOut(shard -> shard.searchVehicles(query, limit)));
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    public List<Vehicle> findFreeVehicles(LocalDate from, LocalDate to) {
+        return flatten(fanOut(shard -> shard.findFreeVehicles(from, to)));
+    }
+
+    // By date; the sort is stable, so records of one day keep their order within a shard
+    public List<RentalRecord> getRentalRecordsByCustomer(int customerId) {
+        return byDate(fanOut(shard -> shard.getHistory().getRentalRecordsByCustomer(customerId)));
+    }
+
+    public List<RentalRecord> getRentalRecordsBetween(LocalDate from, LocalDate to) {
+        return byDate(fanOut(shard -> shard.getHistory().getRentalRecordsBetween(from, to)));
+    }
+
+    public long countBetween(LocalDate from, LocalDate to) {
+        long count = 0;
+        for (long shardCount : fanOut(shard -> shard.getHistory().countBetween(from, to))) {
+            count += shardCount;
+        }
+        return count;
+    }
+
+    public long getRevenueCents() {
+        long revenue = 0;
+        for (RentalSystem shard : shards) {
+            revenue += shard.getAggregates().getRevenueCents();
+        }
+        return revenue;
+    }
+
+    public long getRevenueCents(LocalDate from, LocalDate to) {
+        long revenue = 0;
+        for (long shardRevenue : fanOut(shard -> shard.getAggregates().getRevenueCents(from, to))) {
+            revenue += shardRevenue;
+        }
+        return revenue;
+    }
+
+    public double getUtilization() {
+        long inFlight = 0;
+        for (RentalSystem shard : shards) {
+            inFlight += shard.getAggregates().getRentalsInFlight();
+        }
+        long fleet = 0;
+        for (VehicleType type : VehicleType.values()) {
+            fleet += countVehicles(type);
+        }
+        return fleet == 0 ? 0 : (double) inFlight / fleet;
+    }
+
+    // --- Lifecycle ---
+    // Every shard writes its own snapshot; the shards are cut one at a time, not together
+    public void checkpoint() {
+        fanOut(shard -> {
+            try {
+                shard.checkpoint();
+            } catch (IOException e) {
+                System.err.println("Error writing checkpoint: " + e.getMessage());
+            }
+            return null;
+        });
+    }
+
+    public void shutdown() {
+        for (RentalSystem shard : shards) {
+            shard.shutdown();
+        }
+        pool.shutdown();
+    }
+
+    // Runs the query on every shard in parallel; the answers come back in shard order
+    private <T> List<T> fanOut(Function<RentalSystem, T> query) {
+        if (shards.length == 1) {
+            List<T> single = new ArrayList<>(1);
+            single.add(query.apply(shards[0]));
+            return single;
+        }
+        return pool.submit(() -> Arrays.stream(shards).parallel().map(query).collect(Collectors.toList())).join();
+    }
+
+    private static <T> List<T> flatten(List<List<T>> parts) {
+        int size = 0;
+        for (List<T> part : parts) {
+            size += part.size();
+        }
+        List<T> all = new ArrayList<>(size);
+        for (List<T> part : parts) {
+            all.addAll(part);
+        }
+        return all;
+    }
+
+    private static List<RentalRecord> byDate(List<List<RentalRecord>> parts) {
+        List<RentalRecord> all = flatten(parts);
+        all.sort(Comparator.comparing(RentalRecord::getRecordDate));
+        return all;
+    }
+}
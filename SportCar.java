@@ -8,8 +8,22 @@ public final class SportCar extends Car {
         this.hasTurbo = hasTurbo;
     }
 
+    public int getHorsepower() {
+        return horsepower;
+    }
+
+    public boolean hasTurbo() {
+        return hasTurbo;
+    }
+
     @Override
     public String getInfo() {
         return super.getInfo() + " | Horsepower: " + horsepower + " | Turbo: " + (hasTurbo ? "Yes" : "No");
     }
+
+    @Override
+    public String toFileString() {
+        return "SportCar," + getLicensePlate() + "," + getMake() + "," + getModel() + "," + getYear() + "," + getNumSeats()
+                + "," + horsepower + "," + hasTurbo;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+import java.io.File;
+import java.io.IOException;
+
+// A persistent format for RentalData. The journal and text codecs use a data directory;
+// the binary codec uses a single file.
+public interface StorageCodec {
+    void write(RentalData data, File target) throws IOException;
+
+    RentalData read(File source) throws IOException;
+}
@@ -0,0 +1,56 @@
+import java.io.File;
+import java.io.IOException;
+
+// Converts between the journal.txt of a data directory, the old text data files and the
+// binary data file:
+//   java StorageConverter <from>-to-<to> <source> <target>
+// where the formats are journal (a data directory), text (a data directory) and binary
+// (a file), e.g. journal-to-binary data backup.dat. to-binary and to-text are short for
+// text-to-binary and binary-to-text.
+public class StorageConverter {
+    public static void main(String[] args) {
+        String[] formats = args.length == 3 ? formats(args[0]) : null;
+        StorageCodec from = formats == null ? null : codec(formats[0]);
+        StorageCodec to = formats == null ? null : codec(formats[1]);
+        if (from == null || to == null) {
+            System.err.println("Usage: StorageConverter <from>-to-<to> <source> <target>");
+            System.err.println("       formats: journal (data directory), text (data directory), binary (file)");
+            System.exit(1);
+        }
+        try {
+            RentalData data = convert(from, new File(args[1]), to, new File(args[2]));
+            System.out.println("Converted " + data.getVehicles().size() + " vehicles, " + data.getCustomers().size()
+                    + " customers and " + data.getRecords().size() + " rental records.");
+        } catch (IOException e) {
+            System.err.println("Error converting data: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static String[] formats(String mode) {
+        if (mode.equals("to-binary")) return new String[] {"text", "binary"};
+        if (mode.equals("to-text")) return new String[] {"binary", "text"};
+        String[] formats = mode.split("-to-");
+        return formats.length == 2 ? formats : null;
+    }
+
+    // Null for an unknown format name
+    public static StorageCodec codec(String format) {
+        switch (format) {
+            case "journal":
+                return new JournalStorageCodec();
+            case "text":
+                return new TextStorageCodec();
+            case "binary":
+                return new BinaryStorageCodec();
+            default:
+                return null;
+        }
+    }
+
+    public static RentalData convert(StorageCodec from, File source, StorageCodec to, File target) throws IOException {
+        RentalData data = from.read(source);
+        to.write(data, target);
+        return data;
+    }
+}
@@ -0,0 +1,106 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Random;
+
+// Writes vehicles.txt, customers.txt and rental_records.txt with made-up but valid data:
+//   java SyntheticDataGenerator <directory> <vehicles> <customers> <records> [seed]
+// Records alternate RENT and RETURN per vehicle, so replaying them leaves a consistent fleet.
+public class SyntheticDataGenerator {
+    public static final int PLATE_SPACE = PlateCode.SPACE;
+    // Coprime with PLATE_SPACE, so stepping by it visits every plate exactly once
+    private static final int PLATE_STRIDE = 7919;
+
+    private static final String[][] MAKES_AND_MODELS = {
+        { "Toyota", "Camry", "Corolla", "Rav4" },
+        { "Honda", "Civic", "Accord", "Crv" },
+        { "Ford", "Focus", "F150", "Transit" },
+        { "Volvo", "Xc60", "Fh", "V70" },
+        { "Yamaha", "R1", "Mt07", "Tenere" },
+        { "Porsche", "911", "Cayman", "Taycan" },
+    };
+    private static final String[] FIRST_NAMES = { "John", "Jane", "Alex", "Sam", "Priya", "Omar", "Li", "Maria" };
+    private static final String[] LAST_NAMES = { "Doe", "Smith", "Nguyen", "Garcia", "Khan", "Brown", "Chen", "Roe" };
+
+    public static String plate(int index) {
+        return PlateCode.format(plateCode(index));
+    }
+
+    public static int plateCode(int index) {
+        return (int) ((long) index * PLATE_STRIDE % PLATE_SPACE);
+    }
+
+    public static Vehicle vehicle(int index, Random random) {
+        String[] makeAndModels = MAKES_AND_MODELS[random.nextInt(MAKES_AND_MODELS.length)];
+        String make = makeAndModels[0];
+        String model = makeAndModels[1 + random.nextInt(makeAndModels.length - 1)];
+        int year = 2005 + random.nextInt(21);
+        Vehicle vehicle;
+        switch (random.nextInt(4)) {
+            case 0:
+                vehicle = new Car(make, model, year, 2 + random.nextInt(6));
+                break;
+            case 1:
+                vehicle = new SportCar(make, model, year, 2, 250 + random.nextInt(500), random.nextBoolean());
+                break;
+            case 2:
+                vehicle = new Truck(make, model, year, 1 + random.nextInt(400) / 10.0);
+                break;
+            default:
+                vehicle = new Motorcycle(make, model, year, random.nextInt(10) == 0);
+                break;
+        }
+        vehicle.setPlateCode(plateCode(index));
+        return vehicle;
+    }
+
+    public static Customer customer(int index, Random random) {
+        return new Customer(index + 1, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                + LAST_NAMES[random.nextInt(LAST_NAMES.length)] + " " + index);
+    }
+
+    public static void generate(File directory, int vehicles, int customers, long records, long seed) throws IOException {
+        if (vehicles > PLATE_SPACE) throw new IllegalArgumentException("At most " + PLATE_SPACE + " vehicles");
+        if (vehicles <= 0 || customers <= 0) throw new IllegalArgumentException("Need at least one vehicle and customer");
+        directory.mkdirs();
+        Random random = new Random(seed);
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(new File(directory, TextStorageCodec.VEHICLES_FILE)), 1 << 16)) {
+            for (int i = 0; i < vehicles; i++) {
+                out.write(vehicle(i, random).toFileString());
+                out.newLine();
+            }
+        }
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(new File(directory, TextStorageCodec.CUSTOMERS_FILE)), 1 << 16)) {
+            for (int i = 0; i < customers; i++) {
+                out.write(customer(i, random).toFileString());
+                out.newLine();
+            }
+        }
+        boolean[] rented = new boolean[vehicles];
+        long startDay = LocalDate.of(2020, 1, 1).toEpochDay();
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(new File(directory, TextStorageCodec.RECORDS_FILE)), 1 << 16)) {
+            for (long r = 0; r < records; r++) {
+                int v = random.nextInt(vehicles);
+                String type = rented[v] ? "RETURN" : "RENT";
+                rented[v] = !rented[v];
+                long day = startDay + r * 2000 / Math.max(1, records);
+                int cents = rented[v] ? 2000 + random.nextInt(30000) : random.nextInt(5000);
+                out.write(type + "," + plate(v) + "," + (1 + random.nextInt(customers)) + ","
+                        + LocalDate.ofEpochDay(day) + "," + (cents / 100.0));
+                out.newLine();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("Usage: SyntheticDataGenerator <directory> <vehicles> <customers> <records> [seed]");
+            System.exit(1);
+        }
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+        generate(new File(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]), Long.parseLong(args[3]), seed);
+        System.out.println("Generated data in " + args[0]);
+    }
+}
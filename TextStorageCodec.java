@@ -0,0 +1,136 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.time.LocalDate;
+import java.util.function.IntFunction;
+
+// The original CSV layout: vehicles.txt, customers.txt and rental_records.txt in one directory
+public class TextStorageCodec implements StorageCodec {
+    public static final String VEHICLES_FILE = "vehicles.txt";
+    public static final String CUSTOMERS_FILE = "customers.txt";
+    public static final String RECORDS_FILE = "rental_records.txt";
+
+    @Override
+    public void write(RentalData data, File directory) throws IOException {
+        directory.mkdirs();
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(new File(directory, VEHICLES_FILE))))) {
+            for (Vehicle vehicle : data.getVehicles()) {
+                out.println(vehicle.toFileString());
+            }
+        }
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(new File(directory, CUSTOMERS_FILE))))) {
+            for (Customer customer : data.getCustomers()) {
+                out.println(customer.toFileString());
+            }
+        }
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(new File(directory, RECORDS_FILE))))) {
+            for (RentalRecord record : data.getRecords()) {
+                out.println(record.toFileString());
+            }
+        }
+    }
+
+    @Override
+    public RentalData read(File directory) throws IOException {
+        RentalData data = new RentalData();
+        IntHashMap<Vehicle> vehiclesByPlate = new IntHashMap<>();
+        IntHashMap<Customer> customersById = new IntHashMap<>();
+
+        File vehicles = new File(directory, VEHICLES_FILE);
+        if (vehicles.exists()) {
+            MappedFileReader.forEachLine(vehicles, line -> {
+                Vehicle vehicle = parseVehicle(line);
+                if (vehicle != null && vehiclesByPlate.putIfAbsent(vehicle.getPlateCode(), vehicle) == null) {
+                    data.getVehicles().add(vehicle);
+                }
+            });
+        }
+        File customers = new File(directory, CUSTOMERS_FILE);
+        if (customers.exists()) {
+            MappedFileReader.forEachLine(customers, line -> {
+                Customer customer = parseCustomer(line);
+                if (customersById.putIfAbsent(customer.getCustomerId(), customer) == null) {
+                    data.getCustomers().add(customer);
+                }
+            });
+        }
+        File records = new File(directory, RECORDS_FILE);
+        if (records.exists()) {
+            MappedFileReader.forEachLine(records, line -> {
+                RentalRecord record = parseRecord(line, vehiclesByPlate::get, customersById::get);
+                if (record != null) {
+                    data.getRecords().add(record);
+                }
+            });
+        }
+        return data;
+    }
+
+    // Returns null for an unknown vehicle type; throws IllegalArgumentException for bad fields
+    public static Vehicle parseVehicle(MappedFileReader.LineCursor line) {
+        VehicleType type;
+        if (line.nextFieldEqualsIgnoreCase("Car")) {
+            type = VehicleType.CAR;
+        } else if (line.nextFieldEqualsIgnoreCase("SportCar")) {
+            type = VehicleType.SPORT_CAR;
+        } else if (line.nextFieldEqualsIgnoreCase("Motorcycle")) {
+            type = VehicleType.MOTORCYCLE;
+        } else if (line.nextFieldEqualsIgnoreCase("Truck")) {
+            type = VehicleType.TRUCK;
+        } else {
+            return null;
+        }
+        int plate = line.nextPlateCode();
+        String make = line.nextString();
+        String model = line.nextString();
+        int year = line.nextInt();
+
+        Vehicle vehicle;
+        switch (type) {
+            case CAR:
+                vehicle = new Car(make, model, year, line.nextInt());
+                break;
+            case SPORT_CAR:
+                vehicle = new SportCar(make, model, year, line.nextInt(), line.nextInt(), line.nextBoolean());
+                break;
+            case MOTORCYCLE:
+                vehicle = new Motorcycle(make, model, year, line.nextBoolean());
+                break;
+            default:
+                vehicle = new Truck(make, model, year, line.nextDouble());
+                break;
+        }
+        vehicle.setPlateCode(plate);
+        return vehicle;
+    }
+
+    // The name is the rest of the line, so names containing commas survive a reload
+    public static Customer parseCustomer(MappedFileReader.LineCursor line) {
+        int id = line.nextInt();
+        return new Customer(id, line.restOfLine());
+    }
+
+    // Returns null when the vehicle or customer is unknown; throws for malformed fields
+    public static RentalRecord parseRecord(MappedFileReader.LineCursor line,
+                                           IntFunction<Vehicle> vehicles, IntFunction<Customer> customers) {
+        String recordType;
+        if (line.nextFieldEqualsIgnoreCase("RENT")) {
+            recordType = "RENT";
+        } else if (line.nextFieldEqualsIgnoreCase("RETURN")) {
+            recordType = "RETURN";
+        } else {
+            recordType = line.nextString();
+        }
+        int plate = line.nextPlateCode();
+        Vehicle vehicle = plate == PlateCode.INVALID ? null : vehicles.apply(plate);
+        Customer customer = customers.apply(line.nextInt());
+        LocalDate date = line.nextDate();
+        double amount = line.nextDouble();
+        if (vehicle == null || customer == null) {
+            return null;
+        }
+        return new RentalRecord(vehicle, customer, date, amount, recordType);
+    }
+}
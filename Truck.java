@@ -19,13 +19,11 @@ public class Truck extends Vehicle implements Rentable {
     @Override
     public void rentVehicle() {
         setStatus(VehicleStatus.RENTED);
-        System.out.println("Truck " + getLicensePlate() + " has been rented.");
     }
 
     @Override
     public void returnVehicle() {
         setStatus(VehicleStatus.AVAILABLE);
-        System.out.println("Truck " + getLicensePlate() + " has been returned.");
     }
 
     @Override
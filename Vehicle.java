@@ -1,15 +1,24 @@
+import java.util.Map;
+
 public abstract class Vehicle {
     private String licensePlate;
+    private int plateCode = PlateCode.INVALID;
     private String make;
     private String model;
     private int year;
-    private VehicleStatus status;
+    private volatile VehicleStatus status;
+    private volatile StatusListener statusListener;
 
     public enum VehicleStatus { AVAILABLE, RESERVED, RENTED, MAINTENANCE, OUTOFSERVICE }
 
+    // Notified of every status change while the vehicle's lock is held
+    public interface StatusListener {
+        void statusChanged(Vehicle vehicle, VehicleStatus from, VehicleStatus to);
+    }
+
     public Vehicle(String make, String model, int year) {
-        this.make = capitalize(make);
-        this.model = capitalize(model);
+        this.make = capitalize(checkField("Make", make));
+        this.model = capitalize(checkField("Model", model));
         this.year = year;
         this.status = VehicleStatus.AVAILABLE;
         this.licensePlate = null;
@@ -19,6 +28,14 @@ public abstract class Vehicle {
         this(null, null, 0);
     }
 
+    // Vehicles are stored one per line with comma-separated fields
+    private static String checkField(String what, String value) {
+        if (value != null && (value.indexOf(',') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0)) {
+            throw new IllegalArgumentException(what + " must not contain commas or line breaks");
+        }
+        return value;
+    }
+
     // Helper method
     private String capitalize(String input) {
         if (input == null || input.isEmpty()) {
@@ -26,28 +43,61 @@ public abstract class Vehicle {
         }
         return input.substring(0, 1).toUpperCase() + input.substring(1).toLowerCase();
     }
+
+    // Makes and models repeat across a fleet, so the fleet swaps them for the instances it
+    // already holds when it takes the vehicle in
+    void shareNames(Map<String, String> names) {
+        make = shared(names, make);
+        model = shared(names, model);
+    }
+
+    private static String shared(Map<String, String> names, String name) {
+        if (name == null) {
+            return null;
+        }
+        String existing = names.putIfAbsent(name, name);
+        return existing == null ? name : existing;
+    }
     
     public void setLicensePlate(String plate) {
-        this.licensePlate = plate == null ? null : plate.toUpperCase();
-        if (!isValidPlate(plate)) {
+        int code = PlateCode.parse(plate);
+        if (code == PlateCode.INVALID) {
+            throw new IllegalArgumentException("Invalid license plate format");
+        }
+        setPlateCode(code);
+    }
+
+    public void setPlateCode(int code) {
+        if (!PlateCode.isValid(code)) {
             throw new IllegalArgumentException("Invalid license plate format");
         }
-        this.licensePlate = plate == null ? null : plate.toUpperCase();
+        this.plateCode = code;
+        this.licensePlate = PlateCode.format(code);
+    }
+
+    // Exactly 3 letters followed by exactly 3 digits
+    public static boolean isValidPlate(String plate) {
+        return PlateCode.isValid(plate);
     }
-    private boolean isValidPlate(String plate) {
-        if (plate == null || plate.trim().isEmpty()) {
-            return false;
+
+    public synchronized void setStatus(VehicleStatus status) {
+        VehicleStatus previous = this.status;
+        this.status = status;
+        StatusListener listener = statusListener;
+        if (listener != null && previous != status) {
+            listener.statusChanged(this, previous, status);
         }
-        // Pattern: exactly 3 letters followed by exactly 3 numbers
-        return plate.matches("[A-Za-z]{3}\\d{3}$");
     }
 
-    public void setStatus(VehicleStatus status) {
-    	this.status = status;
+    public void setStatusListener(StatusListener listener) {
+        this.statusListener = listener;
     }
 
     public String getLicensePlate() { return licensePlate; }
 
+    // PlateCode.INVALID until a plate is set
+    public int getPlateCode() { return plateCode; }
+
     public String getMake() { return make; }
 
     public String getModel() { return model;}
@@ -64,12 +114,10 @@ public abstract class Vehicle {
     
     public void rentVehicle() {
         setStatus(VehicleStatus.RENTED);
-        System.out.println("Truck " + getLicensePlate() + " has been rented.");
     }
 
     public void returnVehicle() {
         setStatus(VehicleStatus.AVAILABLE);
-        System.out.println("Truck " + getLicensePlate() + " has been returned.");
     }
 
 
@@ -6,6 +6,9 @@ public class VehicleRentalApp {
         Scanner scanner = new Scanner(System.in);
         
         RentalSystem system = RentalSystem.getInstance(); // singleton call
+        system.getEventBus().addListener(event -> System.out.println(
+                VehicleType.of(event.getVehicle()).getDisplayName() + " " + event.getVehicle().getLicensePlate()
+                + (event.getType() == RentalEvent.Type.RENT ? " has been rented." : " has been returned.")));
 
         while (true) {
             System.out.println("\n1: Add Vehicle\n2: Add Customer\n3: Rent Vehicle\n4: Return Vehicle\n5: Display Available Vehicles\n6: Show Rental History\n7: Exit");
@@ -29,29 +32,33 @@ public class VehicleRentalApp {
                     int year = scanner.nextInt();
                     scanner.nextLine();
 
-                    Vehicle vehicle;
-                    if (type == 1) {
-                        System.out.print("Enter number of seats: ");
-                        int seats = scanner.nextInt();
-                        vehicle = new Car(make, model, year, seats);
-                    } else if (type == 2) {
-                        System.out.print("Has sidecar? (true/false): ");
-                        boolean sidecar = scanner.nextBoolean();
-                        vehicle = new Motorcycle(make, model, year, sidecar);
-                    } else if (type == 3) {
-                        System.out.print("Enter the cargo capacity: ");
-                        double cargoCapacity = scanner.nextDouble();
-                        vehicle = new Truck(make, model, year, cargoCapacity);
-                    } else {
-                        vehicle = null;
-                    }
-
-                    if (vehicle != null) {
-                        vehicle.setLicensePlate(plate);
-                        system.addVehicle(vehicle);
-                        System.out.println("Vehicle added.");
-                    } else {
-                        System.out.println("Vehicle not added.");
+                    try {
+                        Vehicle vehicle;
+                        if (type == 1) {
+                            System.out.print("Enter number of seats: ");
+                            int seats = scanner.nextInt();
+                            vehicle = new Car(make, model, year, seats);
+                        } else if (type == 2) {
+                            System.out.print("Has sidecar? (true/false): ");
+                            boolean sidecar = scanner.nextBoolean();
+                            vehicle = new Motorcycle(make, model, year, sidecar);
+                        } else if (type == 3) {
+                            System.out.print("Enter the cargo capacity: ");
+                            double cargoCapacity = scanner.nextDouble();
+                            vehicle = new Truck(make, model, year, cargoCapacity);
+                        } else {
+                            vehicle = null;
+                        }
+
+                        if (vehicle != null) {
+                            vehicle.setLicensePlate(plate);
+                            system.addVehicle(vehicle);
+                            System.out.println("Vehicle added.");
+                        } else {
+                            System.out.println("Vehicle not added.");
+                        }
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Vehicle not added: " + e.getMessage());
                     }
                     break;
 
@@ -61,8 +68,12 @@ public class VehicleRentalApp {
                     System.out.print("Enter name: ");
                     String cname = scanner.nextLine();
 
-                    system.addCustomer(new Customer(Integer.parseInt(cID), cname));
-                    System.out.println("Customer added.");
+                    try {
+                        system.addCustomer(new Customer(Integer.parseInt(cID), cname));
+                        System.out.println("Customer added.");
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Customer not added: " + e.getMessage());
+                    }
                     break;
 
                 case 3:
@@ -78,8 +89,8 @@ public class VehicleRentalApp {
                     System.out.print("Enter customer ID: ");
                     String cidRent = scanner.nextLine();
 
-                    System.out.print("Enter rental amount: ");
-                    double rentAmount = scanner.nextDouble();
+                    System.out.print("Enter number of days: ");
+                    int rentDays = scanner.nextInt();
                     scanner.nextLine();
 
                     Vehicle vehicleToRent = system.findVehicleByPlate(rentPlate);
@@ -89,8 +100,15 @@ public class VehicleRentalApp {
                         System.out.println("Vehicle or customer not found.");
                         break;
                     }
+                    if (rentDays < 1 || rentDays > RentalSystem.MAX_RENTAL_DAYS) {
+                        System.out.println("A rental lasts 1 to " + RentalSystem.MAX_RENTAL_DAYS + " days.");
+                        break;
+                    }
 
-                    system.rentVehicle(vehicleToRent, customerToRent, LocalDate.now(), rentAmount);
+                    long quote = system.quoteRent(vehicleToRent, customerToRent, LocalDate.now(), rentDays);
+                    System.out.printf("Price for %d days: $%d.%02d%n", rentDays, quote / 100, quote % 100);
+                    system.rentVehicle(vehicleToRent, customerToRent, LocalDate.now(), rentDays);
+                    system.getEventBus().awaitDelivered(1000);
                     break;
 
                 case 4:
@@ -106,10 +124,6 @@ public class VehicleRentalApp {
                     System.out.print("Enter customer ID: ");
                     String cidReturn = scanner.nextLine();
 
-                    System.out.print("Enter return fees: ");
-                    double returnFees = scanner.nextDouble();
-                    scanner.nextLine();
-
                     Vehicle vehicleToReturn = system.findVehicleByPlate(returnPlate);
                     Customer customerToReturn = system.findCustomerById(cidReturn);
 
@@ -118,19 +132,36 @@ public class VehicleRentalApp {
                         break;
                     }
 
-                    system.returnVehicle(vehicleToReturn, customerToReturn, LocalDate.now(), returnFees);
+                    system.returnVehicle(vehicleToReturn, customerToReturn, LocalDate.now());
+                    system.getEventBus().awaitDelivered(1000);
                     break;
 
                 case 5:
-                    system.displayVehicles(true);
+                    System.out.println(system.countVehicles(Vehicle.VehicleStatus.AVAILABLE) + " vehicles available.");
+                    String cursor = system.displayVehicles(Vehicle.VehicleStatus.AVAILABLE, null, 20);
+                    while (cursor != null) {
+                        System.out.print("Press Enter for more, or q to stop: ");
+                        if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                            break;
+                        }
+                        cursor = system.displayVehicles(Vehicle.VehicleStatus.AVAILABLE, cursor, 20);
+                    }
                     break;
 
                 case 6:
                     System.out.println("Rental History:");
-                    system.displayRentalHistory();
+                    int historyCursor = system.displayRentalHistory(0, 20);
+                    while (historyCursor >= 0) {
+                        System.out.print("Press Enter for more, or q to stop: ");
+                        if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                            break;
+                        }
+                        historyCursor = system.displayRentalHistory(historyCursor, 20);
+                    }
                     break;
 
                 case 7:
+                    system.shutdown();
                     scanner.close();
                     System.exit(0);
                     break;
@@ -5,6 +5,14 @@ import java.lang.reflect.Modifier;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class VehicleRentalTest {
     private Vehicle testVehicle;
@@ -90,4 +98,1344 @@ class VehicleRentalTest {
         RentalSystem instance = RentalSystem.getInstance();
         assertNotNull(instance, "Instance should not be null");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testConcurrentRentNeverDoubleRents() throws Exception {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+
+        Vehicle car = new Car("Honda", "Civic", 2021, 5);
+        car.setLicensePlate("HOT111");
+        Customer customer = new Customer(7, "Race Tester");
+        rentalSystem.addVehicle(car);
+        rentalSystem.addCustomer(customer);
+
+        int threads = 8;
+        int rounds = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < rounds; round++) {
+                CountDownLatch start = new CountDownLatch(1);
+                AtomicInteger wins = new AtomicInteger();
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        if (rentalSystem.rentVehicle(car, customer, LocalDate.now(), 50.0)) {
+                            wins.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> f : futures) {
+                    f.get(10, TimeUnit.SECONDS);
+                }
+                assertEquals(1, wins.get(), "exactly one thread should win the rental");
+                assertTrue(rentalSystem.returnVehicle(car, customer, LocalDate.now(), 0.0));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(rounds * 2, RentalHistory.getInstance().getRentalRecordsByVehicle("HOT111").size());
+    }
+
+    @Test
+    void testConcurrentRentalsLoseNoRecords() throws Exception {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+
+        int threads = 8;
+        int vehiclesPerThread = 50;
+        Customer customer = new Customer(8, "Load Tester");
+        rentalSystem.addCustomer(customer);
+        List<List<Vehicle>> fleets = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<Vehicle> fleet = new ArrayList<>();
+            for (int v = 0; v < vehiclesPerThread; v++) {
+                Vehicle car = new Car("Ford", "Focus", 2019, 5);
+                car.setLicensePlate("" + (char) ('A' + t) + "ZZ" + String.format("%03d", v));
+                rentalSystem.addVehicle(car);
+                fleet.add(car);
+            }
+            fleets.add(fleet);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<Vehicle> fleet : fleets) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (Vehicle v : fleet) {
+                        assertTrue(rentalSystem.rentVehicle(v, customer, LocalDate.now(), 10.0));
+                        assertTrue(rentalSystem.returnVehicle(v, customer, LocalDate.now(), 1.0));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(threads * vehiclesPerThread * 2, RentalHistory.getInstance().getRentalHistory().size());
+        for (RentalRecord record : RentalHistory.getInstance().getRentalHistory()) {
+            assertNotNull(record);
+        }
+    }
+
+    @Test
+    void testRentalHistoryLookups() {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+
+        Vehicle car = new Car("Toyota", "Corolla", 2018, 5);
+        car.setLicensePlate("IDX001");
+        Vehicle bike = new Motorcycle("Yamaha", "R1", 2022, false);
+        bike.setLicensePlate("IDX002");
+        Customer john = new Customer(21, "John Doe");
+        Customer jane = new Customer(22, "Jane Roe");
+        rentalSystem.addVehicle(car);
+        rentalSystem.addVehicle(bike);
+        rentalSystem.addCustomer(john);
+        rentalSystem.addCustomer(jane);
+
+        rentalSystem.rentVehicle(car, john, LocalDate.now(), 100.0);
+        rentalSystem.returnVehicle(car, john, LocalDate.now(), 10.0);
+        rentalSystem.rentVehicle(bike, jane, LocalDate.now(), 60.0);
+
+        RentalHistory history = RentalHistory.getInstance();
+        assertEquals(2, history.getRentalRecordsByVehicle("idx001").size());
+        assertEquals(1, history.getRentalRecordsByVehicle("IDX002").size());
+        assertEquals(0, history.getRentalRecordsByVehicle("NON999").size());
+
+        assertEquals(2, history.getRentalRecordsByCustomer("john").size());
+        assertEquals(1, history.getRentalRecordsByCustomer("ROE").size());
+        assertEquals(3, history.getRentalRecordsByCustomer("oe").size());
+        assertEquals(1, history.getRentalRecordsByCustomer("ID: 22").size());
+        assertEquals(0, history.getRentalRecordsByCustomer("smith").size());
+    }
+
+    @Test
+    void testRentalsArePersistedToJournal() throws Exception {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+
+        Vehicle truck = new Truck("Volvo", "Fh", 2017, 12.5);
+        truck.setLicensePlate("LOG100");
+        Customer customer = new Customer(31, "Log Tester");
+        rentalSystem.addVehicle(truck);
+        rentalSystem.addCustomer(customer);
+
+        assertTrue(rentalSystem.rentVehicle(truck, customer, LocalDate.of(2026, 10, 1), 250.0));
+        assertTrue(rentalSystem.returnVehicle(truck, customer, LocalDate.of(2026, 10, 3), 25.0));
+        assertTrue(rentalSystem.rentVehicle(truck, customer, LocalDate.of(2026, 10, 4), 125.0));
+        rentalSystem.shutdown();
+
+        List<String> lines = java.nio.file.Files.readAllLines(java.nio.file.Paths.get("journal.txt"));
+        assertEquals(5, lines.size());
+        assertEquals("VEHICLE,Truck,LOG100,Volvo,Fh,2017,12.5", lines.get(0));
+        assertEquals("CUSTOMER,31,Log Tester", lines.get(1));
+        assertEquals("RENT,LOG100,31,2026-10-01,250.00", lines.get(2));
+        assertEquals("RETURN,LOG100,31,2026-10-03,25.00", lines.get(3));
+        assertEquals("RENT,LOG100,31,2026-10-04,125.00", lines.get(4));
+    }
+
+    @Test
+    void testStorageCodecsRoundTripEveryVehicleClass() throws Exception {
+        Car car = new Car("Toyota", "Camry", 2020, 5);
+        car.setLicensePlate("RTA001");
+        SportCar sportCar = new SportCar("Porsche", "911", 2023, 2, 450, true);
+        sportCar.setLicensePlate("RTA002");
+        sportCar.setStatus(Vehicle.VehicleStatus.RENTED);
+        Truck truck = new Truck("Volvo", "Fh", 2018, 18.5);
+        truck.setLicensePlate("RTA003");
+        Motorcycle motorcycle = new Motorcycle("Ural", "Gear up", 2016, true);
+        motorcycle.setLicensePlate("RTA004");
+        Customer customer = new Customer(41, "Smith, Jane");
+
+        RentalData data = new RentalData();
+        data.getVehicles().addAll(List.of(car, sportCar, truck, motorcycle));
+        data.getCustomers().add(customer);
+        data.getRecords().add(new RentalRecord(sportCar, customer, LocalDate.of(2026, 9, 30), 399.99, "RENT"));
+        data.getRecords().add(new RentalRecord(car, customer, LocalDate.of(2026, 10, 2), 45.5, "RETURN"));
+
+        java.io.File dir = java.nio.file.Files.createTempDirectory("codec").toFile();
+        java.io.File binary = new java.io.File(dir, "rental.dat");
+        java.io.File text = new java.io.File(dir, "text");
+
+        new BinaryStorageCodec().write(data, binary);
+        RentalData fromBinary = new BinaryStorageCodec().read(binary);
+        StorageConverter.convert(new BinaryStorageCodec(), binary, new TextStorageCodec(), text);
+        RentalData fromText = new TextStorageCodec().read(text);
+
+        for (RentalData copy : List.of(fromBinary, fromText)) {
+            assertEquals(4, copy.getVehicles().size());
+            for (int i = 0; i < 4; i++) {
+                Vehicle original = data.getVehicles().get(i);
+                Vehicle loaded = copy.getVehicles().get(i);
+                assertEquals(original.getClass(), loaded.getClass());
+                assertEquals(original.toFileString(), loaded.toFileString());
+            }
+            assertEquals("Smith, Jane", copy.getCustomers().get(0).getCustomerName());
+            assertEquals(2, copy.getRecords().size());
+            for (int i = 0; i < 2; i++) {
+                assertEquals(data.getRecords().get(i).toFileString(), copy.getRecords().get(i).toFileString());
+            }
+        }
+        assertEquals(Vehicle.VehicleStatus.RENTED, fromBinary.getVehicles().get(1).getStatus());
+        assertEquals(450, ((SportCar) fromText.getVehicles().get(1)).getHorsepower());
+    }
+
+    @Test
+    void testStatusIndexCountsAndPages() {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+
+        Customer customer = new Customer(51, "Page Tester");
+        rentalSystem.addCustomer(customer);
+        for (int i = 0; i < 10; i++) {
+            Vehicle car = new Car("Kia", "Rio", 2020, 5);
+            car.setLicensePlate("PGE00" + i);
+            rentalSystem.addVehicle(car);
+        }
+        for (int i = 0; i < 4; i++) {
+            rentalSystem.rentVehicle(rentalSystem.findVehicleByPlate("PGE00" + i), customer, LocalDate.now(), 30.0);
+        }
+
+        assertEquals(6, rentalSystem.countVehicles(Vehicle.VehicleStatus.AVAILABLE));
+        assertEquals(4, rentalSystem.countVehicles(Vehicle.VehicleStatus.RENTED));
+        assertEquals(0, rentalSystem.countVehicles(Vehicle.VehicleStatus.RESERVED));
+
+        List<Vehicle> first = rentalSystem.getVehiclesAfter(Vehicle.VehicleStatus.AVAILABLE, null, 4);
+        assertEquals("PGE004", first.get(0).getLicensePlate());
+        assertEquals(4, first.size());
+        List<Vehicle> second = rentalSystem.getVehiclesAfter(Vehicle.VehicleStatus.AVAILABLE,
+                first.get(3).getLicensePlate(), 4);
+        assertEquals(2, second.size());
+        assertEquals("PGE008", second.get(0).getLicensePlate());
+        assertEquals("PGE002", rentalSystem.getVehicles(Vehicle.VehicleStatus.RENTED, 2, 10).get(0).getLicensePlate());
+
+        rentalSystem.returnVehicle(rentalSystem.findVehicleByPlate("PGE000"), customer, LocalDate.now(), 0.0);
+        assertEquals(7, rentalSystem.countVehicles(Vehicle.VehicleStatus.AVAILABLE));
+        assertEquals(3, rentalSystem.countVehicles(Vehicle.VehicleStatus.RENTED));
+    }
+
+    @Test
+    void testRentalEventsReachListeners() {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+
+        Vehicle bike = new Motorcycle("Ducati", "Monster", 2021, false);
+        bike.setLicensePlate("EVT001");
+        Customer customer = new Customer(61, "Event Tester");
+        rentalSystem.addVehicle(bike);
+        rentalSystem.addCustomer(customer);
+
+        List<String> seen = java.util.Collections.synchronizedList(new ArrayList<>());
+        RentalEventListener listener = event -> seen.add(event.getType() + " " + event.getVehicle().getLicensePlate()
+                + " " + event.getCustomer().getCustomerId() + " " + event.getAmount());
+        rentalSystem.getEventBus().addListener(listener);
+        try {
+            rentalSystem.rentVehicle(bike, customer, LocalDate.now(), 80.0);
+            rentalSystem.rentVehicle(bike, customer, LocalDate.now(), 80.0);
+            rentalSystem.returnVehicle(bike, customer, LocalDate.now(), 5.0);
+            assertTrue(rentalSystem.getEventBus().awaitDelivered(5000));
+            assertEquals(List.of("RENT EVT001 61 80.0", "RETURN EVT001 61 5.0"), seen);
+
+            // Shutting down delivers what is pending and stops the bus thread; the next
+            // publish starts a new one
+            long busThreads = busThreads();
+            rentalSystem.rentVehicle(bike, customer, LocalDate.now(), 80.0);
+            rentalSystem.shutdown();
+            assertEquals(3, seen.size());
+            assertEquals(busThreads - 1, busThreads());
+            rentalSystem.returnVehicle(bike, customer, LocalDate.now(), 5.0);
+            assertTrue(rentalSystem.getEventBus().awaitDelivered(5000));
+            assertEquals(4, seen.size());
+            assertEquals(busThreads, busThreads());
+        } finally {
+            rentalSystem.getEventBus().removeListener(listener);
+        }
+
+        // close() delivers an event published just before it, however the two interleave
+        RentalEventBus bus = new RentalEventBus(8);
+        java.util.concurrent.atomic.AtomicInteger delivered = new java.util.concurrent.atomic.AtomicInteger();
+        bus.addListener(event -> delivered.incrementAndGet());
+        for (int i = 1; i <= 1000; i++) {
+            assertTrue(bus.publish(RentalEvent.Type.RENT, bike, customer, LocalDate.now(), 100));
+            bus.close();
+            assertEquals(i, delivered.get());
+        }
+    }
+
+    private static long busThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.isAlive() && t.getName().equals("rental-event-bus")).count();
+    }
+
+    @Test
+    void testBulkImportReportsEveryRejectedRow() throws Exception {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+
+        Vehicle existing = new Car("Mazda", "3", 2019, 5);
+        existing.setLicensePlate("BLK001");
+        rentalSystem.addVehicle(existing);
+
+        Vehicle fresh = new Car("Mazda", "6", 2020, 5);
+        fresh.setLicensePlate("BLK002");
+        Vehicle sameAsExisting = new Truck("Man", "Tgx", 2015, 20.0);
+        sameAsExisting.setLicensePlate("blk001");
+        Vehicle sameAsFresh = new Motorcycle("Bmw", "R1250", 2022, false);
+        sameAsFresh.setLicensePlate("BLK002");
+        Vehicle noPlate = new Car("Fiat", "500", 2012, 4);
+
+        ImportReport report = rentalSystem.addVehicles(List.of(fresh, sameAsExisting, sameAsFresh, noPlate));
+        assertEquals(1, report.getAccepted());
+        assertEquals(3, report.getRejected());
+        assertNull(report.getRejection(1));
+        assertEquals(ImportReport.Reason.ALREADY_EXISTS, report.getRejection(2).getReason());
+        assertEquals(ImportReport.Reason.DUPLICATE_IN_BATCH, report.getRejection(3).getReason());
+        assertEquals(ImportReport.Reason.INVALID, report.getRejection(4).getReason());
+        assertSame(fresh, rentalSystem.findVehicleByPlate("BLK002"));
+
+        java.io.File file = java.io.File.createTempFile("import", ".txt");
+        java.nio.file.Files.write(file.toPath(), List.of(
+                "Car,BLK003,Audi,A4,2018,5",
+                "Truck,BLK004,Volvo,Fh,2016,0",
+                "Spaceship,BLK005,Acme,X,2030,1",
+                "Motorcycle,BLK006,Honda,Cb500,2021,false",
+                "Car,BLK003,Audi,A6,2019,5",
+                "SportCar,BLK007,Porsche,911,2022,2,450,true"));
+        ImportReport fileReport = rentalSystem.importVehicles(file, 2);
+        assertEquals(3, fileReport.getAccepted());
+        assertEquals(ImportReport.Reason.INVALID, fileReport.getRejection(2).getReason());
+        assertEquals(ImportReport.Reason.INVALID, fileReport.getRejection(3).getReason());
+        assertEquals(ImportReport.Reason.ALREADY_EXISTS, fileReport.getRejection(5).getReason());
+        assertTrue(rentalSystem.findVehicleByPlate("BLK007") instanceof SportCar);
+        assertEquals(5, rentalSystem.countVehicles(Vehicle.VehicleStatus.AVAILABLE));
+
+        ImportReport customerReport = rentalSystem.addCustomers(List.of(
+                new Customer(71, "Ann"), new Customer(72, "Bob"), new Customer(71, "Ann Again")));
+        assertEquals(2, customerReport.getAccepted());
+        assertEquals(ImportReport.Reason.DUPLICATE_IN_BATCH, customerReport.getRejection(3).getReason());
+    }
+
+    @Test
+    void testReservationsBlockOverlapsAndFeedRenting() {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+
+        Vehicle car = new Car("Subaru", "Outback", 2021, 5);
+        car.setLicensePlate("RSV001");
+        Vehicle other = new Car("Subaru", "Impreza", 2020, 5);
+        other.setLicensePlate("RSV002");
+        Customer holder = new Customer(81, "Holder");
+        Customer walkIn = new Customer(82, "Walk In");
+        rentalSystem.addVehicle(car);
+        rentalSystem.addVehicle(other);
+        rentalSystem.addCustomer(holder);
+        rentalSystem.addCustomer(walkIn);
+
+        LocalDate start = LocalDate.now().plusDays(10);
+        Reservation booking = rentalSystem.reserveVehicle(car, holder, start, start.plusDays(3));
+        assertNotNull(booking);
+        assertNull(rentalSystem.reserveVehicle(car, walkIn, start.plusDays(3), start.plusDays(5)));
+        assertNull(rentalSystem.reserveVehicle(car, walkIn, start.minusDays(2), start));
+        assertNotNull(rentalSystem.reserveVehicle(car, walkIn, start.plusDays(4), start.plusDays(6)));
+        assertEquals(Vehicle.VehicleStatus.AVAILABLE, car.getStatus());
+
+        assertEquals(List.of(other), rentalSystem.findFreeVehicles(start.plusDays(1), start.plusDays(2)));
+        assertEquals(2, rentalSystem.findFreeVehicles(start.minusDays(5), start.minusDays(1)).size());
+
+        assertFalse(rentalSystem.rentVehicle(car, walkIn, start.plusDays(1), 90.0));
+        assertTrue(rentalSystem.rentVehicle(car, holder, start.plusDays(1), 90.0));
+        assertEquals(1, rentalSystem.getReservations(car).size());
+        assertTrue(rentalSystem.returnVehicle(car, holder, start.plusDays(3), 0.0));
+
+        Reservation today = rentalSystem.reserveVehicle(other, holder, LocalDate.now(), LocalDate.now().plusDays(1));
+        assertEquals(Vehicle.VehicleStatus.RESERVED, other.getStatus());
+        assertFalse(rentalSystem.rentVehicle(other, walkIn, LocalDate.now(), 40.0));
+        assertTrue(rentalSystem.cancelReservation(today));
+        assertEquals(Vehicle.VehicleStatus.AVAILABLE, other.getStatus());
+        assertTrue(rentalSystem.rentVehicle(other, walkIn, LocalDate.now(), 40.0));
+    }
+
+    @Test
+    void testAggregatesTrackRevenueAndUtilization() {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+
+        Vehicle car = new Car("Kia", "Rio", 2020, 5);
+        car.setLicensePlate("AGG001");
+        Vehicle truck = new Truck("Man", "Tgx", 2018, 20.0);
+        truck.setLicensePlate("AGG002");
+        Customer big = new Customer(91, "Big Spender");
+        Customer small = new Customer(92, "Small Spender");
+        rentalSystem.addVehicle(car);
+        rentalSystem.addVehicle(truck);
+        rentalSystem.addCustomer(big);
+        rentalSystem.addCustomer(small);
+
+        LocalDate day = LocalDate.of(2024, 3, 10);
+        assertTrue(rentalSystem.rentVehicle(truck, big, day, 250.25));
+        assertTrue(rentalSystem.rentVehicle(car, small, day, 40.0));
+        assertTrue(rentalSystem.returnVehicle(car, small, day.plusDays(1), 5.5));
+
+        RentalAggregates aggregates = rentalSystem.getAggregates();
+        assertEquals(29575, aggregates.getRevenueCents());
+        assertEquals(29025, aggregates.getRevenueCents(day));
+        assertEquals(2, aggregates.getRentals(day));
+        assertEquals(29575, aggregates.getRevenueCents(java.time.YearMonth.of(2024, 3)));
+        assertEquals(29575, aggregates.getRevenueCents(day, day.plusDays(1)));
+        assertEquals(4550, aggregates.getRevenueCents(VehicleType.CAR));
+        assertEquals(1, aggregates.getRentalsInFlight());
+        assertEquals(1.0, rentalSystem.getUtilization(VehicleType.TRUCK));
+        assertEquals(0.0, rentalSystem.getUtilization(VehicleType.CAR));
+        assertEquals(91, aggregates.getTopCustomers(1).get(0).getCustomerId());
+        assertEquals(4550, aggregates.getRevenueCentsForCustomer(92));
+    }
+
+    @Test
+    void testFleetSearchCombinesAttributeFilters() {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+
+        Vehicle family = new Car("Toyota", "Sienna", 2019, 7);
+        family.setLicensePlate("FLT001");
+        Vehicle compact = new Car("Toyota", "Yaris", 2015, 4);
+        compact.setLicensePlate("FLT002");
+        Vehicle fast = new SportCar("Porsche", "911", 2022, 2, 450, true);
+        fast.setLicensePlate("FLT003");
+        Vehicle hauler = new Truck("Volvo", "Fh", 2017, 18.5);
+        hauler.setLicensePlate("FLT004");
+        Vehicle bike = new Motorcycle("Ural", "Gear Up", 2020, true);
+        bike.setLicensePlate("FLT005");
+        for (Vehicle v : List.of(family, compact, fast, hauler, bike)) {
+            rentalSystem.addVehicle(v);
+        }
+        Customer customer = new Customer(95, "Searcher");
+        rentalSystem.addCustomer(customer);
+
+        assertEquals(List.of(family, compact), rentalSystem.searchVehicles(new FleetQuery().make("toyota"), 10));
+        assertEquals(List.of(family), rentalSystem.searchVehicles(new FleetQuery().make("Toyota").seatsBetween(5, 8), 10));
+        assertEquals(List.of(family, fast), rentalSystem.searchVehicles(new FleetQuery().yearBetween(2018, 2022).seatsBetween(2, 7), 10));
+        assertEquals(List.of(fast), rentalSystem.searchVehicles(new FleetQuery().horsepowerBetween(400, 500), 10));
+        assertEquals(List.of(hauler), rentalSystem.searchVehicles(new FleetQuery().cargoBetween(10, 20), 10));
+        assertEquals(List.of(bike), rentalSystem.searchVehicles(new FleetQuery().sidecar(true), 10));
+        assertTrue(rentalSystem.searchVehicles(new FleetQuery().make("Tesla"), 10).isEmpty());
+        assertEquals(5, rentalSystem.searchVehicles(new FleetQuery(), 10).size());
+
+        assertTrue(rentalSystem.rentVehicle(family, customer, LocalDate.now(), 70.0));
+        assertEquals(List.of(compact), rentalSystem.searchVehicles(
+                new FleetQuery().make("Toyota").status(Vehicle.VehicleStatus.AVAILABLE), 10));
+        // Status-only queries come from the status postings, which follow every change
+        assertEquals(List.of(family), rentalSystem.searchVehicles(new FleetQuery().status(Vehicle.VehicleStatus.RENTED), 10));
+        assertEquals(4, rentalSystem.searchVehicles(new FleetQuery().status(Vehicle.VehicleStatus.AVAILABLE), 10).size());
+        assertTrue(rentalSystem.returnVehicle(family, customer, LocalDate.now(), 0.0));
+        assertTrue(rentalSystem.searchVehicles(new FleetQuery().status(Vehicle.VehicleStatus.RENTED), 10).isEmpty());
+        assertEquals(List.of(family, compact), rentalSystem.searchVehicles(
+                new FleetQuery().make("Toyota").status(Vehicle.VehicleStatus.AVAILABLE), 10));
+        assertThrows(IllegalArgumentException.class, () -> new FleetQuery().yearBetween(2020, 2010));
+    }
+
+    @Test
+    void testPackedVehicleFieldsRoundTrip() {
+        Vehicle car = new Car("toyota", "corolla", 2019, 5);
+        Vehicle sport = new SportCar("Porsche", "911", 2022, 2, 450, true);
+        Vehicle truck = new Truck("Volvo", "Fh", 2016, 18.75);
+        Vehicle bike = new Motorcycle("Ural", "Gear", 2020, true);
+        for (Vehicle v : List.of(car, sport, truck, bike)) {
+            VehicleType type = VehicleType.of(v);
+            Vehicle copy = type.unpackVehicle(v.getMake(), v.getModel(), v.getYear(), VehicleType.packExtra(v));
+            assertEquals(type, VehicleType.of(copy));
+            assertEquals(v.toFileString(), copy.toFileString());
+        }
+        assertThrows(IllegalArgumentException.class, () -> VehicleType.packExtra(new Car("Big", "Bus", 2020, 70000)));
+    }
+
+    @Test
+    void testPlateCodesRoundTripAndSortLikePlates() {
+        assertEquals(0, PlateCode.parse("AAA000"));
+        assertEquals(PlateCode.SPACE - 1, PlateCode.parse("zzz999"));
+        assertEquals(PlateCode.parse("abc123"), PlateCode.parse("ABC123"));
+        assertEquals("ABC123", PlateCode.format(PlateCode.parse("aBc123")));
+        assertTrue(PlateCode.parse("ABC999") < PlateCode.parse("ABD000"));
+        for (String bad : new String[] { null, "", "AB1234", "ABCD12", "ABC12", "ABC1234", "AB 123", "\u00c4BC123" }) {
+            assertEquals(PlateCode.INVALID, PlateCode.parse(bad), String.valueOf(bad));
+        }
+        assertEquals("QRS456", PlateCode.appendTo(new StringBuilder(), PlateCode.parse("QRS456")).toString());
+        assertThrows(IllegalArgumentException.class, () -> PlateCode.format(PlateCode.SPACE));
+
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+        Vehicle car = new Car("Mazda", "Cx5", 2021, 5);
+        car.setLicensePlate("pcd321");
+        assertEquals("PCD321", car.getLicensePlate());
+        assertEquals(PlateCode.parse("PCD321"), car.getPlateCode());
+        rentalSystem.addVehicle(car);
+        assertSame(car, rentalSystem.findVehicleByPlate("Pcd321"));
+        assertSame(car, rentalSystem.findVehicleByPlate(car.getPlateCode()));
+        assertNull(rentalSystem.findVehicleByPlate("PCD32"));
+        assertNull(rentalSystem.findVehicleByPlate((String) null));
+    }
+
+    @Test
+    void testRentalServerHandlesOperations() throws Exception {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+        RentalServer server = new RentalServer(rentalSystem, 0);
+        server.start();
+        try {
+            java.net.http.HttpClient client = java.net.http.HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.getPort();
+            java.util.function.Function<String, java.net.http.HttpResponse<String>> get = path -> {
+                try {
+                    return client.send(java.net.http.HttpRequest.newBuilder(java.net.URI.create(base + path)).build(),
+                            java.net.http.HttpResponse.BodyHandlers.ofString());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            };
+
+            assertEquals(200, get.apply("/vehicles/add?type=car&plate=srv001&make=Kia&model=Ceed&year=2021&seats=5").statusCode());
+            assertEquals(409, get.apply("/vehicles/add?type=car&plate=SRV001&make=Kia&model=Ceed&year=2021&seats=5").statusCode());
+            assertEquals(400, get.apply("/vehicles/add?type=car&plate=BAD&make=Kia&model=Ceed&year=2021&seats=5").statusCode());
+            assertEquals(200, get.apply("/customers/add?id=96&name=Server%20Client").statusCode());
+            // Fields that would break the journal's line format are refused
+            assertEquals(400, get.apply("/customers/add?id=97&name=Mallory%0ARENT,SRV001,7,2026-01-01,0.00").statusCode());
+            assertEquals(400, get.apply("/vehicles/add?type=car&plate=srv003&make=Focus,%20Titanium&model=X&year=2021&seats=5").statusCode());
+            assertNull(rentalSystem.findCustomerById(97));
+            assertEquals(200, get.apply("/rent?plate=SRV001&customer=96&amount=55.5&date=2024-05-01").statusCode());
+            assertEquals(409, get.apply("/rent?plate=SRV001&customer=96&amount=55.5").statusCode());
+            assertEquals(404, get.apply("/rent?plate=SRV002&customer=96&amount=10").statusCode());
+            assertTrue(get.apply("/vehicles?plate=srv001").body().contains("RENTED"));
+            assertEquals(200, get.apply("/return?plate=SRV001&customer=96&amount=0&date=2024-05-02").statusCode());
+            assertTrue(get.apply("/history?plate=SRV001").body().startsWith("2 records"));
+            assertTrue(get.apply("/history?customer=server").body().startsWith("2 records"));
+            assertEquals(400, get.apply("/rent?plate=SRV001&customer=96&days=0").statusCode());
+            assertEquals(400, get.apply("/rent?plate=SRV001&customer=96&days=2000000000").statusCode());
+            assertEquals(404, get.apply("/vehicles/remove?plate=SRV001").statusCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void testMetricsRecordHotPathLatencies() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v * 1000);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000, histogram.getMax());
+        long p99 = histogram.getPercentile(99);
+        assertTrue(p99 >= 99_000_000 && p99 <= 99_000_000 * 1.04, "p99 " + p99);
+        long p50 = histogram.getPercentile(50);
+        assertTrue(p50 >= 50_000_000 && p50 <= 50_000_000 * 1.04, "p50 " + p50);
+        for (long v : new long[] { 0, 31, 32, 33, 1000, 123_456_789, Long.MAX_VALUE }) {
+            int bucket = LatencyHistogram.bucket(v);
+            assertTrue(LatencyHistogram.bucketHigh(bucket) >= v);
+            assertTrue(bucket == 0 || LatencyHistogram.bucketHigh(bucket - 1) < v);
+        }
+
+        // Threads count in their own stripes; the readers add them all up
+        LatencyHistogram shared = new LatencyHistogram();
+        Thread[] recorders = new Thread[8];
+        for (int t = 0; t < recorders.length; t++) {
+            recorders[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    shared.record(500);
+                }
+            });
+            recorders[t].start();
+        }
+        for (Thread recorder : recorders) {
+            recorder.join();
+        }
+        assertEquals(80_000, shared.getCount());
+        assertEquals(500, shared.getPercentile(100));
+        assertEquals(500, shared.getPercentile(1));
+        shared.reset();
+        assertEquals(0, shared.getPercentile(50));
+
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+        RentalMetrics.reset();
+        Vehicle car = new Car("Seat", "Leon", 2020, 5);
+        car.setLicensePlate("MET001");
+        Customer customer = new Customer(97, "Measured");
+        rentalSystem.addVehicle(car);
+        rentalSystem.addCustomer(customer);
+        assertTrue(rentalSystem.rentVehicle(car, customer, LocalDate.now(), 30.0));
+        assertFalse(rentalSystem.rentVehicle(car, customer, LocalDate.now(), 30.0));
+        rentalSystem.findVehicleByPlate("MET001");
+        rentalSystem.findVehicleByPlate("MET002");
+
+        assertEquals(2, RentalMetrics.getLatency(RentalMetrics.Op.RENT).getCount());
+        assertEquals(1, RentalMetrics.getFailures(RentalMetrics.Op.RENT));
+        assertEquals(2, RentalMetrics.getLatency(RentalMetrics.Op.FIND_VEHICLE).getCount());
+        assertEquals(1, RentalMetrics.getFailures(RentalMetrics.Op.FIND_VEHICLE));
+        assertEquals(1, RentalMetrics.getLatency(RentalMetrics.Op.SAVE_RECORD).getCount());
+        assertTrue(RentalMetrics.getLoadPhaseMillis().containsKey("total"));
+        assertTrue(RentalMetrics.toJson().contains("\"op\": \"RENT\", \"count\": 2, \"failures\": 1"));
+    }
+
+    @Test
+    void testHistorySpillsOldRecordsToSegments() throws Exception {
+        java.io.File dir = java.nio.file.Files.createTempDirectory("history").toFile();
+        RentalHistory history = RentalHistory.getInstance();
+        history.resetForTesting();
+        history.configureTiering(dir, 8);
+        try {
+            Vehicle[] cars = new Vehicle[4];
+            for (int i = 0; i < cars.length; i++) {
+                cars[i] = new Car("Opel", "Astra", 2019, 5);
+                cars[i].setLicensePlate("HIS00" + i);
+            }
+            Customer alice = new Customer(201, "Alice Tier");
+            Customer bob = new Customer(202, "Bob Tier");
+            LocalDate day = LocalDate.of(2024, 3, 1);
+            for (int i = 0; i < 40; i++) {
+                history.addRecord(new RentalRecord(cars[i % 4], i % 2 == 0 ? alice : bob, day.plusDays(i), i + 0.25, "RENT"));
+            }
+            history.awaitTiering();
+
+            assertTrue(history.getSegmentCount() > 0);
+            assertTrue(history.getHotRecordCount() <= 8 + 2);
+            assertTrue(dir.listFiles().length == history.getSegmentCount());
+            List<RentalRecord> all = history.getRentalHistory();
+            assertEquals(40, all.size());
+            for (int i = 0; i < 40; i++) {
+                assertEquals(day.plusDays(i), all.get(i).getRecordDate());
+                assertSame(cars[i % 4], all.get(i).getVehicle());
+                assertEquals(i + 0.25, all.get(i).getTotalAmount(), 0.001);
+            }
+            List<RentalRecord> byCar = history.getRentalRecordsByVehicle("HIS001");
+            assertEquals(10, byCar.size());
+            for (int i = 0; i < byCar.size(); i++) {
+                assertEquals(day.plusDays(1 + 4 * i), byCar.get(i).getRecordDate());
+            }
+            assertEquals(20, history.getRentalRecordsByCustomer("alice").size());
+            assertEquals(20, history.getRentalRecordsByCustomer(202).size());
+            assertEquals(40, history.getRentalRecordsByCustomer("tier").size());
+            assertEquals(1125, history.getAggregates().getRevenueCents(day, day.plusDays(4)));
+        } finally {
+            history.resetForTesting();
+            history.configureTiering(new java.io.File(System.getProperty("rental.history.dir", "history")),
+                    Integer.getInteger("rental.history.hotRecords", 1_000_000));
+        }
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    void testHistoryStreamsAndPagesReadSnapshots() throws Exception {
+        java.io.File dir = java.nio.file.Files.createTempDirectory("history").toFile();
+        RentalHistory history = RentalHistory.getInstance();
+        history.resetForTesting();
+        history.configureTiering(dir, 8);
+        try {
+            Vehicle car = new Car("Fiat", "Tipo", 2021, 5);
+            car.setLicensePlate("PAG001");
+            Vehicle van = new Truck("Iveco", "Daily", 2018, 3.5);
+            van.setLicensePlate("PAG002");
+            Customer customer = new Customer(301, "Paged Reader");
+            LocalDate day = LocalDate.of(2024, 6, 1);
+            // Dates run backwards so the date order differs from the insertion order
+            for (int i = 0; i < 30; i++) {
+                history.addRecord(new RentalRecord(i % 3 == 0 ? van : car, customer, day.minusDays(i), i, "RENT"));
+            }
+            history.awaitTiering();
+            assertTrue(history.getSegmentCount() > 0);
+
+            List<RentalRecord> snapshot = history.getRentalHistory();
+            java.util.stream.Stream<RentalRecord> stream = history.streamByVehicle(van.getPlateCode());
+            history.addRecord(new RentalRecord(van, customer, day, 99, "RETURN"));
+            assertEquals(30, snapshot.size());
+            assertEquals(10, stream.count());
+            assertEquals(11, history.streamByVehicle(van.getPlateCode()).count());
+            assertThrows(UnsupportedOperationException.class, () -> snapshot.add(null));
+
+            List<RentalRecord> seen = new ArrayList<>();
+            int cursor = 0;
+            for (List<RentalRecord> page = history.pageByCustomer(301, cursor, 7); !page.isEmpty();
+                    page = history.pageByCustomer(301, cursor, 7)) {
+                assertTrue(page.size() <= 7);
+                seen.addAll(page);
+                cursor += page.size();
+            }
+            assertEquals(31, seen.size());
+            for (int i = 0; i < 30; i++) {
+                assertEquals(day.minusDays(i), seen.get(i).getRecordDate());
+            }
+            assertEquals(0, history.page(100, 5).size());
+            assertThrows(IllegalArgumentException.class, () -> history.page(-1, 5));
+
+            List<RentalRecord> range = history.streamBetween(day.minusDays(9), day.minusDays(5))
+                    .collect(java.util.stream.Collectors.toList());
+            assertEquals(5, range.size());
+            for (int i = 0; i < range.size(); i++) {
+                assertEquals(day.minusDays(9 - i), range.get(i).getRecordDate());
+            }
+            List<RentalRecord> second = history.pageBetween(day.minusDays(9), day.minusDays(5), 2, 2);
+            assertEquals(day.minusDays(7), second.get(0).getRecordDate());
+            assertEquals(day.minusDays(6), second.get(1).getRecordDate());
+        } finally {
+            history.resetForTesting();
+            history.configureTiering(new java.io.File(System.getProperty("rental.history.dir", "history")),
+                    Integer.getInteger("rental.history.hotRecords", 1_000_000));
+        }
+    }
+
+    @Test
+    void testDateIndexAnswersRangesAcrossTiers() throws Exception {
+        java.io.File dir = java.nio.file.Files.createTempDirectory("history").toFile();
+        RentalHistory history = RentalHistory.getInstance();
+        history.resetForTesting();
+        history.configureTiering(dir, 16);
+        try {
+            Vehicle[] cars = new Vehicle[5];
+            for (int i = 0; i < cars.length; i++) {
+                cars[i] = new Car("Skoda", "Fabia", 2020, 5);
+                cars[i].setLicensePlate("DAY00" + i);
+            }
+            Customer[] people = { new Customer(401, "Early Bird"), new Customer(402, "Late Comer") };
+            LocalDate base = LocalDate.of(2026, 10, 1);
+            java.util.Random random = new java.util.Random(7);
+            // Replayed logs arrive out of date order
+            for (int i = 0; i < 200; i++) {
+                history.addRecord(new RentalRecord(cars[random.nextInt(5)], people[random.nextInt(2)],
+                        base.plusDays(random.nextInt(60) - 30), 10, i % 2 == 0 ? "RENT" : "RETURN"));
+            }
+            history.awaitTiering();
+            assertTrue(history.getSegmentCount() > 0);
+
+            LocalDate from = base.minusDays(7);
+            LocalDate to = base;
+            List<RentalRecord> expected = new ArrayList<>();
+            for (RentalRecord r : history.getRentalHistory()) {
+                if (!r.getRecordDate().isBefore(from) && !r.getRecordDate().isAfter(to)) {
+                    expected.add(r);
+                }
+            }
+            expected.sort(java.util.Comparator.comparing(RentalRecord::getRecordDate));
+            List<RentalRecord> actual = history.getRentalRecordsBetween(from, to);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).toString(), actual.get(i).toString());
+            }
+            assertEquals(expected.size(), history.countBetween(from, to));
+
+            java.util.SortedMap<LocalDate, Integer> perDay = history.countByDay(from, to);
+            int total = 0;
+            for (java.util.Map.Entry<LocalDate, Integer> day : perDay.entrySet()) {
+                assertEquals(history.countBetween(day.getKey(), day.getKey()), (long) day.getValue());
+                total += day.getValue();
+            }
+            assertEquals(expected.size(), total);
+
+            long plateHits = expected.stream().filter(r -> r.getVehicle() == cars[2]).count();
+            List<RentalRecord> byPlate = history.streamByVehicleBetween(cars[2].getPlateCode(), from, to)
+                    .collect(java.util.stream.Collectors.toList());
+            assertEquals(plateHits, byPlate.size());
+            for (int i = 1; i < byPlate.size(); i++) {
+                assertFalse(byPlate.get(i).getRecordDate().isBefore(byPlate.get(i - 1).getRecordDate()));
+            }
+            long customerHits = expected.stream().filter(r -> r.getCustomer().getCustomerId() == 402).count();
+            assertEquals(customerHits, history.streamByCustomerBetween(402, from, to).count());
+            assertEquals(0, history.countBetween(to, from));
+        } finally {
+            history.resetForTesting();
+            history.configureTiering(new java.io.File(System.getProperty("rental.history.dir", "history")),
+                    Integer.getInteger("rental.history.hotRecords", 1_000_000));
+        }
+    }
+
+    @Test
+    void testPricingEngineQuotesFromCompiledRates() {
+        PricingEngine pricing = new PricingEngine();
+        pricing.clearSeasons();
+        pricing.setDailyRate(PricingEngine.RateClass.CAR, 5_000);
+        Car car = new Car("Mazda", "3", 2022, 5);
+        LocalDate spring = LocalDate.of(2025, 4, 1);
+        assertEquals(15_000, pricing.quoteRent(car, spring, 3, PricingEngine.CustomerTier.STANDARD));
+        // Seven days earn the 10% weekly discount, gold customers another 10% on top
+        assertEquals(31_500, pricing.quoteRent(car, spring, 7, PricingEngine.CustomerTier.STANDARD));
+        assertEquals(28_350, pricing.quoteRent(car, spring, 7, PricingEngine.CustomerTier.GOLD));
+
+        // A season across the new year applies to exactly the days inside it
+        pricing.addSeason(java.time.MonthDay.of(12, 31), java.time.MonthDay.of(1, 1), 5_000);
+        assertEquals(5_000 + 7_500 + 7_500 + 5_000,
+                pricing.quoteRent(car, LocalDate.of(2024, 12, 30), 4, PricingEngine.CustomerTier.STANDARD));
+
+        // Spans over several years, leap days included, cost the sum of their days
+        pricing.setDurationDiscount(7, 0);
+        pricing.setDurationDiscount(28, 0);
+        LocalDate from = LocalDate.of(2023, 12, 20);
+        long byDay = 0;
+        for (int d = 0; d < 3 * 365 + 30; d++) {
+            byDay += pricing.quoteRent(car, from.plusDays(d), 1, PricingEngine.CustomerTier.STANDARD);
+        }
+        assertEquals(byDay, pricing.quoteRent(car, from, 3 * 365 + 30, PricingEngine.CustomerTier.STANDARD));
+        // and take no longer to price than a day
+        assertTrue(pricing.quoteRent(car, from, Integer.MAX_VALUE, PricingEngine.CustomerTier.STANDARD) > 0);
+        pricing.setDurationDiscount(7, 1_000);
+        pricing.setDurationDiscount(28, 2_500);
+
+        SportCar tame = new SportCar("Mazda", "MX-5", 2021, 2, 180, false);
+        SportCar wild = new SportCar("Porsche", "911", 2023, 2, 640, true);
+        assertEquals(PricingEngine.RateClass.SPORT_CAR, PricingEngine.rateClassOf(tame));
+        assertEquals(PricingEngine.RateClass.SPORT_CAR_HIGH_POWER, PricingEngine.rateClassOf(wild));
+        assertEquals(19_800, pricing.quoteRent(wild, spring, 1, PricingEngine.CustomerTier.STANDARD));
+        assertEquals(PricingEngine.RateClass.TRUCK_HEAVY, PricingEngine.rateClassOf(new Truck("MAN", "TGX", 2019, 30.0)));
+        assertEquals(PricingEngine.RateClass.MOTORCYCLE_SIDECAR, PricingEngine.rateClassOf(new Motorcycle("Ural", "Gear Up", 2020, true)));
+
+        // Updates are picked up by the next quote
+        pricing.setDailyRate(PricingEngine.RateClass.CAR, 6_000);
+        assertEquals(18_000, pricing.quoteRent(car, spring, 3, PricingEngine.CustomerTier.STANDARD));
+        assertEquals(1_500 + 2 * 9_000, pricing.quoteReturn(car, spring, spring.plusDays(2)));
+        assertEquals(1_500, pricing.quoteReturn(car, spring, spring.minusDays(1)));
+
+        Vehicle[] batch = new Vehicle[1000];
+        LocalDate[] starts = new LocalDate[batch.length];
+        int[] days = new int[batch.length];
+        PricingEngine.CustomerTier[] tiers = new PricingEngine.CustomerTier[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = i % 2 == 0 ? car : tame;
+            starts[i] = spring.plusDays(i % 30);
+            days[i] = 1 + i % 10;
+            tiers[i] = PricingEngine.CustomerTier.values()[i % 3];
+        }
+        long[] quotes = new long[batch.length];
+        pricing.quoteRents(batch, starts, days, tiers, quotes);
+        for (int i = 0; i < batch.length; i++) {
+            assertEquals(pricing.quoteRent(batch[i], starts[i], days[i], tiers[i]), quotes[i]);
+        }
+
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+        Vehicle rental = new Car("Honda", "Civic", 2020, 5);
+        rental.setLicensePlate("PRC001");
+        Customer customer = new Customer(501, "Price Taker");
+        rentalSystem.addVehicle(rental);
+        rentalSystem.addCustomer(customer);
+        rentalSystem.getPricing().clearSeasons();
+        assertTrue(rentalSystem.rentVehicle(rental, customer, spring, 2));
+        assertTrue(rentalSystem.returnVehicle(rental, customer, spring.plusDays(3)));
+        List<RentalRecord> records = RentalHistory.getInstance().getRentalRecordsByVehicle(rental.getPlateCode());
+        assertEquals(9_000, records.get(0).getAmountCents());
+        assertEquals(1_500 + 6_750, records.get(1).getAmountCents());
+        assertEquals(82.5, records.get(1).getTotalAmount(), 0.0001);
+        assertThrows(IllegalArgumentException.class,
+                () -> rentalSystem.rentVehicle(rental, customer, spring, RentalSystem.MAX_RENTAL_DAYS + 1));
+
+        // Resetting keeps the injected engine and puts its default tables back
+        PricingEngine engine = rentalSystem.getPricing();
+        LocalDate summer = LocalDate.of(2027, 7, 1);
+        assertEquals(4_500, engine.quoteRent(rental, summer, 1, PricingEngine.CustomerTier.STANDARD));
+        rentalSystem.resetForTesting();
+        assertSame(engine, rentalSystem.getPricing());
+        assertEquals(5_625, engine.quoteRent(rental, summer, 1, PricingEngine.CustomerTier.STANDARD));
+    }
+
+    @Test
+    void testCheckpointRestoresStateAndReplaysTail() throws Exception {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+        LocalDate today = LocalDate.now();
+        Vehicle car = new Car("Toyota", "Corolla", 2019, 5);
+        car.setLicensePlate("SNP001");
+        Vehicle sport = new SportCar("Porsche", "911", 2023, 2, 640, true);
+        sport.setLicensePlate("SNP002");
+        Vehicle truck = new Truck("Volvo", "FH", 2018, 27.5);
+        truck.setLicensePlate("SNP003");
+        Vehicle bike = new Motorcycle("Ural", "Gear Up", 2020, true);
+        bike.setLicensePlate("SNP004");
+        Customer alice = new Customer(601, "Alice Snapshot");
+        Customer bob = new Customer(602, "Bob Snapshot");
+        for (Vehicle vehicle : new Vehicle[] { car, sport, truck, bike }) {
+            rentalSystem.addVehicle(vehicle);
+        }
+        rentalSystem.addCustomer(alice);
+        rentalSystem.addCustomer(bob);
+        assertTrue(rentalSystem.rentVehicle(car, alice, today.minusDays(10), 2));
+        assertTrue(rentalSystem.returnVehicle(car, alice, today.minusDays(8)));
+        // Due back five days ago, so returning today costs late days
+        assertTrue(rentalSystem.rentVehicle(sport, bob, today.minusDays(7), 2));
+        assertNotNull(rentalSystem.reserveVehicle(truck, alice, today, today.plusDays(2)));
+        Reservation later = rentalSystem.reserveVehicle(bike, bob, today.plusDays(5), today.plusDays(6));
+        assertNotNull(later);
+        rentalSystem.checkpoint();
+
+        // Changes after the checkpoint only exist in the data files
+        Vehicle tail = new Car("Kia", "Rio", 2021, 5);
+        tail.setLicensePlate("SNP005");
+        rentalSystem.addVehicle(tail);
+        rentalSystem.addCustomer(new Customer(603, "Carol Tail"));
+        assertTrue(rentalSystem.rentVehicle(tail, bob, today, 3.0));
+        assertTrue(rentalSystem.cancelReservation(later));
+
+        java.util.List<String> vehiclesBefore = new java.util.ArrayList<>();
+        for (String plate : new String[] { "SNP001", "SNP002", "SNP003", "SNP004", "SNP005" }) {
+            Vehicle vehicle = rentalSystem.findVehicleByPlate(plate);
+            vehiclesBefore.add(vehicle.toFileString() + "/" + vehicle.getStatus());
+        }
+        String historyBefore = RentalHistory.getInstance().getRentalHistory().toString();
+        long lateFee = rentalSystem.getPricing().quoteReturn(sport, today.minusDays(5), today);
+
+        rentalSystem.restartForTesting();
+        assertTrue(RentalMetrics.getLoadPhaseMillis().containsKey("snapshot"));
+        java.util.List<String> vehiclesAfter = new java.util.ArrayList<>();
+        for (String plate : new String[] { "SNP001", "SNP002", "SNP003", "SNP004", "SNP005" }) {
+            Vehicle vehicle = rentalSystem.findVehicleByPlate(plate);
+            vehiclesAfter.add(vehicle.toFileString() + "/" + vehicle.getStatus());
+        }
+        assertEquals(vehiclesBefore, vehiclesAfter);
+        assertEquals(historyBefore, RentalHistory.getInstance().getRentalHistory().toString());
+        assertEquals("Carol Tail", rentalSystem.findCustomerById(603).getCustomerName());
+        assertEquals(Vehicle.VehicleStatus.RESERVED, rentalSystem.findVehicleByPlate("SNP003").getStatus());
+        assertEquals(1, rentalSystem.getReservations(rentalSystem.findVehicleByPlate("SNP003")).size());
+        assertEquals(0, rentalSystem.getReservations(rentalSystem.findVehicleByPlate("SNP004")).size());
+        assertEquals(2, rentalSystem.countVehicles(Vehicle.VehicleStatus.AVAILABLE));
+
+        // The due date came back with the snapshot
+        Vehicle restoredSport = rentalSystem.findVehicleByPlate("SNP002");
+        assertTrue(rentalSystem.returnVehicle(restoredSport, rentalSystem.findCustomerById(602), today));
+        java.util.List<RentalRecord> sportRecords = RentalHistory.getInstance().getRentalRecordsByVehicle(restoredSport.getPlateCode());
+        assertEquals(lateFee, sportRecords.get(sportRecords.size() - 1).getAmountCents());
+
+        // A snapshot that cannot be read falls back to replaying the data files
+        java.nio.file.Files.write(new java.io.File("rental.snapshot").toPath(), new byte[] { 1, 2, 3 });
+        rentalSystem.restartForTesting();
+        assertEquals(5, rentalSystem.countVehicles(Vehicle.VehicleStatus.AVAILABLE)
+                + rentalSystem.countVehicles(Vehicle.VehicleStatus.RENTED)
+                + rentalSystem.countVehicles(Vehicle.VehicleStatus.RESERVED));
+        assertEquals(Vehicle.VehicleStatus.AVAILABLE, rentalSystem.findVehicleByPlate("SNP002").getStatus());
+        rentalSystem.resetForTesting();
+    }
+
+    @Test
+    void testShardedSystemRoutesByPlateAndMergesQueries() throws Exception {
+        java.io.File root = java.nio.file.Files.createTempDirectory("rental-shards").toFile();
+        ShardedRentalSystem sharded = new ShardedRentalSystem(root, 4);
+        LocalDate day = LocalDate.of(2025, 3, 3);
+        Customer customer = new Customer(701, "Shard Walker");
+        assertTrue(sharded.addCustomer(customer));
+        assertFalse(sharded.addCustomer(customer));
+        java.util.List<Vehicle> fleet = new java.util.ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Vehicle vehicle = new Car("Toyota", "Yaris", 2020, 5);
+            vehicle.setLicensePlate(String.format("SHD%03d", i));
+            assertTrue(sharded.addVehicle(vehicle));
+            fleet.add(vehicle);
+        }
+        int[] perShard = new int[4];
+        for (Vehicle vehicle : fleet) {
+            int shard = sharded.shardIndex(vehicle.getPlateCode());
+            perShard[shard]++;
+            assertSame(vehicle, sharded.getShard(shard).findVehicleByPlate(vehicle.getLicensePlate()));
+            assertNull(sharded.getShard((shard + 1) % 4).findVehicleByPlate(vehicle.getLicensePlate()));
+            assertEquals(customer.getCustomerId(), sharded.getShard(shard).findCustomerById(701).getCustomerId());
+        }
+        for (int count : perShard) {
+            assertTrue(count > 0);
+        }
+
+        for (int i = 0; i < 12; i++) {
+            assertTrue(sharded.rentVehicle(fleet.get(i), customer, day.plusDays(i), 1));
+        }
+        assertEquals(12, sharded.countVehicles(Vehicle.VehicleStatus.RENTED));
+        assertEquals(40, sharded.countVehicles(VehicleType.CAR));
+        assertEquals(0.3, sharded.getUtilization(), 0.0001);
+        java.util.List<RentalRecord> history = sharded.getRentalRecordsByCustomer(701);
+        assertEquals(12, history.size());
+        for (int i = 0; i < history.size(); i++) {
+            assertEquals(day.plusDays(i), history.get(i).getRecordDate());
+        }
+        assertEquals(5, sharded.countBetween(day.plusDays(2), day.plusDays(6)));
+        // Tiers count rentals made in every shard
+        sharded.getPricing().setTier(PricingEngine.CustomerTier.SILVER, 10, 500);
+        assertEquals(PricingEngine.CustomerTier.SILVER, sharded.tierOf(customer));
+        // Restarting one shard leaves the shared rates alone
+        sharded.getPricing().setReturnFee(PricingEngine.RateClass.CAR, 1_234);
+        sharded.getShard(0).restartForTesting();
+        assertEquals(1_234, sharded.getPricing().quoteReturn(fleet.get(0), day, day));
+
+        java.util.List<Vehicle> page = sharded.getVehiclesAfter(Vehicle.VehicleStatus.AVAILABLE, null, 5);
+        assertEquals(java.util.List.of("SHD012", "SHD013", "SHD014", "SHD015", "SHD016"),
+                page.stream().map(Vehicle::getLicensePlate).collect(java.util.stream.Collectors.toList()));
+
+        // Each shard reloads its own directory
+        sharded.checkpoint();
+        sharded.shutdown();
+        ShardedRentalSystem reopened = new ShardedRentalSystem(root, 4);
+        assertEquals(12, reopened.countVehicles(Vehicle.VehicleStatus.RENTED));
+        assertEquals(12, reopened.getRentalRecordsByCustomer(701).size());
+        assertEquals(Vehicle.VehicleStatus.RENTED, reopened.findVehicleByPlate("SHD003").getStatus());
+        reopened.shutdown();
+        assertThrows(IllegalStateException.class, () -> new ShardedRentalSystem(root, 3));
+    }
+
+    @Test
+    void testJournalReplayRebuildsProjectionsAndBackfills() throws Exception {
+        java.io.File dir = java.nio.file.Files.createTempDirectory("journal").toFile();
+        // Data files from before the journal are imported once
+        java.nio.file.Files.write(new java.io.File(dir, "vehicles.txt").toPath(),
+                List.of("Car,JRN001,Seat,Ibiza,2021,5", "Car,JRN002,Seat,Leon,2022,5"));
+        java.nio.file.Files.write(new java.io.File(dir, "customers.txt").toPath(), List.of("41,Old Hand"));
+        java.nio.file.Files.write(new java.io.File(dir, "rental_records.txt").toPath(), List.of("RENT,JRN001,41,2026-09-01,80.0"));
+        RentalSystem system = new RentalSystem(dir);
+        Vehicle first = system.findVehicleByPlate("JRN001");
+        Vehicle second = system.findVehicleByPlate("JRN002");
+        Customer old = system.findCustomerById(41);
+        assertEquals(Vehicle.VehicleStatus.RENTED, first.getStatus());
+        assertEquals(1, system.getHistory().getRentalRecordsByCustomer(41).size());
+        assertTrue(new java.io.File(dir, "journal.txt").length() > 0);
+
+        Customer fresh = new Customer(42, "New Face");
+        assertTrue(system.addCustomer(fresh));
+        assertTrue(system.returnVehicle(first, old, LocalDate.of(2026, 9, 3), 20.0));
+        assertTrue(system.rentVehicle(second, fresh, LocalDate.of(2026, 10, 20), 3));
+        assertFalse(system.rentVehicle(first, new Customer(99, "Stranger"), LocalDate.of(2026, 10, 20), 1.0));
+        assertTrue(system.setVehicleStatus(first, Vehicle.VehicleStatus.MAINTENANCE));
+        assertFalse(system.setVehicleStatus(second, Vehicle.VehicleStatus.MAINTENANCE));
+        assertThrows(IllegalArgumentException.class, () -> system.setVehicleStatus(first, Vehicle.VehicleStatus.RENTED));
+
+        // A new read model is backfilled from the journal, then kept up to date
+        long[] revenue = { 0 };
+        System.setProperty("rental.loadThreads", "2");
+        try {
+            system.addProjection(batch -> {
+                for (JournalEvent event : batch) {
+                    if (event instanceof JournalEvent.Rented rented) {
+                        revenue[0] += rented.amountCents();
+                    } else if (event instanceof JournalEvent.Returned returned) {
+                        revenue[0] += returned.amountCents();
+                    }
+                }
+            });
+        } finally {
+            System.clearProperty("rental.loadThreads");
+        }
+        assertEquals(system.getAggregates().getRevenueCents(), revenue[0]);
+        assertTrue(system.returnVehicle(second, fresh, LocalDate.of(2026, 10, 23), 30.0));
+        assertEquals(system.getAggregates().getRevenueCents(), revenue[0]);
+        assertTrue(system.rentVehicle(second, fresh, LocalDate.of(2026, 10, 24), 2));
+        long revenueBefore = system.getAggregates().getRevenueCents();
+        system.shutdown();
+
+        // Replaying the journal rebuilds the same state, due dates included
+        RentalSystem reopened = new RentalSystem(dir);
+        Vehicle reloaded = reopened.findVehicleByPlate("JRN002");
+        assertEquals(Vehicle.VehicleStatus.MAINTENANCE, reopened.findVehicleByPlate("JRN001").getStatus());
+        assertEquals(Vehicle.VehicleStatus.RENTED, reloaded.getStatus());
+        assertEquals(revenueBefore, reopened.getAggregates().getRevenueCents());
+        assertEquals(3, reopened.getHistory().getRentalRecordsByVehicle(reloaded.getPlateCode()).size());
+        assertEquals(3, reopened.getHistory().getRentalRecordsByCustomer(42).size());
+        assertTrue(reopened.returnVehicle(reloaded, reopened.findCustomerById(42), LocalDate.of(2026, 10, 28)));
+        java.util.List<RentalRecord> records = reopened.getHistory().getRentalRecordsByVehicle(reloaded.getPlateCode());
+        assertEquals(reopened.getPricing().quoteReturn(reloaded, LocalDate.of(2026, 10, 26), LocalDate.of(2026, 10, 28)),
+                records.get(records.size() - 1).getAmountCents());
+        reopened.shutdown();
+    }
+
+    @Test
+    void testCustomerLookupMatchesExactId() {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+        Customer seven = new Customer(7, "Seven");
+        Customer negative = new Customer(-12, "Negative");
+        rentalSystem.addCustomer(seven);
+        rentalSystem.addCustomer(negative);
+
+        assertSame(seven, rentalSystem.findCustomerById("7"));
+        assertSame(negative, rentalSystem.findCustomerById("-12"));
+        assertNull(rentalSystem.findCustomerById("007"));
+        assertNull(rentalSystem.findCustomerById(" 7"));
+        assertNull(rentalSystem.findCustomerById("+7"));
+        assertNull(rentalSystem.findCustomerById("-012"));
+        assertNull(rentalSystem.findCustomerById("-"));
+        assertNull(rentalSystem.findCustomerById("7a"));
+        assertNull(rentalSystem.findCustomerById("99999999999"));
+    }
+
+    @Test
+    void testReservedStatusFollowsTheCalendar() {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+        java.time.ZoneId zone = java.time.ZoneId.systemDefault();
+        LocalDate day = LocalDate.of(2026, 3, 10);
+        rentalSystem.setClockForTesting(java.time.Clock.fixed(day.atTime(12, 0).atZone(zone).toInstant(), zone));
+
+        Vehicle car = new Car("Kia", "Ceed", 2022, 5);
+        car.setLicensePlate("CAL001");
+        Vehicle van = new Car("Kia", "Carnival", 2022, 7);
+        van.setLicensePlate("CAL002");
+        Customer holder = new Customer(91, "No Show");
+        Customer walkIn = new Customer(92, "Walk In");
+        rentalSystem.addVehicle(car);
+        rentalSystem.addVehicle(van);
+        rentalSystem.addCustomer(holder);
+        rentalSystem.addCustomer(walkIn);
+
+        // A booking in the past does not hold the vehicle
+        assertNotNull(rentalSystem.reserveVehicle(car, holder, day.minusDays(5), day.minusDays(2)));
+        assertEquals(Vehicle.VehicleStatus.AVAILABLE, car.getStatus());
+        assertTrue(rentalSystem.rentVehicle(car, walkIn, day, 30.0));
+        assertTrue(rentalSystem.returnVehicle(car, walkIn, day, 0.0));
+
+        // A booking for today that is never picked up stops blocking the next day
+        assertNotNull(rentalSystem.reserveVehicle(car, holder, day.minusDays(1), day));
+        assertEquals(Vehicle.VehicleStatus.RESERVED, car.getStatus());
+        assertFalse(rentalSystem.rentVehicle(car, walkIn, day, 30.0));
+        // A future booking marks its vehicle once its first day comes
+        assertNotNull(rentalSystem.reserveVehicle(van, holder, day.plusDays(1), day.plusDays(2)));
+        assertEquals(Vehicle.VehicleStatus.AVAILABLE, van.getStatus());
+
+        rentalSystem.setClockForTesting(java.time.Clock.fixed(day.plusDays(1).atTime(9, 0).atZone(zone).toInstant(), zone));
+        assertEquals(1, rentalSystem.countVehicles(Vehicle.VehicleStatus.RESERVED));
+        assertEquals(Vehicle.VehicleStatus.AVAILABLE, car.getStatus());
+        assertEquals(Vehicle.VehicleStatus.RESERVED, van.getStatus());
+        assertTrue(rentalSystem.rentVehicle(car, walkIn, day.plusDays(1), 30.0));
+        assertFalse(rentalSystem.rentVehicle(van, walkIn, day.plusDays(1), 30.0));
+        assertTrue(rentalSystem.rentVehicle(van, holder, day.plusDays(1), 30.0));
+        rentalSystem.resetForTesting();
+    }
+
+    @Test
+    void testRentedVehiclesCanBeBookedFromTheirDueDate() {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+        LocalDate day = LocalDate.now().plusDays(30);
+        Vehicle priced = new Car("Mazda", "Cx5", 2023, 5);
+        priced.setLicensePlate("DUE001");
+        Vehicle byHand = new Car("Mazda", "Mx5", 2023, 2);
+        byHand.setLicensePlate("DUE002");
+        Customer renter = new Customer(93, "Renter");
+        Customer planner = new Customer(94, "Planner");
+        rentalSystem.addVehicle(priced);
+        rentalSystem.addVehicle(byHand);
+        rentalSystem.addCustomer(renter);
+        rentalSystem.addCustomer(planner);
+        assertTrue(rentalSystem.rentVehicle(priced, renter, day, 4));
+        assertTrue(rentalSystem.rentVehicle(byHand, renter, day, 50.0));
+
+        // Due back on day + 4: free from then on, not before; no due date, never free
+        assertEquals(List.of(), rentalSystem.findFreeVehicles(day.plusDays(2), day.plusDays(5)));
+        assertNull(rentalSystem.reserveVehicle(priced, planner, day.plusDays(2), day.plusDays(5)));
+        assertEquals(List.of(priced), rentalSystem.findFreeVehicles(day.plusDays(4), day.plusDays(6)));
+        assertNotNull(rentalSystem.reserveVehicle(priced, planner, day.plusDays(4), day.plusDays(6)));
+        assertNull(rentalSystem.reserveVehicle(byHand, planner, day.plusDays(40), day.plusDays(41)));
+        assertEquals(List.of(), rentalSystem.findFreeVehicles(day.plusDays(4), day.plusDays(6)));
+
+        assertTrue(rentalSystem.returnVehicle(byHand, renter, day.plusDays(1), 0.0));
+        assertEquals(List.of(byHand, priced), rentalSystem.findFreeVehicles(day.plusDays(40), day.plusDays(41)));
+    }
+
+    @Test
+    void testPricedRentalsDoNotOverlapOtherBookings() {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+        LocalDate day = LocalDate.now().plusDays(60);
+        Vehicle car = new Car("Skoda", "Octavia", 2024, 5);
+        car.setLicensePlate("OVL001");
+        Customer booker = new Customer(95, "Booker");
+        Customer renter = new Customer(96, "Renter");
+        rentalSystem.addVehicle(car);
+        rentalSystem.addCustomer(booker);
+        rentalSystem.addCustomer(renter);
+        assertNotNull(rentalSystem.reserveVehicle(car, booker, day.plusDays(1), day.plusDays(2)));
+
+        // Seven days from day would run into the booking that starts tomorrow
+        assertFalse(rentalSystem.rentVehicle(car, renter, day, 7));
+        assertEquals(Vehicle.VehicleStatus.AVAILABLE, car.getStatus());
+        // Due back the day the booking starts is fine, and so is the holder running into it
+        assertTrue(rentalSystem.rentVehicle(car, renter, day, 1));
+        assertTrue(rentalSystem.returnVehicle(car, renter, day.plusDays(1), 0.0));
+        assertFalse(rentalSystem.rentVehicle(car, renter, day.minusDays(3), 5));
+        assertTrue(rentalSystem.rentVehicle(car, booker, day.minusDays(3), 5));
+    }
+
+    @Test
+    void testFailedJournalAppendChangesNothing() throws Exception {
+        java.io.File dir = java.nio.file.Files.createTempDirectory("journal-fail").toFile();
+        RentalSystem system = new RentalSystem(dir);
+        Vehicle car = new Car("Fiat", "Panda", 2021, 4);
+        car.setLicensePlate("FAL001");
+        Customer customer = new Customer(88, "Unlucky");
+        assertTrue(system.addVehicle(car));
+        assertTrue(system.addCustomer(customer));
+        system.shutdown();
+
+        // A directory where the journal should be makes the next append fail
+        java.io.File journal = new java.io.File(dir, "journal.txt");
+        java.io.File moved = new java.io.File(dir, "journal.moved");
+        assertTrue(journal.renameTo(moved));
+        assertTrue(journal.mkdir());
+        assertFalse(system.rentVehicle(car, customer, LocalDate.now(), 50.0));
+        assertEquals(Vehicle.VehicleStatus.AVAILABLE, car.getStatus());
+        assertTrue(system.getHistory().getRentalRecordsByVehicle(car.getPlateCode()).isEmpty());
+        assertNull(system.reserveVehicle(car, customer, LocalDate.now().plusDays(1), LocalDate.now().plusDays(2)));
+        Vehicle other = new Car("Fiat", "Tipo", 2022, 5);
+        other.setLicensePlate("FAL002");
+        assertFalse(system.addVehicle(other));
+        assertNull(system.findVehicleByPlate("FAL002"));
+        ImportReport report = system.addVehicles(List.of(other));
+        assertEquals(0, report.getAccepted());
+        assertEquals(ImportReport.Reason.NOT_SAVED, report.getRejection(1).getReason());
+        assertFalse(system.addCustomer(new Customer(89, "Also Unlucky")));
+        assertNull(system.findCustomerById(89));
+
+        // With the journal back, the plate and id that failed are free again
+        assertTrue(journal.delete());
+        assertTrue(moved.renameTo(journal));
+        assertTrue(system.addVehicle(other));
+        assertTrue(system.addCustomer(new Customer(89, "Lucky")));
+        assertTrue(system.rentVehicle(car, customer, LocalDate.now(), 50.0));
+        system.shutdown();
+        RentalSystem reopened = new RentalSystem(dir);
+        assertEquals(Vehicle.VehicleStatus.RENTED, reopened.findVehicleByPlate("FAL001").getStatus());
+        assertEquals(1, reopened.getHistory().getRentalRecordsByVehicle(car.getPlateCode()).size());
+        assertNotNull(reopened.findVehicleByPlate("FAL002"));
+        reopened.shutdown();
+    }
+
+    @Test
+    void testVehicleAddedEventsCarryValues() {
+        Vehicle truck = new Truck("Volvo", "Fh", 2016, 18.75);
+        truck.setLicensePlate("EVA001");
+        JournalEvent.VehicleAdded added = JournalEvent.VehicleAdded.of(truck);
+        String line = added.toJournalLine();
+        // Later changes to the vehicle do not reach the event
+        truck.setLicensePlate("EVA002");
+        truck.setStatus(Vehicle.VehicleStatus.MAINTENANCE);
+        assertEquals(line, added.toJournalLine());
+        Vehicle built = added.toVehicle();
+        assertNotSame(truck, built);
+        assertEquals("EVA001", built.getLicensePlate());
+        assertEquals(Vehicle.VehicleStatus.AVAILABLE, built.getStatus());
+        assertEquals(added, JournalEvent.VehicleAdded.of(built));
+
+        // A live add still indexes the caller's own vehicle
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+        assertTrue(rentalSystem.addVehicle(truck));
+        assertSame(truck, rentalSystem.findVehicleByPlate("EVA002"));
+        Vehicle bus = new Car("Big", "Bus", 2020, 70000);
+        bus.setLicensePlate("EVA003");
+        assertThrows(IllegalArgumentException.class, () -> rentalSystem.addVehicle(bus));
+        assertNull(rentalSystem.findVehicleByPlate("EVA003"));
+    }
+
+    @Test
+    void testOnlyTheRegisteredVehicleCanBeRented() {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+        Vehicle car = new Car("Opel", "Astra", 2020, 5);
+        car.setLicensePlate("REG001");
+        Customer customer = new Customer(120, "Registered");
+        rentalSystem.addVehicle(car);
+        rentalSystem.addCustomer(customer);
+        LocalDate today = LocalDate.now();
+
+        // A vehicle that was never added cannot be rented or booked
+        Vehicle stranger = new Car("Opel", "Corsa", 2021, 5);
+        stranger.setLicensePlate("REG002");
+        assertFalse(rentalSystem.rentVehicle(stranger, customer, today, 40.0));
+        assertFalse(rentalSystem.rentVehicle(stranger, customer, today, 2));
+        assertNull(rentalSystem.reserveVehicle(stranger, customer, today.plusDays(1), today.plusDays(2)));
+        assertTrue(rentalSystem.getHistory().getRentalRecordsByVehicle(stranger.getPlateCode()).isEmpty());
+
+        // Nor can a second object with a registered plate, even while the fleet's one is free
+        Vehicle copy = new Car("Opel", "Astra", 2020, 5);
+        copy.setLicensePlate("REG001");
+        assertFalse(rentalSystem.rentVehicle(copy, customer, today, 40.0));
+        assertNull(rentalSystem.reserveVehicle(copy, customer, today.plusDays(1), today.plusDays(2)));
+        assertTrue(rentalSystem.rentVehicle(car, customer, today, 40.0));
+        copy.setStatus(Vehicle.VehicleStatus.RENTED);
+        assertFalse(rentalSystem.returnVehicle(copy, customer, today, 5.0));
+        assertTrue(rentalSystem.returnVehicle(car, customer, today, 5.0));
+        assertEquals(2, rentalSystem.getHistory().getRentalRecordsByVehicle(car.getPlateCode()).size());
+        assertEquals(0, rentalSystem.countVehicles(Vehicle.VehicleStatus.RENTED));
+    }
+
+    @Test
+    void testJournalFieldsCannotBreakTheLineFormat() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> new Customer(1, "Mallory\nRENT,ZZZ111,7,2026-01-01,0.00"));
+        assertThrows(IllegalArgumentException.class, () -> new Customer(1, "Carriage\rReturn"));
+        assertThrows(IllegalArgumentException.class, () -> new Car("Focus, Titanium", "Estate", 2020, 5));
+        assertThrows(IllegalArgumentException.class, () -> new Truck("Volvo", "Fh\n16", 2020, 20.0));
+
+        // Events hold values, and a name with a comma survives a replay
+        java.io.File dir = java.nio.file.Files.createTempDirectory("journal-fields").toFile();
+        RentalSystem system = new RentalSystem(dir);
+        Customer customer = new Customer(5, "Smith, Jane");
+        JournalEvent.CustomerAdded added = JournalEvent.CustomerAdded.of(customer);
+        assertEquals(new JournalEvent.CustomerAdded(5, "Smith, Jane"), added);
+        assertTrue(system.addCustomer(customer));
+        assertSame(customer, system.findCustomerById(5));
+        system.shutdown();
+        RentalSystem reopened = new RentalSystem(dir);
+        assertEquals("Smith, Jane", reopened.findCustomerById(5).getCustomerName());
+        reopened.shutdown();
+    }
+
+    @Test
+    void testFleetSharesMakeAndModelStrings() {
+        RentalSystem rentalSystem = RentalSystem.getInstance();
+        rentalSystem.resetForTesting();
+        Vehicle first = new Car("toyota", "corolla", 2019, 5);
+        first.setLicensePlate("NAM001");
+        Vehicle second = new Car("TOYOTA", "Corolla", 2020, 5);
+        second.setLicensePlate("NAM002");
+        // Building a vehicle shares nothing; the fleet does it when the vehicle is added
+        assertNotSame(first.getMake(), second.getMake());
+        rentalSystem.addVehicle(first);
+        rentalSystem.addVehicle(second);
+        assertSame(first.getMake(), second.getMake());
+        assertSame(first.getModel(), second.getModel());
+        assertEquals("Toyota", second.getMake());
+    }
+
+    @Test
+    void testStorageConverterRoundTripsTheJournal() throws Exception {
+        java.io.File dir = java.nio.file.Files.createTempDirectory("convert").toFile();
+        java.io.File live = new java.io.File(dir, "live");
+        RentalSystem system = new RentalSystem(live);
+        Car car = new Car("Skoda", "Octavia", 2021, 5);
+        car.setLicensePlate("CNV001");
+        Truck truck = new Truck("Man", "Tgx", 2019, 20.0);
+        truck.setLicensePlate("CNV002");
+        Customer customer = new Customer(71, "Smith, Jane");
+        system.addVehicle(car);
+        system.addVehicle(truck);
+        system.addCustomer(customer);
+        assertTrue(system.rentVehicle(car, customer, LocalDate.of(2026, 10, 1), 80.25));
+        assertTrue(system.setVehicleStatus(truck, Vehicle.VehicleStatus.MAINTENANCE));
+        system.shutdown();
+
+        java.io.File binary = new java.io.File(dir, "rental.dat");
+        java.io.File restored = new java.io.File(dir, "restored");
+        RentalData data = StorageConverter.convert(StorageConverter.codec("journal"), live,
+                StorageConverter.codec("binary"), binary);
+        assertEquals(2, data.getVehicles().size());
+        assertEquals(1, data.getRecords().size());
+        StorageConverter.convert(StorageConverter.codec("binary"), binary, StorageConverter.codec("journal"), restored);
+
+        RentalSystem reopened = new RentalSystem(restored);
+        try {
+            assertEquals(Vehicle.VehicleStatus.RENTED, reopened.findVehicleByPlate("CNV001").getStatus());
+            assertEquals(Vehicle.VehicleStatus.MAINTENANCE, reopened.findVehicleByPlate("CNV002").getStatus());
+            assertEquals("Smith, Jane", reopened.findCustomerById(71).getCustomerName());
+            assertEquals(1, reopened.getHistory().getRentalHistory().size());
+            assertEquals(8025, reopened.getHistory().getRentalHistory().get(0).getAmountCents());
+        } finally {
+            reopened.shutdown();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Keeps one plate-ordered set of vehicles per status, moved on every status change,
+// so status counts are O(1) and listings only touch the vehicles they return.
+public class VehicleStatusIndex implements Vehicle.StatusListener {
+    private final Vehicle.VehicleStatus[] statuses = Vehicle.VehicleStatus.values();
+    private final List<ConcurrentSkipListMap<Integer, Vehicle>> byStatus = new ArrayList<>();
+    private final AtomicInteger[] counts = new AtomicInteger[statuses.length];
+    // A vehicle has one status listener, so other indexes that follow statuses hang off this one
+    private final Vehicle.StatusListener follower;
+
+    public VehicleStatusIndex() {
+        this(null);
+    }
+
+    public VehicleStatusIndex(Vehicle.StatusListener follower) {
+        this.follower = follower;
+        for (int i = 0; i < statuses.length; i++) {
+            byStatus.add(new ConcurrentSkipListMap<>());
+            counts[i] = new AtomicInteger();
+        }
+    }
+
+    // Registers the vehicle under its current status and follows its changes from now on
+    public void add(Vehicle vehicle) {
+        synchronized (vehicle) {
+            vehicle.setStatusListener(this);
+            Vehicle.VehicleStatus status = vehicle.getStatus();
+            if (byStatus.get(status.ordinal()).put(vehicle.getPlateCode(), vehicle) == null) {
+                counts[status.ordinal()].incrementAndGet();
+            }
+        }
+    }
+
+    // Called by Vehicle.setStatus while it holds the vehicle's lock
+    @Override
+    public void statusChanged(Vehicle vehicle, Vehicle.VehicleStatus from, Vehicle.VehicleStatus to) {
+        if (byStatus.get(from.ordinal()).remove(vehicle.getPlateCode()) != null) {
+            counts[from.ordinal()].decrementAndGet();
+        }
+        if (byStatus.get(to.ordinal()).put(vehicle.getPlateCode(), vehicle) == null) {
+            counts[to.ordinal()].incrementAndGet();
+        }
+        if (follower != null) {
+            follower.statusChanged(vehicle, from, to);
+        }
+    }
+
+    public int count(Vehicle.VehicleStatus status) {
+        return counts[status.ordinal()].get();
+    }
+
+    public Iterable<Vehicle> vehicles(Vehicle.VehicleStatus status) {
+        return byStatus.get(status.ordinal()).values();
+    }
+
+    // Offset paging; costs O(offset + limit)
+    public List<Vehicle> page(Vehicle.VehicleStatus status, int offset, int limit) {
+        List<Vehicle> page = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<Vehicle> it = byStatus.get(status.ordinal()).values().iterator();
+        for (int skipped = 0; skipped < offset && it.hasNext(); skipped++) {
+            it.next();
+        }
+        while (page.size() < limit && it.hasNext()) {
+            page.add(it.next());
+        }
+        return page;
+    }
+
+    // Cursor paging: the vehicles whose plate sorts after afterPlate (null for the first page).
+    // Costs O(log n + limit) no matter how deep the page is.
+    public List<Vehicle> pageAfter(Vehicle.VehicleStatus status, String afterPlate, int limit) {
+        int after = -1;
+        if (afterPlate != null) {
+            after = PlateCode.parse(afterPlate);
+            if (after == PlateCode.INVALID) {
+                throw new IllegalArgumentException("Invalid page cursor " + afterPlate);
+            }
+        }
+        return pageAfter(status, after, limit);
+    }
+
+    // Plate codes sort like the plates, so the cursor can be a code; -1 for the first page
+    public List<Vehicle> pageAfter(Vehicle.VehicleStatus status, int afterPlateCode, int limit) {
+        ConcurrentSkipListMap<Integer, Vehicle> map = byStatus.get(status.ordinal());
+        Iterable<Vehicle> tail = afterPlateCode < 0 ? map.values() : map.tailMap(afterPlateCode, false).values();
+        List<Vehicle> page = new ArrayList<>(Math.min(limit, 1024));
+        for (Vehicle vehicle : tail) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(vehicle);
+        }
+        return page;
+    }
+
+    public void clear() {
+        for (int i = 0; i < statuses.length; i++) {
+            byStatus.get(i).clear();
+            counts[i].set(0);
+        }
+    }
+}
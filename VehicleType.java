@@ -0,0 +1,69 @@
+// The concrete vehicle classes, with the tag each one uses in the data files
+public enum VehicleType {
+    CAR("Car", "Car"),
+    SPORT_CAR("SportCar", "Sport Car"),
+    TRUCK("Truck", "Truck"),
+    MOTORCYCLE("Motorcycle", "Motorcycle");
+
+    private final String fileTag;
+    private final String displayName;
+
+    VehicleType(String fileTag, String displayName) {
+        this.fileTag = fileTag;
+        this.displayName = displayName;
+    }
+
+    public String getFileTag() {
+        return fileTag;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public static VehicleType of(Vehicle vehicle) {
+        if (vehicle instanceof SportCar) return SPORT_CAR;
+        if (vehicle instanceof Car) return CAR;
+        if (vehicle instanceof Truck) return TRUCK;
+        if (vehicle instanceof Motorcycle) return MOTORCYCLE;
+        throw new IllegalArgumentException("Unknown vehicle class: " + vehicle.getClass().getName());
+    }
+
+    // The class-specific fields in one long, as RentalSnapshot and the journal store them
+    public static long packExtra(Vehicle vehicle) {
+        switch (of(vehicle)) {
+            case CAR:
+                return seats(((Car) vehicle).getNumSeats());
+            case SPORT_CAR:
+                SportCar sportCar = (SportCar) vehicle;
+                return seats(sportCar.getNumSeats()) | (sportCar.getHorsepower() & 0xFFFFFFFFL) << 16
+                        | (sportCar.hasTurbo() ? 1L << 48 : 0);
+            case TRUCK:
+                return Double.doubleToLongBits(((Truck) vehicle).getCargoCapacity());
+            default:
+                return ((Motorcycle) vehicle).hasSidecar() ? 1 : 0;
+        }
+    }
+
+    // A new vehicle of this class from its shared fields and packExtra's long
+    public Vehicle unpackVehicle(String make, String model, int year, long extra) {
+        switch (this) {
+            case CAR:
+                return new Car(make, model, year, (int) (extra & 0xFFFF));
+            case SPORT_CAR:
+                return new SportCar(make, model, year, (int) (extra & 0xFFFF), (int) (extra >>> 16 & 0xFFFFFFFFL),
+                        (extra >>> 48 & 1) == 1);
+            case TRUCK:
+                return new Truck(make, model, year, Double.longBitsToDouble(extra));
+            default:
+                return new Motorcycle(make, model, year, extra == 1);
+        }
+    }
+
+    private static long seats(int seats) {
+        if (seats < 0 || seats > 0xFFFF) {
+            throw new IllegalArgumentException("Seat count " + seats + " does not fit in 16 bits");
+        }
+        return seats;
+    }
+}
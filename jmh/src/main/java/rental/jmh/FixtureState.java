@@ -0,0 +1,58 @@
+package rental.jmh;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Function;
+import java.util.function.LongUnaryOperator;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.ThreadParams;
+
+// A RentalSystem with fleetSize vehicles, fleetSize / 2 customers and historySize rental
+// records, built once per trial. The defaults keep a full run short; sizes from 1k to 10M
+// are set on the command line:
+//   java -jar jmh/target/benchmarks.jar -p fleetSize=1000,10000000 -p historySize=10000000 -rf json -rff results.json
+// The application classes are in the default package, which code in a package cannot name,
+// so the fixture is the core module's BenchmarkFixture, loaded by reflection.
+@State(Scope.Benchmark)
+public abstract class FixtureState {
+    @Param({ "1000", "100000" })
+    public int fleetSize;
+
+    @Param({ "10000", "1000000" })
+    public int historySize;
+
+    private Function<String, LongUnaryOperator> fixture;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void openFixture() throws ReflectiveOperationException {
+        fixture = (Function<String, LongUnaryOperator>) Class.forName("BenchmarkFixture")
+                .getConstructor(int.class, int.class).newInstance(fleetSize, historySize);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeFixture() throws IOException {
+        ((Closeable) fixture).close();
+    }
+
+    protected LongUnaryOperator operation(String name) {
+        return fixture.apply(name);
+    }
+
+    // Each thread walks the fleet from its own starting point
+    @State(Scope.Thread)
+    public static class Cursor {
+        long next;
+
+        @Setup(Level.Trial)
+        public void start(ThreadParams threads) {
+            next = threads.getThreadIndex() * 7919L;
+        }
+    }
+}
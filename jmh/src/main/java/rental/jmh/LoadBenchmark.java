@@ -0,0 +1,35 @@
+package rental.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongUnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Start-up: a new RentalSystem replaying the whole journal. One load per measurement.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark extends FixtureState {
+    private LongUnaryOperator load;
+
+    @Setup(Level.Trial)
+    public void bind() {
+        load = operation("load");
+    }
+
+    @Benchmark
+    public void load(Blackhole blackhole) {
+        blackhole.consume(load.applyAsLong(0));
+    }
+}
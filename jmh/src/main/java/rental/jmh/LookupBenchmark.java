@@ -0,0 +1,63 @@
+package rental.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongUnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Read paths: the plate and customer indexes and the two history lookups
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark extends FixtureState {
+    private LongUnaryOperator findVehicleByPlate;
+    private LongUnaryOperator findCustomerById;
+    private LongUnaryOperator findCustomerByIdString;
+    private LongUnaryOperator historyByCustomer;
+    private LongUnaryOperator historyByVehicle;
+
+    @Setup(Level.Trial)
+    public void bind() {
+        findVehicleByPlate = operation("findVehicleByPlate");
+        findCustomerById = operation("findCustomerById");
+        findCustomerByIdString = operation("findCustomerByIdString");
+        historyByCustomer = operation("historyByCustomer");
+        historyByVehicle = operation("historyByVehicle");
+    }
+
+    @Benchmark
+    public void findVehicleByPlate(Cursor cursor, Blackhole blackhole) {
+        blackhole.consume(findVehicleByPlate.applyAsLong(cursor.next++));
+    }
+
+    @Benchmark
+    public void findCustomerById(Cursor cursor, Blackhole blackhole) {
+        blackhole.consume(findCustomerById.applyAsLong(cursor.next++));
+    }
+
+    @Benchmark
+    public void findCustomerByIdString(Cursor cursor, Blackhole blackhole) {
+        blackhole.consume(findCustomerByIdString.applyAsLong(cursor.next++));
+    }
+
+    @Benchmark
+    public void historyByCustomer(Cursor cursor, Blackhole blackhole) {
+        blackhole.consume(historyByCustomer.applyAsLong(cursor.next++));
+    }
+
+    @Benchmark
+    public void historyByVehicle(Cursor cursor, Blackhole blackhole) {
+        blackhole.consume(historyByVehicle.applyAsLong(cursor.next++));
+    }
+}
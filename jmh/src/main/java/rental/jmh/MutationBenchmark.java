@@ -0,0 +1,50 @@
+package rental.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongUnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Write paths, journal append included: a rent followed by its return, on one thread and
+// on four, and adding customers
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MutationBenchmark extends FixtureState {
+    private LongUnaryOperator rentAndReturn;
+    private LongUnaryOperator addCustomer;
+
+    @Setup(Level.Trial)
+    public void bind() {
+        rentAndReturn = operation("rentAndReturn");
+        addCustomer = operation("addCustomer");
+    }
+
+    @Benchmark
+    public void rentAndReturn(Cursor cursor, Blackhole blackhole) {
+        blackhole.consume(rentAndReturn.applyAsLong(cursor.next++));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void rentAndReturnContended(Cursor cursor, Blackhole blackhole) {
+        blackhole.consume(rentAndReturn.applyAsLong(cursor.next++));
+    }
+
+    @Benchmark
+    public void addCustomer(Cursor cursor, Blackhole blackhole) {
+        blackhole.consume(addCustomer.applyAsLong(cursor.next++));
+    }
+}